@@ -0,0 +1,163 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.JpashopApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 주문 조회 전략별 성능 측정 (JMH)
+ *
+ * OrderAPIController 의 V2 ~ V6 를 같은 데이터로 돌려서 처리량, 지연 시간 분포(p50/p90/p99 ...), 할당량을 비교한다.
+ * 컨트롤러 메서드를 그대로 호출하므로 엔티티 -> DTO 변환 비용까지 포함된다.
+ * `readOnlySession` 이 false 면 읽기 전용 트랜잭션이어도 엔티티마다 변경 감지용 스냅샷을 두므로 (ReadOnlySessionJpaDialect)
+ * 할당량(gc.alloc.rate.norm)과 GC 횟수로 그 차이를 볼 수 있다.
+ *
+ * 데이터는 DataGenerator(`generate` 프로필)로 내장 H2(메모리)에 만들고, 주문 수마다 스냅샷을 build/jmh-data 에 남겨서
+ * 다음 실행부터는 복원만 한다.
+ *
+ * 실행: `./gradlew jmh` (주문 수만 바꾸려면 `-Pjmh.orders=1000`, 일부만 돌리려면 `-Pjmh.include=v6`)
+ * 결과: build/reports/jmh/results.json
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class OrderReadBenchmark {
+
+    // V2 ~ V4 는 주문 전체를 한 번에 엔티티로 올리므로 100만 건은 4g 힙에 다 들어가지 않고 한 번 도는 데도 너무 오래 걸린다.
+    @Param({"1000", "100000"})
+    private int orders;
+
+    @Param({"true", "false"})
+    private boolean readOnlySession;
+
+    private ConfigurableApplicationContext context;
+    private OrderAPIController controller;
+    private TransactionTemplate readOnly;
+    private EntityManagerFactory entityManagerFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // application.yml 보다 우선해야 하므로 기본 속성(properties)이 아니라 실행 인자로 넘긴다.
+        context = new SpringApplicationBuilder(JpashopApplication.class)
+                .profiles("generate")
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.datasource.url=jdbc:h2:mem:jpashop-bench;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--decorator.datasource.enabled=false", // p6spy 로그 비용이 측정에 섞이지 않도록
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.hibernate.SQL=OFF",
+                        "--logging.level.jpabook.jpashop.generator=INFO",
+                        "--jpashop.generator.orders=" + orders,
+                        "--jpashop.generator.members=" + Math.max(1000, orders / 10),
+                        "--jpashop.generator.snapshot=./build/jmh-data/jpashop-" + orders + ".zip",
+                        "--jpashop.query.read-only-session=" + readOnlySession);
+
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+
+        controller = context.getBean(OrderAPIController.class);
+
+        // 웹 요청이 아니라서 OSIV 가 없으므로, 지연 로딩이 끝날 때까지 트랜잭션으로 감싼다. (EntityManager 는 read() 에서 요청처럼 묶는다)
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /*
+    V2: 엔티티 조회 후 지연 로딩 (연관 엔티티는 default_batch_fetch_size 로 IN 조회)
+    findAllByString 이 최대 1000건만 가져오므로 주문 수가 늘어도 읽는 양은 같다.
+     */
+    @Benchmark
+    public List<?> v2_entityLazyLoading() {
+        return read(controller::ordersV2);
+    }
+
+    /*
+    V3: 컬렉션 페치 조인 (findAllWithItem)
+    페이징이 메모리에서 일어나므로 주문 수가 늘수록 DB 에서 읽어오는 row 도 같이 는다.
+     */
+    @Benchmark
+    public List<?> v3_collectionFetchJoin() {
+        return read(controller::ordersV3);
+    }
+
+    /*
+    V3.1: ToOne 페치 조인 + 컬렉션은 default_batch_fetch_size 로 IN 조회 (findAllWithMemberDelivery)
+    다른 전략과 같은 양을 읽도록 전체 주문을 한 페이지로 가져온다.
+     */
+    @Benchmark
+    public List<?> v3_1_batchFetch() {
+        return read(() -> controller.ordersV3_page(0, orders));
+    }
+
+    /*
+    V4: DTO 직접 조회, 주문상품은 주문마다 따로 조회 (findOrderQueryDtos, N + 1)
+     */
+    @Benchmark
+    public List<?> v4_dtoPerOrder() {
+        return read(controller::ordersV4);
+    }
+
+    /*
+    V5: DTO 직접 조회, 주문상품은 IN 쿼리 한 번 (findAllByDto_optimization)
+     */
+    @Benchmark
+    public List<?> v5_dtoInQuery() {
+        return read(controller::ordersV5);
+    }
+
+    /*
+    V6: 한 번에 조인한 플랫 DTO 를 애플리케이션에서 묶기 (findAllByDto_flat)
+     */
+    @Benchmark
+    public List<?> v6_flatJoin() {
+        return read(controller::ordersV6);
+    }
+
+    /*
+    반환값은 JMH 가 소비(Blackhole)하므로 변환 결과가 최적화로 사라지지 않는다.
+    OSIV 가 켜진 웹 요청처럼 EntityManager 를 트랜잭션 밖에서 먼저 묶어둔다.
+    (트랜잭션이 EntityManager 를 새로 만들면 스프링이 readOnlySession 과 상관없이 세션을 read-only 로 바꾼다)
+     */
+    private List<?> read(Supplier<List<?>> query) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        try {
+            return readOnly.execute(status -> query.get());
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            entityManager.close();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package jpabook.jpashop;
 import jpabook.jpashop.domain.*;
 import jpabook.jpashop.domain.item.Book;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,9 +18,12 @@ import javax.persistence.EntityManager;
  * user B
  *   SPRING1 BOOK
  *   SPRING2 BOOK
+ *
+ * 성능 측정용 대량 데이터가 필요하면 `generate` 프로필로 띄운다. (DataGenerator 참고)
  */
 
 @Component
+@Profile("!generate")
 @RequiredArgsConstructor
 public class InitDB {
 
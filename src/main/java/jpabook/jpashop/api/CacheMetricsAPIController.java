@@ -0,0 +1,67 @@
+package jpabook.jpashop.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+@RestController
+@RequiredArgsConstructor
+public class CacheMetricsAPIController {
+    private final EntityManagerFactory entityManagerFactory;
+
+    /*
+    2차 캐시 영역별 적중/실패 수 (기동 후 누적, 영역 이름순)
+    hibernate.generate_statistics 가 꺼져 있으면 모두 0 이다.
+     */
+    @GetMapping("/api/v1/metrics/second-level-cache")
+    public Result<List<CacheRegionDto>> secondLevelCache() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<CacheRegionDto> regions = Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(name -> {
+                    CacheRegionStatistics region = statistics.getCacheRegionStatistics(name);
+                    return region == null ? null : new CacheRegionDto(name, region);
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return new Result<>(regions.size(), regions);
+    }
+
+    @Data
+    static class CacheRegionDto {
+        private String region;
+        private long hitCount;
+        private long missCount;
+        private long putCount;
+        private double hitRatio;
+        private long elementCountInMemory; // 알 수 없으면 -1
+
+        CacheRegionDto(String region, CacheRegionStatistics statistics) {
+            this.region = region;
+            this.hitCount = statistics.getHitCount();
+            this.missCount = statistics.getMissCount();
+            this.putCount = statistics.getPutCount();
+            long lookups = hitCount + missCount;
+            this.hitRatio = lookups == 0 ? 0 : (double) hitCount / lookups;
+            this.elementCountInMemory = statistics.getElementCountInMemory();
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Result<T> {
+        private int count;
+        private T data;
+    }
+}
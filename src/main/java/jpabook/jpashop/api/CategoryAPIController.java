@@ -0,0 +1,98 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.repository.CategoryItemDto;
+import jpabook.jpashop.service.CategoryService;
+import jpabook.jpashop.service.CategoryTree;
+import jpabook.jpashop.service.CategoryTreeCache;
+import jpabook.jpashop.service.query.ItemQueryService;
+import jpabook.jpashop.service.query.OrderQueryService.CursorPage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+public class CategoryAPIController {
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final CategoryService categoryService;
+    private final CategoryTreeCache categoryTreeCache;
+    private final ItemQueryService itemQueryService;
+
+    /*
+    전체 카테고리 트리 (스냅샷에서 바로, DB 조회 없음)
+     */
+    @GetMapping("/api/v1/categories")
+    public Result<List<CategoryTree.Node>> categoriesV1() {
+        CategoryTree tree = categoryTreeCache.get();
+        return new Result<>(tree.size(), tree.getRoots());
+    }
+
+    /*
+    최상위부터 해당 카테고리까지의 경로 (breadcrumb)
+     */
+    @GetMapping("/api/v1/categories/{id}/path")
+    public Result<List<CategoryTree.Node>> categoryPathV1(@PathVariable("id") Long id) {
+        List<CategoryTree.Node> path = categoryTreeCache.get().path(id);
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("존재하지 않는 카테고리입니다. id=" + id);
+        }
+        return new Result<>(path.size(), path);
+    }
+
+    /*
+    하위 카테고리까지 포함한 상품 목록 (상품 ID 순 커서 페이징, 트리 깊이와 상관없이 SQL 한 번)
+     */
+    @GetMapping("/api/v1/categories/{id}/items")
+    public CursorResult<List<CategoryItemDto>> categoryItemsV1(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", defaultValue = "100") int limit
+    ) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit 는 1~" + MAX_PAGE_SIZE + " 이어야 합니다.");
+        }
+        CursorPage<CategoryItemDto> page = itemQueryService.findCategoryItems(id, after, limit);
+        return new CursorResult<>(page.getContent().size(), page.getContent(), page.getNextCursor());
+    }
+
+    @PostMapping("/api/v1/categories")
+    public CreateCategoryResponse createCategoryV1(@RequestBody @Valid CreateCategoryRequest request) {
+        Long id = categoryService.addCategory(request.getParentId(), request.getName());
+        return new CreateCategoryResponse(id);
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Result<T> {
+        private int count;
+        private T data;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CursorResult<T> {
+        private int count;
+        private T data;
+        private String nextCursor; // 마지막 페이지면 null
+    }
+
+    @Data
+    static class CreateCategoryRequest {
+        private Long parentId; // 없으면 최상위
+        @NotEmpty
+        private String name;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CreateCategoryResponse {
+        private Long id;
+    }
+}
@@ -0,0 +1,41 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.query.ItemQueryService;
+import jpabook.jpashop.service.query.ItemQueryService.SplitStockDto;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+
+@RestController
+@RequiredArgsConstructor
+public class ItemAPIController {
+    private final ItemService itemService;
+    private final ItemQueryService itemQueryService;
+
+    /*
+    주문이 몰리는 상품의 재고를 여러 버킷으로 나눈다.
+    이미 분할된 상품이면 버킷 수만 바꾼다.
+     */
+    @PutMapping("/api/v1/items/{id}/split-stock")
+    public SplitStockDto enableSplitStockV1(@PathVariable("id") Long id,
+                                            @RequestBody @Valid SplitStockRequest request) {
+        itemService.enableSplitStock(id, request.getBucketCount());
+        return itemQueryService.findSplitStock(id);
+    }
+
+    @DeleteMapping("/api/v1/items/{id}/split-stock")
+    public SplitStockDto disableSplitStockV1(@PathVariable("id") Long id) {
+        itemService.disableSplitStock(id);
+        return itemQueryService.findSplitStock(id);
+    }
+
+    @Data
+    static class SplitStockRequest {
+        @Min(2)
+        private int bucketCount;
+    }
+}
@@ -1,77 +1,88 @@
 package jpabook.jpashop.api;
 
-import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Order;
-import jpabook.jpashop.domain.OrderItem;
 import jpabook.jpashop.domain.OrderStatus;
-import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
-import jpabook.jpashop.repository.order.query.OrderFlatDto;
-import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.service.BulkOrderCancelService;
+import jpabook.jpashop.service.BulkOrderCancelService.BulkCancelResult;
+import jpabook.jpashop.service.OptimisticLockOrderFacade;
+import jpabook.jpashop.service.OrderExportService;
+import jpabook.jpashop.service.OrderIdempotencyCache;
+import jpabook.jpashop.service.OrderImportService;
+import jpabook.jpashop.service.OrderImportService.ImportResult;
+import jpabook.jpashop.service.OrderIngestionPipeline;
+import jpabook.jpashop.service.query.OrderQueryService;
+import jpabook.jpashop.service.query.OrderQueryService.CursorPage;
+import jpabook.jpashop.service.query.OrderQueryService.OrderDto;
+import lombok.AllArgsConstructor;
 import lombok.Data;
-import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-
-import java.time.LocalDateTime;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static java.util.stream.Collectors.*;
 
 @RestController
 @RequiredArgsConstructor
 public class OrderAPIController {
-    private final OrderRepository orderRepository;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final OrderQueryService orderQueryService;
     private final OrderQueryRepository orderQueryRepository;
+    private final OptimisticLockOrderFacade optimisticLockOrderFacade;
+    private final OrderIngestionPipeline orderIngestionPipeline;
+    private final OrderIdempotencyCache orderIdempotencyCache;
+    private final BulkOrderCancelService bulkOrderCancelService;
+    private final OrderImportService orderImportService;
+    private final OrderExportService orderExportService;
 
     @GetMapping("/api/v1/orders")
     public List<Order> ordersV1() {
         /*
         Hibernate5Module 을 사용해서, 데이터가 정상적으로 로딩된 것들만 보여지게 된다.
-         */
-        List<Order> all = orderRepository.findAllByString(new OrderSearch());
-        for (Order order : all) {
-            order.getMember().getName();
-            order.getDelivery().getAddress();
-
-            /*
-            Lazy Loading 일 때 Hibernate5Module 은 기본설정이 프록시인 것은 안뿌림
-            그런데 이렇게 객체 그래프를 강제 초기화하면 데이터를 뿌림
-            이렇게 한번 접근을 해줘야 함 (OrderItem 과 Item 초기화)
-
-            물론 양방향 관계는 꼭 찾아서 `@JsonIgnore`를 넣어줘야 함
-            */
-            List<OrderItem> orderItems = order.getOrderItems();
-            orderItems.forEach(orderItem -> orderItem.getItem().getName());
-        }
 
-        return all;
+        Lazy Loading 일 때 Hibernate5Module 은 기본설정이 프록시인 것은 안뿌림
+        그런데 이렇게 객체 그래프를 강제 초기화하면 데이터를 뿌림
+        이렇게 한번 접근을 해줘야 함 (OrderItem 과 Item 초기화)
+        OSIV 를 끄면 컨트롤러에서는 초기화할 수 없으므로 OrderQueryService 의 트랜잭션 안에서 한다.
+
+        물론 양방향 관계는 꼭 찾아서 `@JsonIgnore`를 넣어줘야 함
+        */
+        return orderQueryService.ordersV1();
     }
 
 
     @GetMapping("/api/v2/orders")
     public List<OrderDto> ordersV2() {
-        List<Order> orders = orderRepository.findAllByString(new OrderSearch());
-
-        return orders
-                .stream()
-                .map(OrderDto::new)
-                .collect(toList());
+        return orderQueryService.ordersV2();
     }
 
     @GetMapping("/api/v3/orders")
     public List<OrderDto> ordersV3() {
-        List<Order> orders = orderRepository.findAllWithItem();
-
-        return orders
-                .stream()
-                .map(OrderDto::new)
-                .collect(toList());
+        return orderQueryService.ordersV3();
     }
 
 
@@ -152,12 +163,25 @@ public class OrderAPIController {
             @RequestParam(value = "offset", defaultValue = "0") int offset,
             @RequestParam(value = "limit", defaultValue = "100") int limit
     ) {
-        List<Order> orders = orderRepository.findAllWithMemberDelivery(offset, limit);
+        return orderQueryService.ordersV3_page(offset, limit);
+    }
 
-        return orders
-                .stream()
-                .map(OrderDto::new)
-                .collect(toList());
+    /*
+    V3.2: 커서 페이징
+    V3.1 은 offset 만큼 읽고 버리므로 뒤 페이지일수록 느려진다.
+    응답의 nextCursor 를 다음 요청의 after 로 넘기면 인덱스에서 바로 이어서 읽으므로 몇 번째 페이지든 비용이 같다.
+    (ToOne 은 페치 조인, 컬렉션은 default_batch_fetch_size 로 IN 조회하는 것은 V3.1 과 같다.)
+     */
+    @GetMapping("/api/v3.2/orders")
+    public CursorResult<List<OrderDto>> ordersV3_cursor(
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", defaultValue = "100") int limit
+    ) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit 는 1~" + MAX_PAGE_SIZE + " 이어야 합니다.");
+        }
+        CursorPage<OrderDto> page = orderQueryService.ordersV3_cursor(after, limit);
+        return new CursorResult<>(page.getContent().size(), page.getContent(), page.getNextCursor());
     }
 
     @GetMapping("/api/v4/orders")
@@ -203,99 +227,155 @@ public class OrderAPIController {
      상황에 따라 V5보다 더 느릴 수도 있다.
      - 애플리케이션에서 추가 작업이 크다.
      - 페이징 불가능 (Order를 기준으로는 안되고, OrderItem을 기준으로는 된다.)
+       -> 주문 ID 로 먼저 페이징하고 그 주문들만 조인하면 가능하다. (V6.1)
 
      **쿼리가 줄어든다고 항상 좋은 것은 아니다.**
      */
     @GetMapping("/api/v6/orders")
     public List<OrderQueryDto> ordersV6() {
-        List<OrderFlatDto> flats = orderQueryRepository.findAllByDto_flat();
-
-        return   flats.stream()
-                .collect(
-                        groupingBy((OrderFlatDto o) ->
-                                        new OrderQueryDto(
-                                                o.getOrderId()
-                                                , o.getName()
-                                                , o.getOrderDate()
-                                                , o.getOrderStatus()
-                                                , o.getAddress())
-                                , mapping((OrderFlatDto o) ->
-                                        new OrderItemQueryDto(
-                                                o.getOrderId()
-                                                , o.getItemName()
-                                                , o.getOrderPrice()
-                                                , o.getCount()
-                                        ), toList())))
-                .entrySet()
-                .stream()
-                .map(e ->
-                        new OrderQueryDto(
-                                e.getKey().getOrderId()
-                                , e.getKey().getName()
-                                , e.getKey().getOrderDate()
-                                , e.getKey().getOrderStatus()
-                                , e.getKey().getAddress()
-                                , e.getValue()))
-                .collect(toList());
+        /*
+        처음에는 groupingBy 로 묶었는데, 키로 쓸 OrderQueryDto 를 주문마다 하나 더 만들고 HashMap 이라 순서도 뒤섞였다.
+        플랫 row 를 주문 ID 순으로 정렬해서 받으면 한 번 훑으면서 바로 묶을 수 있다. (OrderQueryRepository.groupByOrder)
+         */
+        return OrderQueryRepository.groupByOrder(orderQueryRepository.findAllByDto_flat());
     }
 
-    @Data
     /*
-    Jackson 에서 TypeDefinition Error (no properties) 날 때는
-    `@Data` 혹은 `@Getter` 어노테이션과 같은 Getter 생성이 있는지 확인
-
-    실행결과, orderItems 가 null 로 나옴.
-    왜냐하면 OrderItem 은 엔티티임
-
-    이 방법의 문제는 완전히 엔티티에 대한 의존을 끊지 않아서
-    엔티티가 노출된다는 것임
+    V6.1: V6 페이징
+    주문 ID 로 먼저 페이징한 뒤 그 주문들만 플랫 조인으로 가져온다. (쿼리 2번)
+    다음 페이지는 응답의 마지막 orderId 를 afterId 로 넘긴다.
+     */
+    @GetMapping("/api/v6.1/orders")
+    public List<OrderQueryDto> ordersV6_page(
+            @RequestParam(value = "afterId", required = false) Long afterId,
+            @RequestParam(value = "limit", defaultValue = "100") int limit
+    ) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit 는 1~" + MAX_PAGE_SIZE + " 이어야 합니다.");
+        }
+        return orderQueryRepository.findAllByDto_flat(afterId, limit);
+    }
 
-    List 의 `<OrderItem>` 조차도 다 DTO 로 변경해야 함
+    /*
+    장바구니 주문
+    - 상품 여러 개를 주문 하나로 묶어서 트랜잭션 한번에 처리한다.
+    - 같은 상품이 여러 줄로 들어오면 수량을 합친다.
+    - 낙관적 락 충돌이 나면 퍼사드에서 재시도한다.
+    - Idempotency-Key 헤더가 같은 재요청에는 처음 주문의 ID 를 돌려준다. (중복 주문 방지, 회원마다 따로, 형식이 틀리면 400)
+     */
+    @PostMapping("/api/v1/orders")
+    public CompletableFuture<CreateOrderResponse> saveOrderV1(
+            @RequestBody @Valid CreateOrderRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        Map<Long, Integer> itemCounts = request.getOrderItems()
+                .stream()
+                .collect(toMap(
+                        CreateOrderItemRequest::getItemId
+                        , CreateOrderItemRequest::getCount
+                        , Integer::sum
+                        , LinkedHashMap::new));
+
+        // 주문 수집 파이프라인이 켜져 있으면 묶음 커밋이 끝날 때까지 요청 스레드를 붙잡지 않고 비동기로 응답한다.
+        return orderIdempotencyCache.execute(request.getMemberId(), idempotencyKey, () -> {
+            if (orderIngestionPipeline.isEnabled()) {
+                return orderIngestionPipeline.submit(request.getMemberId(), itemCounts, idempotencyKey);
+            }
+            return CompletableFuture.completedFuture(
+                    optimisticLockOrderFacade.order(request.getMemberId(), itemCounts, idempotencyKey));
+        }).thenApply(CreateOrderResponse::new);
+    }
 
-    이렇게 엔티티에 의존하면, 나중에 `OrderItem`이 변경되었을 때,
-    API 스펙이 전부 다 바뀌어버림
+    /*
+    주문 일괄 취소
+    - 주문 ID 목록이 있으면 그 주문들을, 없으면 검색 조건(회원 이름, 주문 상태)에 맞는 주문들을 취소한다.
+    - 조건 없이 전체 주문이 취소되는 일이 없도록 둘 중 하나는 반드시 있어야 한다.
+      (검색은 빈 이름을 조건에서 빼므로, 이름을 보냈다면 비어 있으면 안 된다)
+    - 이미 취소되었거나 배송이 완료된 주문은 건너뛴다.
      */
-    static class OrderDto {
-        private Long orderId;
-        private String name;
-        private LocalDateTime orderDate;
-        private OrderStatus orderStatus;
-        private Address address;
-        private List<OrderItemDto> orderItems;
-
-        public OrderDto(Order order) {
-            orderId = order.getId();
-            name = order.getMember().getName();
-            orderDate = order.getOrderDate();
-            orderStatus = order.getStatus();
-            address = order.getDelivery().getAddress();
-            /*
-            Lazy Loading 시에 Hibernate5Module 이
-            null 로 표기하지 않게 만들기 위해서 한번씩 접근
-             */
-            // order.getOrderItems().stream().forEach(o -> o.getItem().getName());
-            // orderItems = order.getOrderItems();
-            orderItems =  order.getOrderItems().stream().map(OrderItemDto::new).collect(toList());
+    @PostMapping("/api/v1/orders/cancel")
+    public BulkCancelResult cancelOrdersV1(@RequestBody BulkCancelRequest request) {
+        if (request.getOrderIds() != null && !request.getOrderIds().isEmpty()) {
+            return bulkOrderCancelService.cancelOrders(request.getOrderIds());
+        }
 
+        if (request.getMemberName() != null && !StringUtils.hasText(request.getMemberName())) {
+            throw new IllegalArgumentException("회원 이름이 비어 있습니다.");
+        }
+        if (request.getMemberName() == null && request.getOrderStatus() == null) {
+            throw new IllegalArgumentException("취소할 주문 ID 목록이나 검색 조건이 필요합니다.");
         }
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName(request.getMemberName());
+        orderSearch.setOrderStatus(request.getOrderStatus());
+        return bulkOrderCancelService.cancelOrders(orderSearch);
     }
 
+    /*
+    주문 대량 가져오기
+    - 요청 본문을 한 줄씩 읽으면서 저장하므로 파일 전체를 메모리에 올리지 않는다.
+    - Content-Type 이 `application/x-ndjson` 이면 NDJSON, `text/csv` 이면 CSV 로 읽는다.
+    - 줄마다 실패 사유를 돌려주고, 나머지 줄은 계속 저장한다.
+     */
+    @PostMapping(value = "/api/v1/orders/import", consumes = {"text/csv", NDJSON})
+    public ImportResult importOrdersV1(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                       InputStream body) throws IOException {
+        OrderImportService.Format format = contentType.contains("ndjson")
+                ? OrderImportService.Format.NDJSON
+                : OrderImportService.Format.CSV;
+        return orderImportService.importOrders(body, format);
+    }
 
     /*
-    엔티티를 노출하지 말라는 것은 List 내부에 <> 타입까지 노출하지 말라는 것이다.
-    단, Address 와 같은 Value Object 는 노출해도 무방하다.
+    전체 주문 내보내기 (NDJSON, 주문 하나당 한 줄)
+    - 응답을 다 만들어서 돌려주지 않고, 읽는 대로 흘려보낸다. (StreamingResponseBody)
+    - 주문이 아무리 많아도 서버 메모리에는 한 묶음(`jpashop.order.export.chunk-size`)만 올라간다.
      */
-    @Getter
-    static class OrderItemDto {
-        private String itemName; // 상품명
-        private int orderPrice; // 주문 가격
-        private int count; // 주문 수량
-
-        public OrderItemDto(OrderItem orderItem) {
-            itemName = orderItem.getItem().getName();
-            orderPrice = orderItem.getOrderPrice();
-            count = orderItem.getCount();
-        }
+    @GetMapping(value = "/api/v1/orders/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportOrdersV1() {
+        StreamingResponseBody body = orderExportService::exportOrders;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CursorResult<T> {
+        private int count;
+        private T data;
+        private String nextCursor; // 마지막 페이지면 null
+    }
+
+    @Data
+    static class CreateOrderRequest {
+        @NotNull
+        private Long memberId;
+
+        @Valid
+        @NotEmpty
+        private List<CreateOrderItemRequest> orderItems;
+    }
+
+    @Data
+    static class CreateOrderItemRequest {
+        @NotNull
+        private Long itemId;
+
+        @Positive
+        private int count;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CreateOrderResponse {
+        private Long orderId;
+    }
+
+    @Data
+    static class BulkCancelRequest {
+        private List<Long> orderIds;
+        private String memberName;
+        private OrderStatus orderStatus;
     }
 
     /*
@@ -1,16 +1,14 @@
 package jpabook.jpashop.api;
 
 import jpabook.jpashop.domain.Order;
-import jpabook.jpashop.repository.OrderRepository;
-import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
 import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryRepository;
+import jpabook.jpashop.service.query.OrderQueryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * xToOne(ManyToOne, OneToOne)
@@ -24,7 +22,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @RestController
 public class OrderSimpleAPIController {
-    private final OrderRepository orderRepository;
+    private final OrderQueryService orderQueryService;
     private final OrderSimpleQueryRepository orderSimpleQueryRepository;
 
     /*
@@ -45,12 +43,7 @@ public class OrderSimpleAPIController {
 
     @GetMapping("/api/v1/simple-orders")
     public List<Order> ordersV1() {
-        List<Order> orderList = orderRepository.findAllByString(new OrderSearch());
-        for (Order order : orderList) {
-            order.getMember().getName(); // Lazy 강제 초기화
-            order.getDelivery().getAddress(); // Lazy 강제 초기화
-        }
-        return orderList;
+        return orderQueryService.simpleOrdersV1(); // 트랜잭션 안에서 Lazy 강제 초기화
     }
 
     /*
@@ -76,8 +69,7 @@ public class OrderSimpleAPIController {
     선호되지 않는다.
      */
     public List<OrderSimpleQueryDto> ordersV2() {
-        List<Order> orderList = orderRepository.findAllByString(new OrderSearch());
-        return orderList.stream().map(OrderSimpleQueryDto::new).collect(Collectors.toList());
+        return orderQueryService.simpleOrdersV2();
     }
 
     /*
@@ -110,8 +102,7 @@ public class OrderSimpleAPIController {
      */
     @GetMapping("/api/v3/simple-orders")
     public List<OrderSimpleQueryDto> ordersV3() {
-        List<Order> orderList = orderRepository.findAllWithMemberDelivery();
-        return orderList.stream().map(OrderSimpleQueryDto::new).collect(Collectors.toList());
+        return orderQueryService.simpleOrdersV3();
     }
 
     @GetMapping("/api/v4/simple-orders")
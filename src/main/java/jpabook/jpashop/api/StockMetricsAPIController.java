@@ -0,0 +1,33 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.service.StockContentionMetrics;
+import jpabook.jpashop.service.StockContentionMetrics.ItemContention;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+public class StockMetricsAPIController {
+    private final StockContentionMetrics stockContentionMetrics;
+
+    /*
+    상품별 낙관적 락 충돌 통계 (충돌이 많은 순)
+     */
+    @GetMapping("/api/v1/metrics/stock-contention")
+    public Result<List<ItemContention>> stockContention() {
+        List<ItemContention> contentions = stockContentionMetrics.snapshot();
+        return new Result<>(contentions.size(), contentions);
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Result<T> {
+        private int count;
+        private T data;
+    }
+}
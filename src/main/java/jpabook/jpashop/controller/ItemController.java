@@ -2,8 +2,9 @@ package jpabook.jpashop.controller;
 
 import jpabook.jpashop.controller.form.BookForm;
 import jpabook.jpashop.domain.item.Book;
-import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.query.ItemQueryService;
+import jpabook.jpashop.service.query.ItemQueryService.ItemDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -13,6 +14,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ItemController {
     private final ItemService itemService;
+    private final ItemQueryService itemQueryService;
     @GetMapping(value = "/items/new")
     public String createForm(Model model) {
         model.addAttribute("form", new BookForm());
@@ -35,7 +37,7 @@ public class ItemController {
      */
     @GetMapping(value = "/items")
     public String list(Model model) {
-        List<Item> items = itemService.findItems();
+        List<ItemDto> items = itemQueryService.findItems();
         model.addAttribute("items", items);
         return "items/itemList";
     }
@@ -1,31 +1,42 @@
 package jpabook.jpashop.controller;
 
 import jpabook.jpashop.domain.Member;
-import jpabook.jpashop.domain.Order;
-import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.repository.OrderSearch;
-import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.repository.order.listquery.OrderListDto;
 import jpabook.jpashop.service.MemberService;
-import jpabook.jpashop.service.OrderService;
+import jpabook.jpashop.service.OptimisticLockOrderFacade;
+import jpabook.jpashop.service.OrderIdempotencyCache;
+import jpabook.jpashop.service.OrderIngestionPipeline;
+import jpabook.jpashop.service.query.ItemQueryService;
+import jpabook.jpashop.service.query.ItemQueryService.ItemDto;
+import jpabook.jpashop.service.query.OrderQueryService;
+import jpabook.jpashop.service.query.OrderQueryService.CursorPage;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Controller
 @RequiredArgsConstructor
 public class OrderController {
 
-    private final OrderService orderService;
+    private static final int ORDER_PAGE_SIZE = 100;
+
     private final MemberService memberService;
-    private final ItemService itemService;
+    private final ItemQueryService itemQueryService;
+    private final OrderQueryService orderQueryService;
+    private final OptimisticLockOrderFacade optimisticLockOrderFacade;
+    private final OrderIngestionPipeline orderIngestionPipeline;
+    private final OrderIdempotencyCache orderIdempotencyCache;
 
     @GetMapping("/order")
     public String createForm(Model model) {
         List<Member> memberList = memberService.findMembers();
-        List<Item> itemList = itemService.findItems();
+        List<ItemDto> itemList = itemQueryService.findItems();
 
         model.addAttribute("members", memberList);
         model.addAttribute("items", itemList);
@@ -37,29 +48,47 @@ public class OrderController {
     /*
     Form submit 에서 name 으로 지정된 값은 `@RequestParam`에서 받을 수 있음.
      */
-    public String order(@RequestParam("memberId") Long memberId
+    public CompletableFuture<String> order(@RequestParam("memberId") Long memberId
                         , @RequestParam("itemId") Long itemId
-                        , @RequestParam("count") int count)
+                        , @RequestParam("count") int count
+                        , @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey)
     {
         /*
         가급적 내용 변경이 들어가는 비즈니스 로직에 대해서는
         영속성 컨텍스트가 존재하지 않는 컨트롤러에서 보다는
         영속성 컨텍스트가 존재하는 Service와 같은 곳에서 진행하자.
-         */
-        orderService.order(memberId, itemId, count);
 
-        return "redirect:/orders";
+        낙관적 락 충돌 시 재시도를 위해 퍼사드를 거친다.
+        주문 수집 파이프라인이 켜져 있으면 큐에 넣고, 묶음으로 저장된 뒤에 응답한다.
+        Idempotency-Key 가 같은 재요청은 새로 주문하지 않고 처음 주문의 결과를 기다린다.
+         */
+        Map<Long, Integer> itemCounts = Map.of(itemId, count);
+
+        return orderIdempotencyCache.execute(memberId, idempotencyKey, () -> {
+            if (orderIngestionPipeline.isEnabled()) {
+                return orderIngestionPipeline.submit(memberId, itemCounts, idempotencyKey);
+            }
+            return CompletableFuture.completedFuture(
+                    optimisticLockOrderFacade.order(memberId, itemCounts, idempotencyKey));
+        }).thenApply(orderId -> "redirect:/orders");
     }
 
     @GetMapping("/orders")
     public String orderList(
             @ModelAttribute("orderSearch") OrderSearch orderSearch,
+            @RequestParam(value = "after", required = false) String after,
             Model model) {
         /*
         단순한 조회 기능일 경우에는 `orderRepository`에서 바로 조회하는 것도 나쁜 패턴은 아니다.
+
+        최신 주문부터 한 페이지씩 커서로 넘긴다. (다음 페이지 링크에 nextCursor 를 after 로 붙인다.)
+
+        OSIV 를 껐으므로 뷰에서 지연 로딩을 할 수 없다. 화면에 필요한 값은 OrderQueryService 가 트랜잭션 안에서 다 채워준다.
          */
-        List<Order> orderList = orderService.findOrders(orderSearch);
-        model.addAttribute("orders", orderList);
+        CursorPage<OrderListDto> orderPage = orderQueryService.findOrderList(orderSearch, after, ORDER_PAGE_SIZE);
+        model.addAttribute("orders", orderPage.getContent());
+        model.addAttribute("nextCursor", orderPage.getNextCursor());
+        model.addAttribute("firstPage", after == null || after.isBlank());
         /*
         @ModelAttribute("orderSearch") OrderSearch orderSearch 의 의미는
         model.addAttribute("orderSearch", orderSearch)와 같이, `orderSearch`의 정보를 뷰로 넘기는 의미를 갖고 있다.
@@ -94,7 +123,7 @@ public class OrderController {
 
     @PostMapping("/orders/{orderId}/cancel")
     public String cancelOrder(@PathVariable("orderId") Long orderId) {
-        orderService.cancelOrder(orderId);
+        optimisticLockOrderFacade.cancelOrder(orderId);
         return "redirect:/orders";
     }
 
@@ -0,0 +1,102 @@
+package jpabook.jpashop.datasource;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.Callable;
+
+/**
+ * 방금 쓰기를 한 클라이언트의 읽기를 잠깐 동안 primary 로 보내기 위한 요청별 상태 (ReadYourWritesFilter)
+ *
+ * replica 는 복제 지연만큼 늦으므로, 회원 가입/주문 직후의 조회가 replica 로 가면 방금 쓴 데이터가 안 보일 수 있다.
+ * 쓰기 트랜잭션이 커넥션을 얻으면 (ReplicaRoutingDataSource) 쿠키에 `sticky-ms` 뒤의 시각을 남기고,
+ * 그 쿠키를 가지고 온 요청은 그 시각까지 읽기 전용 트랜잭션도 primary 에서 읽는다.
+ * 쿠키로 들고 다니므로 서버가 여러 대여도 같은 클라이언트면 어느 서버로 가든 지켜진다.
+ */
+public class ReadYourWrites {
+
+    public static final String COOKIE_NAME = "jpashop-read-primary-until";
+
+    private static final ThreadLocal<ReadYourWrites> CURRENT = new ThreadLocal<>();
+
+    private final HttpServletResponse response;
+    private final long stickyMillis;
+    private long primaryUntil;
+    private boolean cookieWritten;
+
+    private ReadYourWrites(HttpServletResponse response, long stickyMillis, long primaryUntil) {
+        this.response = response;
+        this.stickyMillis = stickyMillis;
+        this.primaryUntil = primaryUntil;
+    }
+
+    static void begin(HttpServletRequest request, HttpServletResponse response, long stickyMillis) {
+        CURRENT.set(new ReadYourWrites(response, stickyMillis, primaryUntil(request)));
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 지금 읽기를 primary 에서 해야 하면 true (HTTP 요청을 처리하는 스레드가 아니면 항상 false)
+     */
+    static boolean shouldReadPrimary() {
+        ReadYourWrites current = CURRENT.get();
+        return current != null && System.currentTimeMillis() < current.primaryUntil;
+    }
+
+    /**
+     * 현재 요청의 상태를 `task` 를 실행하는 스레드에도 묶는다. (HTTP 요청 스레드가 아니면 그대로 실행)
+     * 요청 스레드가 결과를 기다리는 읽기 작업에만 쓴다. (다른 스레드에서 쿠키를 쓰지 않도록)
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        ReadYourWrites current = CURRENT.get();
+        if (current == null) {
+            return task;
+        }
+        return () -> {
+            CURRENT.set(current);
+            try {
+                return task.call();
+            } finally {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    static void recordWrite() {
+        ReadYourWrites current = CURRENT.get();
+        if (current == null) {
+            return;
+        }
+        current.primaryUntil = System.currentTimeMillis() + current.stickyMillis;
+        if (current.cookieWritten || current.response.isCommitted()) {
+            return;
+        }
+        current.cookieWritten = true;
+
+        Cookie cookie = new Cookie(COOKIE_NAME, String.valueOf(current.primaryUntil));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, (current.stickyMillis + 999) / 1000));
+        current.response.addCookie(cookie);
+    }
+
+    private static long primaryUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,40 @@
+package jpabook.jpashop.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 요청마다 ReadYourWrites 상태를 묶는다. (replica 를 쓸 때만)
+ */
+@Component
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    @Value("${jpashop.datasource.replica.enabled:false}")
+    private boolean enabled;
+
+    @Value("${jpashop.datasource.replica.sticky-ms:5000}")
+    private long stickyMillis;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ReadYourWrites.begin(request, response, stickyMillis);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.end();
+        }
+    }
+}
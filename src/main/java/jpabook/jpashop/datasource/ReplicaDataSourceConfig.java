@@ -0,0 +1,106 @@
+package jpabook.jpashop.datasource;
+
+import com.github.gavlyukovskiy.boot.jdbc.decorator.DataSourceDecorator;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * 읽기 전용 트랜잭션을 replica 로 보낸다. (선택 기능, `jpashop.datasource.replica.enabled`)
+ *
+ * primary 는 spring.datasource.* 로, replica 는 `jpashop.datasource.replica.urls` 로 만든다.
+ * (드라이버, 계정은 primary 와 같다)
+ */
+@Configuration
+@ConditionalOnProperty(name = "jpashop.datasource.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    @Value("${jpashop.datasource.replica.urls:}")
+    private List<String> replicaUrls;
+
+    @Value("${jpashop.datasource.replica.max-lag-ms:1000}")
+    private long maxLagMillis;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    /*
+    p6spy(datasource-decorator)는 DataSource 빈을 감싸고, 커넥션을 얻자마자 getMetaData() 를 부른다.
+    바깥의 LazyConnectionDataSourceProxy 가 감싸지면 트랜잭션이 시작될 때(아직 readOnly 를 모를 때) 바로 커넥션을 골라버리므로
+    이 빈은 감싸지 않게 빼고 (application.yml 의 decorator.datasource.exclude-beans) primary / replica 를 각각 감싼다.
+    (SQL 로그와 요청별 SQL 통계(QueryStatsListener)는 그대로 남는다)
+     */
+    @Bean
+    @Primary
+    public DataSource replicaRoutingDataSource(DataSourceProperties properties, ObjectProvider<DataSourceDecorator> decorators) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(properties.determineUsername());
+            replica.setPassword(properties.determinePassword());
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+
+        routingDataSource = new ReplicaRoutingDataSource(primary, replicas, maxLagMillis, (name, dataSource) -> {
+            DataSource decorated = dataSource;
+            for (DataSourceDecorator decorator : decorators.orderedStream().collect(toList())) {
+                decorated = decorator.decorate(name, decorated);
+            }
+            return decorated;
+        });
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /*
+    기본 설정(DELAYED_ACQUISITION_AND_HOLD)은 EntityManager 가 닫힐 때까지 커넥션을 들고 있으므로
+    OSIV 에서는 요청의 첫 트랜잭션이 고른 쪽(replica 일 수도 있다)으로 뒤의 쓰기 트랜잭션까지 가게 된다.
+    트랜잭션이 끝날 때마다 커넥션을 돌려줘서 트랜잭션마다 다시 고르게 한다.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.datasource.replica.check-interval-ms:500}")
+    public void checkReplicationLag() {
+        if (routingDataSource != null) {
+            routingDataSource.checkReplicationLag();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (routingDataSource != null) {
+            routingDataSource.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package jpabook.jpashop.datasource;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 지금 트랜잭션이 replica 에서 읽고 있는지 (ReplicaRoutingDataSource 가 replica 를 고를 때 표시한다)
+ *
+ * replica 는 복제 지연만큼 옛 데이터를 돌려줄 수 있다. 그 결과로 캐시를 채우면 지연이 지나도 캐시가 만료될 때까지
+ * 옛 데이터가 남고, 방금 쓴 클라이언트가 primary 에서 읽어도(ReadYourWrites) 캐시에서 옛 데이터를 보게 된다.
+ * 그래서 replica 에서 읽은 결과는 캐시에 넣지 않는다. (캐시에서 꺼내 쓰는 것은 그대로 한다)
+ *
+ * - 2차 캐시/쿼리 캐시: 트랜잭션의 Hibernate 세션을 CacheMode.GET 으로 바꾸고, 트랜잭션이 끝나면 되돌린다.
+ * - OrderSearchCache, CategoryTreeCache: isReplicaRead() 이면 담지 않는다.
+ */
+public class ReplicaReads {
+
+    private static final ThreadLocal<Boolean> CURRENT = new ThreadLocal<>();
+
+    private ReplicaReads() {
+    }
+
+    /**
+     * 지금 트랜잭션이 replica 에서 읽었으면 true (replica 를 쓰지 않으면 항상 false)
+     */
+    public static boolean isReplicaRead() {
+        return CURRENT.get() != null;
+    }
+
+    /*
+    커넥션은 첫 SQL 을 실행할 때 얻으므로 (LazyConnectionDataSourceProxy) 그 SQL 의 결과를 캐시에 넣기 전에 불린다.
+     */
+    static void mark() {
+        if (CURRENT.get() != null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        CURRENT.set(Boolean.TRUE);
+
+        List<Runnable> restores = new ArrayList<>();
+        for (Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+            if (resource instanceof EntityManagerHolder) {
+                Session session = ((EntityManagerHolder) resource).getEntityManager().unwrap(Session.class);
+                CacheMode cacheMode = session.getCacheMode();
+                session.setCacheMode(CacheMode.GET);
+                restores.add(() -> session.setCacheMode(cacheMode)); // OSIV 면 세션을 뒤의 트랜잭션도 쓴다.
+            }
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                CURRENT.remove();
+                restores.forEach(Runnable::run);
+            }
+        });
+    }
+}
@@ -0,0 +1,184 @@
+package jpabook.jpashop.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * 읽기 전용 트랜잭션을 replica 로, 나머지(쓰기 트랜잭션, 트랜잭션 밖의 조회)를 primary 로 보내는 DataSource
+ *
+ * - replica 가 여럿이면 돌아가며 쓴다.
+ * - 복제 지연이 `max-lag-ms` 를 넘거나 연결이 안 되는 replica 는 빼고, 쓸 replica 가 없으면 primary 로 보낸다.
+ * - 방금 쓰기를 한 클라이언트(ReadYourWrites)의 읽기는 잠깐 동안 primary 로 보낸다.
+ * - replica 에서 읽은 결과는 캐시에 넣지 않는다. (ReplicaReads)
+ *
+ * 어느 쪽으로 보낼지는 커넥션을 얻을 때 정하는데, 트랜잭션의 readOnly 여부는 커넥션을 얻은 뒤에야 알 수 있으므로
+ * 반드시 LazyConnectionDataSourceProxy 로 감싸서 첫 SQL 을 실행할 때 커넥션을 얻도록 해야 한다.
+ *
+ * 복제 지연은 primary 의 replication_heartbeat 테이블에 주기적으로 시각을 쓰고 (checkReplicationLag)
+ * 각 replica 에서 그 값을 읽어서 잰다. 마지막으로 쓴 값이 보이면 지연 0, 아니면 보이는 값이 쓰인 뒤 지난 시간이다.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    private static final String CREATE_HEARTBEAT_SQL =
+            "create table if not exists replication_heartbeat (id int primary key, beat_at bigint not null)";
+    private static final String SELECT_HEARTBEAT_SQL = "select beat_at from replication_heartbeat where id = 1";
+    private static final String UPDATE_HEARTBEAT_SQL = "update replication_heartbeat set beat_at = ? where id = 1";
+    private static final String INSERT_HEARTBEAT_SQL = "insert into replication_heartbeat (id, beat_at) values (1, ?)";
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private boolean heartbeatTableCreated;
+    private long lastBeatAt; // 마지막으로 primary 에 쓴 시각 (아직 안 썼으면 0)
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources, long maxLagMillis) {
+        this(primary, replicaDataSources, maxLagMillis, (name, dataSource) -> dataSource);
+    }
+
+    /**
+     * @param decorator 트랜잭션의 SQL 이 지나가는 쪽만 감쌀 때 (이름, DataSource), heartbeat 는 감싸지 않은 쪽으로 보낸다.
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources, long maxLagMillis,
+                                    BiFunction<String, DataSource, DataSource> decorator) {
+        this.primary = primary;
+        this.maxLagMillis = maxLagMillis;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, decorator.apply(PRIMARY, primary));
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            Replica replica = new Replica("replica-" + (i + 1), replicaDataSources.get(i));
+            replicas.add(replica);
+            targets.put(replica.name, decorator.apply(replica.name, replica.dataSource));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                ReadYourWrites.recordWrite();
+            }
+            return PRIMARY;
+        }
+        if (ReadYourWrites.shouldReadPrimary()) {
+            return PRIMARY;
+        }
+        String key = nextReplica();
+        if (!PRIMARY.equals(key)) {
+            ReplicaReads.mark();
+        }
+        return key;
+    }
+
+    private String nextReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.isUsable(maxLagMillis)) {
+                return replica.name;
+            }
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * replica 마다 복제 지연을 잰 뒤 primary 에 새 heartbeat 를 쓴다.
+     * replica 는 직전 주기에 쓴 값까지 따라와 있으면 지연 0 이다.
+     */
+    public synchronized void checkReplicationLag() {
+        JdbcTemplate primaryTemplate = new JdbcTemplate(primary);
+        if (!heartbeatTableCreated) {
+            primaryTemplate.execute(CREATE_HEARTBEAT_SQL);
+            heartbeatTableCreated = true;
+        }
+
+        long now = System.currentTimeMillis();
+        if (lastBeatAt > 0) { // 처음에는 replica 에 남은 값이 이번에 쓴 것인지 알 수 없으므로 쓰기만 한다.
+            for (Replica replica : replicas) {
+                replica.measure(lastBeatAt, now, maxLagMillis);
+            }
+        }
+
+        long beatAt = Math.max(now, lastBeatAt + 1);
+        if (primaryTemplate.update(UPDATE_HEARTBEAT_SQL, beatAt) == 0) {
+            primaryTemplate.update(INSERT_HEARTBEAT_SQL, beatAt);
+        }
+        lastBeatAt = beatAt;
+    }
+
+    /**
+     * replica 이름 -> 복제 지연(ms), 연결이 안 되거나 아직 heartbeat 가 없으면 -1
+     */
+    public Map<String, Long> replicationLag() {
+        Map<String, Long> lag = new HashMap<>();
+        replicas.forEach(replica -> lag.put(replica.name, replica.available ? replica.lagMillis : -1));
+        return lag;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (primary instanceof Closeable) {
+            ((Closeable) primary).close();
+        }
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable) {
+                ((Closeable) replica.dataSource).close();
+            }
+        }
+    }
+
+    private static class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        // 처음 잴 때까지는 따라와 있는지 모르므로 쓰지 않는다. (heartbeat 가 없어도 마찬가지)
+        private volatile boolean available;
+        private volatile long lagMillis;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        boolean isUsable(long maxLagMillis) {
+            return available && lagMillis <= maxLagMillis;
+        }
+
+        void measure(long lastBeatAt, long now, long maxLagMillis) {
+            boolean wasUsable = isUsable(maxLagMillis);
+            try {
+                List<Long> beats = new JdbcTemplate(dataSource).queryForList(SELECT_HEARTBEAT_SQL, Long.class);
+                available = !beats.isEmpty();
+                lagMillis = available && beats.get(0) < lastBeatAt ? now - beats.get(0) : 0;
+            } catch (RuntimeException e) {
+                available = false;
+                if (wasUsable) {
+                    log.warn("replica unavailable. {}", name, e);
+                }
+                return;
+            }
+            if (wasUsable != isUsable(maxLagMillis)) {
+                log.info("replica {} {}. lag={}ms", name, wasUsable ? "excluded" : "included", available ? lagMillis : -1);
+            }
+        }
+    }
+}
@@ -1,15 +1,22 @@
 package jpabook.jpashop.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jpabook.jpashop.domain.item.Item;
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "category") // 2차 캐시
 @Getter @Setter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class Category {
     @Id @GeneratedValue
     @Column(name = "category_id")
@@ -17,6 +24,7 @@ public class Category {
 
     private String name;
 
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "category-items")
     @ManyToMany
     @JoinTable(
             name = "category_item",
@@ -28,16 +36,60 @@ public class Category {
     // 등록 일자와 같은 간단한 정보도 추가 불가능
     private List<Item> items = new ArrayList<>();
 
+    @Setter(AccessLevel.PRIVATE) // 클로저 테이블과 어긋나지 않도록 addChildCategory 로만 바꾼다.
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "parent_id")
     private Category parent;
 
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "category-child")
     @OneToMany(mappedBy = "parent")
     private List<Category> child = new ArrayList<>();
 
+    // 클로저 테이블 (CategoryClosure): 이 카테고리가 자손인 행 / 조상인 행, 둘 다 자기 자신 행을 포함한다.
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @OneToMany(mappedBy = "descendant", cascade = CascadeType.PERSIST)
+    private List<CategoryClosure> ancestors = new ArrayList<>();
+
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @OneToMany(mappedBy = "ancestor")
+    private List<CategoryClosure> descendants = new ArrayList<>();
+
+    //==생성 메서드==//
+    public static Category createCategory(String name) {
+        Category category = new Category();
+        category.setName(name);
+        CategoryClosure.link(category, category, 0);
+        return category;
+    }
+
     // 연관관계 편의 메소드
+    /*
+    클로저 테이블도 같이 채운다.
+    이 카테고리의 조상(자기 포함) x 붙일 카테고리의 자손(자기 포함) 마다 한 행씩,
+    깊이는 두 깊이의 합 + 1 이다. (하위 트리를 통째로 붙여도 맞다)
+     */
     public void addChildCategory(Category child) {
+        if (child.getParent() != null) {
+            throw new IllegalStateException("이미 상위 카테고리가 있습니다. category=" + child.getName());
+        }
+        if (child == this || isDescendantOf(child)) {
+            throw new IllegalArgumentException("자신의 하위 카테고리로 넣을 수 없습니다. category=" + child.getName());
+        }
+
+        for (CategoryClosure upper : new ArrayList<>(ancestors)) {
+            for (CategoryClosure lower : new ArrayList<>(child.getDescendants())) {
+                CategoryClosure.link(upper.getAncestor(), lower.getDescendant(), upper.getDepth() + lower.getDepth() + 1);
+            }
+        }
         this.getChild().add(child);
         child.setParent(this);
     }
+
+    // 조상은 프록시일 수 있으므로 식별자로 비교한다.
+    private boolean isDescendantOf(Category category) {
+        return category.getId() != null && ancestors.stream()
+                .anyMatch(closure -> category.getId().equals(closure.getAncestor().getId()));
+    }
 }
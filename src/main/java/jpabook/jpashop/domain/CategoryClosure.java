@@ -0,0 +1,45 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * 카테고리 클로저 테이블: 조상 -> 자손 쌍을 (자기 자신 포함) 모두 한 줄씩 둔다.
+ *
+ * parent 만 따라가면 하위 트리를 한 단계씩 조회해야 하지만,
+ * 여기서 `ancestor_id = ?` 로 찾으면 깊이에 상관없이 하위 카테고리 전체가 한 번에 나온다.
+ * 행은 Category.addChildCategory 가 만든다.
+ */
+@Entity
+@Table(name = "category_closure",
+        uniqueConstraints = @UniqueConstraint(name = "uk_category_closure", columnNames = {"ancestor_id", "descendant_id"}),
+        indexes = @Index(name = "idx_category_closure_descendant", columnList = "descendant_id"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class CategoryClosure {
+    @Id @GeneratedValue
+    @Column(name = "category_closure_id")
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "ancestor_id")
+    private Category ancestor;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "descendant_id")
+    private Category descendant;
+
+    private int depth; // 자기 자신이면 0, 자식이면 1
+
+    static void link(Category ancestor, Category descendant, int depth) {
+        CategoryClosure closure = new CategoryClosure();
+        closure.ancestor = ancestor;
+        closure.descendant = descendant;
+        closure.depth = depth;
+        ancestor.getDescendants().add(closure);
+        descendant.getAncestors().add(closure);
+    }
+}
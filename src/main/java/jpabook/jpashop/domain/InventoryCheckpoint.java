@@ -0,0 +1,39 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * 인메모리 재고 엔진의 write-behind 체크포인트
+ *
+ * 재고 변경분을 item 테이블에 반영하는 트랜잭션 안에서 함께 갱신되므로,
+ * 어느 예약 로그 세그먼트까지 DB 에 반영되었는지를 원자적으로 기록한다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class InventoryCheckpoint {
+
+    public static final Long SINGLETON_ID = 1L;
+
+    @Id
+    private Long id;
+
+    private long lastSegment; // DB 에 반영이 끝난 마지막 세그먼트 번호
+
+    public static InventoryCheckpoint create() {
+        InventoryCheckpoint checkpoint = new InventoryCheckpoint();
+        checkpoint.id = SINGLETON_ID;
+        return checkpoint;
+    }
+
+    public void advanceTo(long segment) {
+        if (segment > this.lastSegment) {
+            this.lastSegment = segment;
+        }
+    }
+}
@@ -5,11 +5,18 @@ import lombok.Setter;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        // 주문 목록 커서 페이징 (OrderCursor). columnList 는 물리 이름이 아니라 필드/@Column 이름으로 적는다.
+        @Index(name = "idx_orders_order_date_id", columnList = "orderDate, order_id")
+}, uniqueConstraints = {
+        // Idempotency-Key 는 회원마다 따로 쓴다. (다른 회원이 같은 키를 보내도 서로의 주문에 묶이지 않도록)
+        @UniqueConstraint(name = "uk_orders_member_idempotency_key", columnNames = {"member_id", "idempotencyKey"})
+})
 @Getter @Setter
 public class Order {
 
@@ -39,6 +46,17 @@ public class Order {
     @Enumerated(EnumType.STRING)
     private OrderStatus status; // 주문 상태 [ORDER, CANCEL]
 
+    @Version
+    private Long version; // 낙관적 락 (동시에 같은 주문을 취소하는 경우 등)
+
+    /*
+    클라이언트가 보낸 Idempotency-Key
+    타임아웃으로 같은 주문을 다시 보내도 주문이 두 번 생기지 않도록 (회원, 키) 유니크 제약으로 막는다.
+    (키 없이 들어온 주문은 null 이고, null 끼리는 유니크 제약에 걸리지 않는다.)
+     */
+    @Column(length = 64)
+    private String idempotencyKey;
+
     // 연관관계 편의 메소드
     public void setMember(Member member) {
         this.member = member;
@@ -75,7 +93,8 @@ public class Order {
         }
 
         order.setStatus(OrderStatus.ORDER);
-        order.setOrderDate(LocalDateTime.now());
+        // DB 에는 마이크로초까지만 저장되므로 메모리 값도 맞춰둔다. (같은 영속성 컨텍스트에서 커서를 만들어도 DB 값과 어긋나지 않도록)
+        order.setOrderDate(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
         return order;
     }
 
@@ -90,11 +109,7 @@ public class Order {
         /*
         이 부분은 따로 merge 등이 없었어도 잘 수정되어 반영되었었다.
          */
-        if(delivery.getStatus() == DeliveryStatus.COMP) {
-            throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다.");
-        }
-
-        this.setStatus(OrderStatus.CANCEL);
+        cancelWithoutRestock();
 
         /* 내부 멤버 변수라서 따로 `this` 키워드를 적을 필요는 없지만, 그래도 적어준다. */
         for (OrderItem orderItem: this.orderItems) {
@@ -102,6 +117,17 @@ public class Order {
         }
     }
 
+    /**
+     * 주문 취소 (재고 복구는 호출하는 쪽에서 직접 처리)
+     */
+    public void cancelWithoutRestock() {
+        if(delivery.getStatus() == DeliveryStatus.COMP) {
+            throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다.");
+        }
+
+        this.setStatus(OrderStatus.CANCEL);
+    }
+
     /*
     조회 로직
     */
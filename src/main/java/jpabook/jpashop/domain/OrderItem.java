@@ -35,13 +35,21 @@ public class OrderItem {
      * 주문상품 생성
      */
     public static OrderItem createOrderItem(Item item, int orderPrice, int count) {
+        OrderItem orderItem = createOrderItemWithoutStock(item, orderPrice, count);
+
+        item.removeStock(count);
+
+        return orderItem;
+    }
+
+    /**
+     * 주문상품 생성 (재고는 호출하는 쪽에서 이미 차감한 경우)
+     */
+    public static OrderItem createOrderItemWithoutStock(Item item, int orderPrice, int count) {
         OrderItem orderItem = new OrderItem();
         orderItem.setItem(item);
         orderItem.setOrderPrice(orderPrice);
         orderItem.setCount(count);
-
-        item.removeStock(count);
-
         return orderItem;
     }
 
@@ -1,9 +1,13 @@
 package jpabook.jpashop.domain.item;
 
 import jpabook.jpashop.domain.Category;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jpabook.jpashop.exception.NotEnoughStockException;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -13,6 +17,13 @@ import java.util.List;
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 // 3가지의 전략이 있는데, TABLE_PER_CLASS, JOINED, SINGLE_TABLE이 있다.
 @DiscriminatorColumn(name = "dtype")
+/*
+2차 캐시: 상품은 조회가 훨씬 많으므로 엔티티를 캐시에 두고 `find` 는 DB 를 거치지 않게 한다.
+캐시는 상속 구조의 루트에만 붙이고 Book/Album/Movie 는 같은 영역(item)을 쓴다.
+READ_WRITE 라서 변경 감지/merge 로 수정하면 커밋 시점에 캐시도 같이 바뀌고,
+벌크 UPDATE (removeStock/addStock) 는 Hibernate 가 item 영역을 통째로 비운다.
+ */
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item")
 @Getter @Setter
 public abstract class Item {
     @Id
@@ -24,11 +35,34 @@ public abstract class Item {
     private int price;
     private int stockQuantity;
 
+    /*
+    낙관적 락(Optimistic Lock)
+    UPDATE 시에 `where version = ?` 조건이 붙고, 다른 트랜잭션이 먼저 수정했으면
+    영향받은 row 가 0 이 되어 OptimisticLockException 이 발생한다.
+    -> 동시에 재고를 수정해도 나중에 쓴 쪽이 조용히 덮어쓰지 않는다.
+     */
+    @Version
+    private Long version;
+
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item-categories")
     @ManyToMany(mappedBy = "items")
     // 객체는 collection과 collection의 관계여서 중간 테이블이 없어도 다대다 관계가 가능한 반면,
     // 디비는 그게 불가능하기 때문에, 중간 연결 테이블이 있어야 한다.
     private List<Category> categories = new ArrayList<>();
 
+    /*
+    분할 재고 (주문이 몰리는 상품에만 선택적으로 사용)
+    true 이면 재고는 `stockQuantity` 대신 버킷들에 나뉘어 있고, `stockQuantity` 컬럼은 0 으로 둔다.
+     */
+    @Setter(AccessLevel.NONE)
+    private boolean splitStock;
+
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @OneToMany(mappedBy = "item", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("bucketNo")
+    private List<ItemStockBucket> stockBuckets = new ArrayList<>();
+
     /* 비즈니스 로직 */
 
     /* 도메인 주도 설계를 할 때
@@ -44,6 +78,10 @@ public abstract class Item {
      * 재고 증가
      */
     public void addStock(int quantity) {
+        if (splitStock) {
+            stockBuckets.get(homeBucket()).add(quantity);
+            return;
+        }
         this.stockQuantity += quantity;
     }
 
@@ -51,6 +89,10 @@ public abstract class Item {
      * 재고 감소
      */
     public void removeStock(int quantity) {
+        if (splitStock) {
+            removeStockFromBuckets(quantity);
+            return;
+        }
         int restStock = this.stockQuantity - quantity;
         if(restStock < 0) {
             throw new NotEnoughStockException("need more stock");
@@ -58,4 +100,99 @@ public abstract class Item {
         this.stockQuantity = restStock;
     }
 
+    /**
+     * 재고 수량 (분할 재고이면 버킷의 합)
+     */
+    public int getStockQuantity() {
+        if (splitStock) {
+            return stockBuckets.stream().mapToInt(ItemStockBucket::getQuantity).sum();
+        }
+        return stockQuantity;
+    }
+
+    public void setStockQuantity(int stockQuantity) {
+        if (splitStock) {
+            distribute(stockQuantity);
+            return;
+        }
+        this.stockQuantity = stockQuantity;
+    }
+
+    /**
+     * 분할 재고 사용
+     * 현재 재고를 `bucketCount` 개의 버킷에 고르게 나눈다. 이미 분할된 상품이면 버킷 수만 바꾼다.
+     */
+    public void enableSplitStock(int bucketCount) {
+        if (bucketCount < 2) {
+            throw new IllegalArgumentException("버킷은 2개 이상이어야 합니다.");
+        }
+        int total = getStockQuantity();
+
+        /*
+        버킷을 전부 지우고 새로 만들면 INSERT 가 DELETE 보다 먼저 실행되어 (item_id, bucket_no) 가 겹친다.
+        있는 버킷은 재사용하고 모자란 만큼만 추가, 남는 만큼만 삭제한다.
+         */
+        while (stockBuckets.size() > bucketCount) {
+            stockBuckets.remove(stockBuckets.size() - 1);
+        }
+        while (stockBuckets.size() < bucketCount) {
+            stockBuckets.add(ItemStockBucket.create(this, stockBuckets.size(), 0));
+        }
+
+        this.splitStock = true;
+        this.stockQuantity = 0;
+        distribute(total);
+    }
+
+    /**
+     * 분할 재고 해제 (버킷의 합을 다시 `stockQuantity`로 모은다)
+     */
+    public void disableSplitStock() {
+        if (!splitStock) {
+            return;
+        }
+        int total = getStockQuantity();
+        stockBuckets.clear();
+        this.splitStock = false;
+        this.stockQuantity = total;
+    }
+
+    /*
+    자기 버킷에서 먼저 빼고, 모자라면 이웃 버킷을 차례로 확인한다.
+    한 버킷으로 감당할 수 없는 수량이면 전체 합이 충분할 때만 여러 버킷에서 나눠서 뺀다.
+     */
+    private void removeStockFromBuckets(int quantity) {
+        int bucketCount = stockBuckets.size();
+        int home = homeBucket();
+
+        for (int i = 0; i < bucketCount; i++) {
+            if (stockBuckets.get((home + i) % bucketCount).tryRemove(quantity)) {
+                return;
+            }
+        }
+
+        if (getStockQuantity() < quantity) {
+            throw new NotEnoughStockException("need more stock");
+        }
+        int remaining = quantity;
+        for (int i = 0; i < bucketCount && remaining > 0; i++) {
+            remaining -= stockBuckets.get((home + i) % bucketCount).take(remaining);
+        }
+    }
+
+    /*
+    요청을 처리하는 스레드마다 다른 버킷을 고르게 해서, 동시에 들어온 주문이 같은 row 에 몰리지 않게 한다.
+     */
+    private int homeBucket() {
+        return (int) Math.floorMod(Thread.currentThread().getId(), (long) stockBuckets.size());
+    }
+
+    private void distribute(int total) {
+        int bucketCount = stockBuckets.size();
+        for (ItemStockBucket bucket : stockBuckets) {
+            int share = total / bucketCount + (bucket.getBucketNo() < total % bucketCount ? 1 : 0);
+            bucket.changeQuantity(share);
+        }
+    }
+
 }
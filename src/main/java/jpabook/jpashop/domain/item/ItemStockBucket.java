@@ -0,0 +1,75 @@
+package jpabook.jpashop.domain.item;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * 분할 재고 버킷
+ *
+ * 주문이 몰리는 상품은 item row 하나가 모든 주문을 줄 세우는 지점이 된다.
+ * 재고를 여러 row 로 나눠두면 서로 다른 버킷을 고른 주문끼리는 같은 row 를 두고 다투지 않는다.
+ */
+@Entity
+@Table(name = "item_stock_bucket",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"item_id", "bucket_no"}))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class ItemStockBucket {
+    @Id @GeneratedValue
+    @Column(name = "item_stock_bucket_id")
+    private Long id;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "item_id")
+    private Item item;
+
+    @Column(name = "bucket_no")
+    private int bucketNo;
+
+    private int quantity;
+
+    // 같은 버킷을 동시에 수정한 경우에만 충돌한다.
+    @Version
+    private Long version;
+
+    static ItemStockBucket create(Item item, int bucketNo, int quantity) {
+        ItemStockBucket bucket = new ItemStockBucket();
+        bucket.item = item;
+        bucket.bucketNo = bucketNo;
+        bucket.quantity = quantity;
+        return bucket;
+    }
+
+    /**
+     * 이 버킷만으로 충분할 때만 차감한다.
+     */
+    boolean tryRemove(int quantity) {
+        if (this.quantity < quantity) {
+            return false;
+        }
+        this.quantity -= quantity;
+        return true;
+    }
+
+    /**
+     * 최대 `max` 개까지 차감하고, 실제로 차감한 수량을 돌려준다.
+     */
+    int take(int max) {
+        int taken = Math.min(this.quantity, max);
+        this.quantity -= taken;
+        return taken;
+    }
+
+    void add(int quantity) {
+        this.quantity += quantity;
+    }
+
+    void changeQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,13 @@
+package jpabook.jpashop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/* 클라이언트가 보낸 Idempotency-Key 형식이 틀렸다. 서버 오류가 아니므로 400 으로 응답한다. */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidIdempotencyKeyException extends IllegalArgumentException {
+
+    public InvalidIdempotencyKeyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,412 @@
+package jpabook.jpashop.generator;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 성능 측정용 대량 데이터 생성기 (`generate` 프로필)
+ *
+ * InitDB 는 회원 2명, 책 4권, 주문 2건만 넣기 때문에 V1~V6 주문 API 를 실제에 가까운 양으로 비교할 수 없다.
+ * `--spring.profiles.active=generate` 로 띄우면 InitDB 대신 이 생성기가 돌고,
+ * 회원/상품(Book, Album, Movie)/카테고리 트리/주문을 설정한 양만큼 만든다.
+ *
+ * - 엔티티를 거치지 않고 JdbcTemplate 배치 INSERT 로 여러 스레드에서 동시에 넣는다.
+ * - 상품 인기는 Zipf 분포를 따른다. (일부 상품에 주문이 몰림)
+ * - 다 만든 뒤에는 H2 스냅샷 파일(SCRIPT)로 저장해두고, 다음부터는 그 파일로 몇 초 만에 복원한다.
+ *   (설정을 바꿨으면 `jpashop.generator.regenerate=true` 로 다시 만든다.)
+ *
+ * ID 는 모든 엔티티가 같이 쓰는 hibernate_sequence 에서 한 번에 구간을 잡아서 직접 매기고,
+ * 끝나면 시퀀스를 그 뒤로 옮겨둔다. (이후 JPA 로 저장하는 엔티티와 ID 가 겹치지 않게)
+ */
+@Slf4j
+@Component
+@Profile("generate")
+@RequiredArgsConstructor
+public class DataGenerator implements ApplicationRunner {
+
+    private static final String[] CITIES = {"서울", "부산", "대구", "인천", "광주", "대전", "울산", "수원"};
+
+    private static final String INSERT_MEMBER =
+            "insert into member (member_id, name, city, street, zipcode) values (?, ?, ?, ?, ?)";
+    private static final String INSERT_ITEM =
+            "insert into item (dtype, item_id, name, price, stock_quantity, version, split_stock," +
+                    " author, isbn, artist, etc, director, actor)" +
+                    " values (?, ?, ?, ?, ?, 0, false, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_CATEGORY =
+            "insert into category (category_id, name, parent_id) values (?, ?, ?)";
+    private static final String INSERT_CATEGORY_CLOSURE =
+            "insert into category_closure (category_closure_id, ancestor_id, descendant_id, depth) values (?, ?, ?, ?)";
+    private static final String INSERT_CATEGORY_ITEM =
+            "insert into category_item (category_id, item_id) values (?, ?)";
+    private static final String INSERT_DELIVERY =
+            "insert into delivery (delivery_id, city, street, zipcode, status) values (?, ?, ?, ?, ?)";
+    private static final String INSERT_ORDER =
+            "insert into orders (order_id, member_id, delivery_id, order_date, status, version) values (?, ?, ?, ?, ?, 0)";
+    private static final String INSERT_ORDER_ITEM =
+            "insert into order_item (order_item_id, order_id, item_id, order_price, count) values (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${jpashop.generator.members:10000}")
+    private int memberCount;
+
+    @Value("${jpashop.generator.books:3000}")
+    private int bookCount;
+
+    @Value("${jpashop.generator.albums:1000}")
+    private int albumCount;
+
+    @Value("${jpashop.generator.movies:1000}")
+    private int movieCount;
+
+    @Value("${jpashop.generator.orders:100000}")
+    private int orderCount;
+
+    @Value("${jpashop.generator.max-items-per-order:5}")
+    private int maxItemsPerOrder;
+
+    @Value("${jpashop.generator.popularity-skew:1.0}")
+    private double popularitySkew;
+
+    @Value("${jpashop.generator.category-depth:3}")
+    private int categoryDepth;
+
+    @Value("${jpashop.generator.category-fan-out:5}")
+    private int categoryFanOut;
+
+    @Value("${jpashop.generator.threads:0}")
+    private int threads;
+
+    @Value("${jpashop.generator.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${jpashop.generator.seed:42}")
+    private long seed;
+
+    @Value("${jpashop.generator.snapshot:./data/jpashop-snapshot.zip}")
+    private String snapshot;
+
+    @Value("${jpashop.generator.regenerate:false}")
+    private boolean regenerate;
+
+    private AtomicLong nextId;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        // SCRIPT/RUNSCRIPT 는 DB 서버가 파일을 읽고 쓰므로 절대 경로로 넘긴다. (tcp 서버가 같은 머신에 있다고 가정)
+        Path snapshotPath = Paths.get(snapshot).toAbsolutePath();
+
+        if (!regenerate && Files.exists(snapshotPath)) {
+            restore(snapshotPath);
+            return;
+        }
+
+        generate();
+
+        Files.createDirectories(snapshotPath.getParent());
+        long startedAt = System.currentTimeMillis();
+        jdbcTemplate.execute("SCRIPT TO '" + escape(snapshotPath) + "' COMPRESSION ZIP");
+        log.info("snapshot saved. path={}, {}ms", snapshotPath, System.currentTimeMillis() - startedAt);
+    }
+
+    private void restore(Path snapshotPath) {
+        long startedAt = System.currentTimeMillis();
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        jdbcTemplate.execute("RUNSCRIPT FROM '" + escape(snapshotPath) + "' COMPRESSION ZIP");
+        log.info("snapshot restored. path={}, {}ms", snapshotPath, System.currentTimeMillis() - startedAt);
+    }
+
+    private void generate() throws Exception {
+        int threadCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        nextId = new AtomicLong(jdbcTemplate.queryForObject("select next value for hibernate_sequence", Long.class));
+
+        try {
+            long[] memberIds = timed("members", memberCount, () -> insertMembers(executor, threadCount));
+            ItemCatalog catalog = timed("items", bookCount + albumCount + movieCount, this::insertItems);
+            timed("categories", catalog.size(), () -> {
+                insertCategories(catalog);
+                return null;
+            });
+            timed("orders", orderCount, () -> {
+                insertOrders(executor, threadCount, memberIds, catalog);
+                return null;
+            });
+        } finally {
+            executor.shutdown();
+        }
+
+        // 직접 매긴 ID 다음부터 JPA 가 이어서 쓰도록 시퀀스를 옮긴다.
+        jdbcTemplate.execute("alter sequence hibernate_sequence restart with " + nextId.get());
+    }
+
+    private long[] insertMembers(ExecutorService executor, int threadCount) throws Exception {
+        long[] memberIds = new long[memberCount];
+        for (int i = 0; i < memberCount; i++) {
+            memberIds[i] = nextId.getAndIncrement();
+        }
+
+        runPartitioned(executor, threadCount, memberCount, (from, to, random) -> {
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            for (int i = from; i < to; i++) {
+                batch.add(new Object[]{memberIds[i], "member" + i, CITIES[random.nextInt(CITIES.length)],
+                        "street" + random.nextInt(1000), String.format("%05d", random.nextInt(100000))});
+                if (batch.size() >= batchSize) {
+                    write(INSERT_MEMBER, batch);
+                }
+            }
+            write(INSERT_MEMBER, batch);
+        });
+        return memberIds;
+    }
+
+    /*
+    상품 종류별로 만든 뒤 순서를 섞어서, 인기 순위가 특정 종류에 몰리지 않게 한다.
+     */
+    private ItemCatalog insertItems() {
+        SplittableRandom random = new SplittableRandom(seed);
+        int total = bookCount + albumCount + movieCount;
+        ItemCatalog catalog = new ItemCatalog(total);
+
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < total; i++) {
+            long id = nextId.getAndIncrement();
+            int price = (1 + random.nextInt(100)) * 1000;
+            catalog.add(id, price);
+
+            if (i < bookCount) {
+                batch.add(new Object[]{"B", id, "Book " + i, price, 1_000_000, "author" + random.nextInt(1000), "isbn-" + id, null, null, null, null});
+            } else if (i < bookCount + albumCount) {
+                batch.add(new Object[]{"A", id, "Album " + i, price, 1_000_000, null, null, "artist" + random.nextInt(1000), null, null, null});
+            } else {
+                batch.add(new Object[]{"M", id, "Movie " + i, price, 1_000_000, null, null, null, null, "director" + random.nextInt(500), "actor" + random.nextInt(2000)});
+            }
+            if (batch.size() >= batchSize) {
+                write(INSERT_ITEM, batch);
+            }
+        }
+        write(INSERT_ITEM, batch);
+
+        catalog.shuffle(random);
+        return catalog;
+    }
+
+    /*
+    깊이 `category-depth`, 자식 수 `category-fan-out` 인 카테고리 트리를 만들고,
+    상품은 말단 카테고리에 골고루 나눠 담는다.
+    클로저 테이블(category_closure)에는 Category.addChildCategory 와 같게 조상(자기 포함) -> 자손 행을 모두 넣는다.
+     */
+    private void insertCategories(ItemCatalog catalog) {
+        List<Object[]> categories = new ArrayList<>();
+        List<Object[]> closures = new ArrayList<>();
+        Map<Long, List<Long>> ancestorsOf = new HashMap<>(); // 자기 자신부터 최상위까지
+        List<Long> level = new ArrayList<>();
+
+        long rootId = nextId.getAndIncrement();
+        categories.add(new Object[]{rootId, "전체", null});
+        ancestorsOf.put(rootId, List.of(rootId));
+        level.add(rootId);
+
+        for (int depth = 1; depth <= categoryDepth; depth++) {
+            List<Long> nextLevel = new ArrayList<>();
+            for (Long parentId : level) {
+                for (int i = 0; i < categoryFanOut; i++) {
+                    long id = nextId.getAndIncrement();
+                    categories.add(new Object[]{id, "카테고리 " + depth + "-" + nextLevel.size(), parentId});
+                    List<Long> ancestors = new ArrayList<>();
+                    ancestors.add(id);
+                    ancestors.addAll(ancestorsOf.get(parentId));
+                    ancestorsOf.put(id, ancestors);
+                    nextLevel.add(id);
+                }
+            }
+            level = nextLevel;
+        }
+        write(INSERT_CATEGORY, categories);
+
+        for (Map.Entry<Long, List<Long>> entry : ancestorsOf.entrySet()) {
+            List<Long> ancestors = entry.getValue();
+            for (int depth = 0; depth < ancestors.size(); depth++) {
+                closures.add(new Object[]{nextId.getAndIncrement(), ancestors.get(depth), entry.getKey(), depth});
+            }
+        }
+        write(INSERT_CATEGORY_CLOSURE, closures);
+
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < catalog.size(); i++) {
+            batch.add(new Object[]{level.get(i % level.size()), catalog.idAt(i)});
+            if (batch.size() >= batchSize) {
+                write(INSERT_CATEGORY_ITEM, batch);
+            }
+        }
+        write(INSERT_CATEGORY_ITEM, batch);
+    }
+
+    /*
+    주문 하나 = 배송 1 + 주문 1 + 주문상품 1~`max-items-per-order`
+    FK 순서대로 (배송 -> 주문 -> 주문상품) 같은 트랜잭션에서 배치로 넣는다.
+     */
+    private void insertOrders(ExecutorService executor, int threadCount, long[] memberIds, ItemCatalog catalog) throws Exception {
+        ZipfSampler popularity = new ZipfSampler(catalog.size(), popularitySkew);
+        LocalDateTime now = LocalDateTime.now();
+
+        runPartitioned(executor, threadCount, orderCount, (from, to, random) -> {
+            List<Object[]> deliveries = new ArrayList<>(batchSize);
+            List<Object[]> orders = new ArrayList<>(batchSize);
+            List<Object[]> orderItems = new ArrayList<>(batchSize * maxItemsPerOrder);
+
+            for (int i = from; i < to; i++) {
+                long orderId = nextId.getAndIncrement();
+                long deliveryId = nextId.getAndIncrement();
+                long memberId = memberIds[random.nextInt(memberIds.length)];
+                boolean cancelled = random.nextInt(100) < 5;
+                LocalDateTime orderDate = now.minusSeconds(random.nextLong(365L * 24 * 60 * 60));
+
+                deliveries.add(new Object[]{deliveryId, CITIES[random.nextInt(CITIES.length)], "street" + random.nextInt(1000),
+                        String.format("%05d", random.nextInt(100000)), random.nextInt(100) < 70 ? "COMP" : "READY"});
+                orders.add(new Object[]{orderId, memberId, deliveryId, Timestamp.valueOf(orderDate), cancelled ? "CANCEL" : "ORDER"});
+
+                int lines = 1 + random.nextInt(maxItemsPerOrder);
+                for (int line = 0; line < lines; line++) {
+                    int index = popularity.sample(random);
+                    orderItems.add(new Object[]{nextId.getAndIncrement(), orderId, catalog.idAt(index),
+                            catalog.priceAt(index), 1 + random.nextInt(3)});
+                }
+
+                if (orders.size() >= batchSize) {
+                    writeOrders(deliveries, orders, orderItems);
+                }
+            }
+            writeOrders(deliveries, orders, orderItems);
+        });
+    }
+
+    private void writeOrders(List<Object[]> deliveries, List<Object[]> orders, List<Object[]> orderItems) {
+        transactionTemplate.executeWithoutResult(status -> {
+            write(INSERT_DELIVERY, deliveries);
+            write(INSERT_ORDER, orders);
+            write(INSERT_ORDER_ITEM, orderItems);
+        });
+    }
+
+    private void write(String sql, List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(sql, batch);
+        batch.clear();
+    }
+
+    /*
+    [0, count) 를 스레드 수만큼 나눠서 동시에 실행한다.
+    스레드마다 seed 를 다르게 주되 고정해서, 같은 설정이면 같은 데이터가 나오게 한다. (ID 순서는 다를 수 있음)
+     */
+    private void runPartitioned(ExecutorService executor, int threadCount, int count, PartitionTask task) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        int size = (count + threadCount - 1) / threadCount;
+        for (int partition = 0; partition < threadCount; partition++) {
+            int from = partition * size;
+            int to = Math.min(count, from + size);
+            if (from >= to) {
+                break;
+            }
+            SplittableRandom random = new SplittableRandom(seed + partition);
+            futures.add(executor.submit(() -> {
+                task.run(from, to, random);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private <T> T timed(String name, int rows, GeneratorStep<T> step) throws Exception {
+        long startedAt = System.nanoTime();
+        T result = step.run();
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        log.info("generated {}. rows={}, {}ms, {} rows/sec", name, rows, elapsedMillis, rows * 1000L / elapsedMillis);
+        return result;
+    }
+
+    private static String escape(Path path) {
+        return path.toString().replace("'", "''");
+    }
+
+    @FunctionalInterface
+    private interface PartitionTask {
+        void run(int from, int to, SplittableRandom random);
+    }
+
+    @FunctionalInterface
+    private interface GeneratorStep<T> {
+        T run() throws Exception;
+    }
+
+    /*
+    상품 ID 와 가격 (인기 순위 -> 상품)
+     */
+    private static class ItemCatalog {
+        private final long[] ids;
+        private final int[] prices;
+        private int size;
+
+        ItemCatalog(int capacity) {
+            ids = new long[capacity];
+            prices = new int[capacity];
+        }
+
+        void add(long id, int price) {
+            ids[size] = id;
+            prices[size] = price;
+            size++;
+        }
+
+        void shuffle(SplittableRandom random) {
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                long id = ids[i];
+                ids[i] = ids[j];
+                ids[j] = id;
+                int price = prices[i];
+                prices[i] = prices[j];
+                prices[j] = price;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        long idAt(int index) {
+            return ids[index];
+        }
+
+        int priceAt(int index) {
+            return prices[index];
+        }
+    }
+}
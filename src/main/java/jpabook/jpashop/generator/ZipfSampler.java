@@ -0,0 +1,49 @@
+package jpabook.jpashop.generator;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zipf 분포 샘플러
+ *
+ * 순위가 k 인 항목이 뽑힐 확률이 1 / k^s 에 비례한다.
+ * 실제 쇼핑몰처럼 소수의 인기 상품에 주문이 몰리는 데이터를 만들 때 쓴다. (s 가 클수록 더 쏠린다)
+ *
+ * 누적 분포를 한 번 계산해두고 이진 탐색으로 뽑으므로, 뽑는 비용은 O(log n) 이다.
+ */
+class ZipfSampler {
+
+    private final double[] cumulative;
+
+    ZipfSampler(int size, double exponent) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size 는 1 이상이어야 합니다.");
+        }
+        cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 1; rank <= size; rank++) {
+            sum += 1.0 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = sum;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    /**
+     * @return 0 부터 시작하는 순위 (0 이 가장 인기 있는 항목)
+     */
+    int sample(SplittableRandom random) {
+        double target = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,149 @@
+package jpabook.jpashop.monitoring;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * HTTP 요청 하나에서 실행된 SQL 통계
+ *
+ * 요청을 처리하는 스레드에 묶여서(QueryStatsFilter) p6spy 리스너(QueryStatsListener)가 채운다.
+ * 바인딩 값만 다르고 모양이 같은 SQL 을 묶어서 세므로, 같은 모양이 여러 번 나오면 N + 1 을 의심할 수 있다.
+ *
+ * 요청 스레드가 다른 스레드에 조회를 맡기고 기다리는 경우(BatchCollectionLoader 의 동시 조회)는 propagate 로 감싸서
+ * 그 스레드의 SQL 도 같은 통계에 넣는다. 그래서 기록/조회는 여러 스레드에서 동시에 일어날 수 있다.
+ * 요청과 따로 도는 스레드(주문 파이프라인 writer, 스케줄러)와 비동기 응답은 세지 않는다. (QueryStatsFilter 참고)
+ */
+public class QueryStats {
+
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private static final int MAX_SHAPES = 1000; // 모양이 전부 다른 SQL 이 계속 나와도 메모리가 늘지 않도록
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private int statements;
+    private long rows;
+    private long jdbcNanos;
+    private final Map<String, Integer> shapes = new HashMap<>();
+
+    static void begin(QueryStats stats) {
+        CURRENT.set(stats);
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 현재 스레드가 HTTP 요청을 처리하는 중이 아니면 null
+     */
+    static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 현재 스레드의 통계를 `task` 를 실행하는 스레드에도 묶는다. (통계가 없으면 그대로 실행)
+     * 요청이 끝나기 전에 결과를 기다리는 작업에만 쓴다.
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        QueryStats stats = CURRENT.get();
+        if (stats == null) {
+            return task;
+        }
+        return () -> {
+            QueryStats previous = CURRENT.get();
+            CURRENT.set(stats);
+            try {
+                return task.call();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    synchronized void recordStatement(String sql, long elapsedNanos) {
+        statements++;
+        jdbcNanos += elapsedNanos;
+        if (sql == null) {
+            return;
+        }
+        String shape = shapeOf(sql);
+        if (shapes.containsKey(shape) || shapes.size() < MAX_SHAPES) {
+            shapes.merge(shape, 1, Integer::sum);
+        }
+    }
+
+    synchronized void recordRow(long elapsedNanos) {
+        rows++;
+        jdbcNanos += elapsedNanos;
+    }
+
+    synchronized void recordFetch(long elapsedNanos) {
+        jdbcNanos += elapsedNanos;
+    }
+
+    public synchronized int getStatements() {
+        return statements;
+    }
+
+    public synchronized long getRows() {
+        return rows;
+    }
+
+    public synchronized double getJdbcMillis() {
+        return jdbcNanos / 1_000_000.0;
+    }
+
+    /**
+     * 같은 모양이 `threshold` 번 이상 실행된 SQL (많이 실행된 순)
+     */
+    public synchronized List<RepeatedStatement> repeatedStatements(int threshold) {
+        return shapes.entrySet()
+                .stream()
+                .filter(e -> e.getValue() >= threshold)
+                .map(e -> new RepeatedStatement(e.getKey(), e.getValue()))
+                .sorted(Comparator.comparingInt(RepeatedStatement::getCount).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /*
+    SQL 모양: 리터럴을 ? 로 바꾸고, IN (?, ?, ...) 은 개수와 상관없이 IN (?...) 로 줄이고, 공백을 하나로 합친다.
+    PreparedStatement 는 이미 ? 로 되어 있으므로 사실상 공백 정리만 된다.
+     */
+    static String shapeOf(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("(?...)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    public static class RepeatedStatement {
+        private final String sql;
+        private final int count;
+
+        RepeatedStatement(String sql, int count) {
+            this.sql = sql;
+            this.count = count;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package jpabook.jpashop.monitoring;
+
+import jpabook.jpashop.monitoring.QueryStats.RepeatedStatement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * 요청별 SQL 수 / row 수 / JDBC 시간을 응답 헤더로 내보낸다.
+ *
+ * - X-Query-Count: 실행된 SQL 수
+ * - Server-Timing: db;dur=JDBC 시간(ms);desc="SQL 수, row 수" (브라우저 개발자 도구의 Timing 탭에 보인다)
+ *
+ * SQL 수가 `warn-threshold` 를 넘거나 같은 모양의 SQL 이 `repeat-threshold` 번 이상 나오면(N + 1 의심) 경고 로그를 남긴다.
+ *
+ * 헤더는 본문 첫 바이트를 쓰기 직전에 붙인다. 그 뒤에 실행된 SQL (예: 엔티티를 그대로 JSON 으로 바꾸면서 일어난 지연 로딩)은
+ * 응답이 크면 헤더에는 빠질 수 있지만 경고 로그에는 포함된다.
+ *
+ * 비동기 응답(CompletableFuture 주문 접수, StreamingResponseBody 주문 내보내기)은 SQL 대부분이 요청 스레드가 돌아온 뒤
+ * 다른 스레드(주문 파이프라인 writer, 내보내기 스레드)에서 실행되므로 헤더도 경고 로그도 남기지 않는다.
+ * (일부만 센 값이 N + 1 판단이나 응답 시간 분석에 섞이지 않도록)
+ */
+@Slf4j
+@Component
+public class QueryStatsFilter extends OncePerRequestFilter {
+
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private static final int MAX_LOGGED_STATEMENTS = 3;
+
+    @Value("${jpashop.query-stats.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jpashop.query-stats.warn-threshold:30}")
+    private int warnThreshold;
+
+    @Value("${jpashop.query-stats.repeat-threshold:10}")
+    private int repeatThreshold;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        QueryStats stats = new QueryStats();
+        QueryStatsResponse statsResponse = new QueryStatsResponse(request, response, stats);
+
+        QueryStats.begin(stats);
+        try {
+            filterChain.doFilter(request, statsResponse);
+        } finally {
+            QueryStats.end();
+            if (!request.isAsyncStarted()) {
+                statsResponse.writeHeaders();
+                report(request, stats);
+            }
+        }
+    }
+
+    private void report(HttpServletRequest request, QueryStats stats) {
+        List<RepeatedStatement> repeated = stats.repeatedStatements(repeatThreshold);
+        if (stats.getStatements() <= warnThreshold && repeated.isEmpty()) {
+            log.debug("{} {} queries={}, rows={}, jdbc={}ms", request.getMethod(), request.getRequestURI(),
+                    stats.getStatements(), stats.getRows(), String.format("%.1f", stats.getJdbcMillis()));
+            return;
+        }
+
+        String repeatedSummary = repeated.stream()
+                .limit(MAX_LOGGED_STATEMENTS)
+                .map(statement -> statement.getCount() + "x " + statement.getSql())
+                .collect(Collectors.joining("\n  ", "\n  ", ""));
+        log.warn("query threshold exceeded. {} {} queries={}, rows={}, jdbc={}ms, repeated statements (possible N + 1)={}{}",
+                request.getMethod(), request.getRequestURI(),
+                stats.getStatements(), stats.getRows(), String.format("%.1f", stats.getJdbcMillis()),
+                repeated.size(), repeated.isEmpty() ? "" : repeatedSummary);
+    }
+
+    /*
+    본문을 쓰기 시작하면 헤더를 바꿀 수 없으므로, 첫 쓰기/flush 직전에 그때까지의 통계로 헤더를 붙인다.
+     */
+    private static class QueryStatsResponse extends HttpServletResponseWrapper {
+        private final HttpServletRequest request;
+        private final QueryStats stats;
+        private boolean headersWritten;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        QueryStatsResponse(HttpServletRequest request, HttpServletResponse response, QueryStats stats) {
+            super(response);
+            this.request = request;
+            this.stats = stats;
+        }
+
+        /*
+        비동기 응답은 본문을 다른 스레드에서 쓰므로 그때까지 센 값은 일부뿐이다. 헤더를 붙이지 않는다.
+         */
+        synchronized void writeHeaders() {
+            if (headersWritten) {
+                return;
+            }
+            headersWritten = true;
+            if (isCommitted() || request.isAsyncStarted()) {
+                return;
+            }
+            setHeader(QUERY_COUNT_HEADER, String.valueOf(stats.getStatements()));
+            addHeader(SERVER_TIMING_HEADER, String.format(Locale.ROOT, "db;dur=%.1f;desc=\"%d queries, %d rows\"",
+                    stats.getJdbcMillis(), stats.getStatements(), stats.getRows()));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new HeaderWritingOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new HeaderWritingWriter(super.getWriter()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeaders();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeaders();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeaders();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeHeaders();
+            super.sendRedirect(location);
+        }
+
+        private class HeaderWritingOutputStream extends ServletOutputStream {
+            private final ServletOutputStream delegate;
+
+            HeaderWritingOutputStream(ServletOutputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                writeHeaders();
+                delegate.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                writeHeaders();
+                delegate.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writeHeaders();
+                delegate.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writeHeaders();
+                delegate.close();
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                delegate.setWriteListener(writeListener);
+            }
+        }
+
+        private class HeaderWritingWriter extends Writer {
+            private final Writer delegate;
+
+            HeaderWritingWriter(Writer delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                writeHeaders();
+                delegate.write(cbuf, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writeHeaders();
+                delegate.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writeHeaders();
+                delegate.close();
+            }
+        }
+    }
+}
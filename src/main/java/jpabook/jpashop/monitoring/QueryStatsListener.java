@@ -0,0 +1,43 @@
+package jpabook.jpashop.monitoring;
+
+import com.p6spy.engine.common.ResultSetInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+
+/**
+ * p6spy 이벤트로 요청별 SQL 통계(QueryStats)를 채운다.
+ *
+ * p6spy-spring-boot-starter 가 빈으로 등록된 JdbcEventListener 를 DataSource 에 붙여준다.
+ * HTTP 요청 밖(스케줄러, 주문 파이프라인 writer 등)에서 실행된 SQL 은 세지 않는다.
+ * 요청 스레드가 맡긴 동시 조회는 QueryStats.propagate 로 같은 통계에 들어간다.
+ */
+@Component
+public class QueryStatsListener extends SimpleJdbcEventListener {
+
+    /*
+    execute, executeQuery, executeUpdate, executeBatch 모두 여기로 모인다. (배치는 한 번으로 센다)
+     */
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        QueryStats stats = QueryStats.current();
+        if (stats != null) {
+            stats.recordStatement(statementInformation.getSql(), timeElapsedNanos);
+        }
+    }
+
+    @Override
+    public void onAfterResultSetNext(ResultSetInformation resultSetInformation, long timeElapsedNanos, boolean hasNext, SQLException e) {
+        QueryStats stats = QueryStats.current();
+        if (stats == null) {
+            return;
+        }
+        if (hasNext) {
+            stats.recordRow(timeElapsedNanos);
+        } else {
+            stats.recordFetch(timeElapsedNanos);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.datasource.ReadYourWrites;
+import jpabook.jpashop.datasource.ReplicaReads;
+import jpabook.jpashop.monitoring.QueryStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+
+/**
+ * ID 목록으로 컬렉션(예: 주문 ID -> 주문상품)을 IN 쿼리로 가져와서 ID 별로 묶는다.
+ *
+ * - ID 를 `chunk-size` 개씩 나눠서 조회한다. 한 번에 다 넣으면 DB 의 IN 목록 한도를 넘을 수 있다.
+ * - 마지막 묶음은 2의 거듭제곱 크기로 마지막 ID 를 반복해서 채운다. IN 목록 길이가 몇 가지로만 나오므로
+ *   같은 SQL 이 다시 쓰여서 문장/실행 계획 캐시에 걸린다. (Hibernate 의 in_clause_parameter_padding 과 같은 방식)
+ * - 묶음이 여러 개면 `parallelism` 개의 스레드가 각자 커넥션을 잡고 동시에 조회한다.
+ *   커넥션 풀 크기보다 작게 둬야 요청 스레드가 커넥션을 못 얻는 일이 없다.
+ *
+ * 동시 조회는 호출한 쪽의 트랜잭션과 다른 커넥션에서 실행되므로 커밋된 데이터만 보인다.
+ * 그래서 쓰기 트랜잭션 안에서 호출하면 (아직 커밋 안 된 변경을 봐야 할 수 있으므로) 호출한 쪽 EntityManager 로 차례대로 조회한다.
+ *
+ * 읽기 전용 트랜잭션에서 호출하면 묶음마다 읽기 전용 트랜잭션을 열어서 호출한 쪽과 같은 DB 로 가게 한다.
+ * (ReplicaRoutingDataSource 는 읽기 전용 트랜잭션만 replica 로 보내고, ReadYourWrites 도 함께 넘긴다)
+ * 단, 호출한 쪽이 이미 replica 에서 읽고 있으면 차례대로 조회한다. 묶음마다 다른 replica 를 고르면
+ * 복제 지연이 서로 달라서 주문과 주문상품이 다른 시점의 데이터가 될 수 있다.
+ */
+@Component
+@RequiredArgsConstructor
+public class BatchCollectionLoader {
+
+    private final EntityManager entityManager;
+    private final EntityManagerFactory entityManagerFactory;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${jpashop.query.batch-loader.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${jpashop.query.batch-loader.parallelism:4}")
+    private int parallelism;
+
+    private ExecutorService loaderPool;
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    public void start() {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("jpashop.query.batch-loader.chunk-size 는 1 이상이어야 합니다.");
+        }
+        if (parallelism <= 1) {
+            return;
+        }
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        AtomicInteger sequence = new AtomicInteger();
+        loaderPool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "batch-loader-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (loaderPool == null) {
+            return;
+        }
+        loaderPool.shutdown();
+        if (!loaderPool.awaitTermination(10, TimeUnit.SECONDS)) {
+            loaderPool.shutdownNow();
+        }
+    }
+
+    /**
+     * @param ids   조회할 ID (중복이 있어도 된다)
+     * @param jpql  `:ids` 파라미터로 IN 조회하는 JPQL
+     * @param type  결과 타입
+     * @param keyOf 결과에서 묶을 ID 를 꺼내는 함수
+     * @return ID -> 결과 목록 (결과가 없는 ID 는 들어있지 않다)
+     */
+    public <T> LongKeyMap<List<T>> load(Collection<Long> ids, String jpql, Class<T> type, ToLongFunction<T> keyOf) {
+        List<List<Long>> chunks = chunk(ids);
+        LongKeyMap<List<T>> result = new LongKeyMap<>(ids.size());
+        for (List<T> rows : fetch(chunks, jpql, type)) {
+            for (T row : rows) {
+                result.computeIfAbsent(keyOf.applyAsLong(row), key -> new ArrayList<>()).add(row);
+            }
+        }
+        return result;
+    }
+
+    private <T> List<List<T>> fetch(List<List<Long>> chunks, String jpql, Class<T> type) {
+        List<List<T>> results = new ArrayList<>(chunks.size());
+        if (!canRunInParallel(chunks)) {
+            for (List<Long> chunk : chunks) {
+                results.add(query(entityManager, jpql, type, chunk));
+            }
+            return results;
+        }
+
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        List<Future<List<T>>> futures = new ArrayList<>(chunks.size());
+        for (List<Long> chunk : chunks) {
+            Callable<List<T>> task = readOnly
+                    ? () -> readOnlyTransaction.execute(status -> query(entityManager, jpql, type, chunk))
+                    : () -> queryWithOwnEntityManager(jpql, type, chunk);
+            // 요청별 SQL 통계(QueryStats)에 동시 조회한 SQL 도 들어가도록 요청 스레드의 통계를 넘긴다.
+            futures.add(loaderPool.submit(QueryStats.propagate(ReadYourWrites.propagate(task))));
+        }
+        try {
+            for (Future<List<T>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("IN 조회 중 인터럽트되었습니다.", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    private boolean canRunInParallel(List<List<Long>> chunks) {
+        if (loaderPool == null || chunks.size() < 2) {
+            return false;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return true;
+        }
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !ReplicaReads.isReplicaRead();
+    }
+
+    /*
+    트랜잭션 없이 호출했을 때: 호출한 쪽처럼 트랜잭션 없이 (primary 에서) 조회한다.
+     */
+    private <T> List<T> queryWithOwnEntityManager(String jpql, Class<T> type, List<Long> chunk) {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            return query(em, jpql, type, chunk);
+        } finally {
+            em.close();
+        }
+    }
+
+    private static <T> List<T> query(EntityManager em, String jpql, Class<T> type, List<Long> chunk) {
+        return em.createQuery(jpql, type)
+                .setParameter("ids", chunk)
+                .setHint("org.hibernate.readOnly", true)
+                .getResultList();
+    }
+
+    /*
+    중복을 없애고 정렬해서 `chunkSize` 개씩 나눈다. (정렬하면 묶음마다 인덱스를 한 구간씩 읽는다)
+    마지막 묶음은 2의 거듭제곱 크기(최대 chunkSize)까지 마지막 ID 로 채운다.
+     */
+    List<List<Long>> chunk(Collection<Long> ids) {
+        long[] sorted = ids.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        List<List<Long>> chunks = new ArrayList<>((sorted.length + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < sorted.length; from += chunkSize) {
+            int to = Math.min(from + chunkSize, sorted.length);
+            int size = to - from;
+            int padded = size == 1 ? 1 : Math.max(Math.min(Integer.highestOneBit(size - 1) << 1, chunkSize), size);
+
+            Long[] chunk = new Long[padded];
+            for (int i = 0; i < padded; i++) {
+                chunk[i] = sorted[Math.min(from + i, to - 1)];
+            }
+            chunks.add(Arrays.asList(chunk));
+        }
+        return chunks;
+    }
+}
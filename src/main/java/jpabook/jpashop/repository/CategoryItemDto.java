@@ -0,0 +1,19 @@
+package jpabook.jpashop.repository;
+
+import lombok.Getter;
+
+/**
+ * 카테고리 하위 트리의 상품 목록 한 줄 (CategoryRepository.findSubtreeItems)
+ */
+@Getter
+public class CategoryItemDto {
+    private final Long id;
+    private final String name;
+    private final int price;
+
+    public CategoryItemDto(Long id, String name, int price) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+    }
+}
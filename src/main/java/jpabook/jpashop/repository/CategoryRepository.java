@@ -0,0 +1,53 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Category;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class CategoryRepository {
+    private final EntityManager entityManager;
+
+    public void save(Category category) {
+        entityManager.persist(category); // 클로저 테이블 행도 같이 저장된다. (cascade)
+    }
+
+    public Category findOne(Long id) {
+        return entityManager.find(Category.class, id);
+    }
+
+    /**
+     * 트리 스냅샷용 전체 카테고리 {id, name, parentId}
+     * 엔티티를 올리지 않고 트리를 만드는 데 필요한 컬럼만 한 번에 읽는다.
+     */
+    public List<Object[]> findAllNodes() {
+        return entityManager.createQuery(
+                "select c.id, c.name, p.id from Category c left join c.parent p", Object[].class)
+                .getResultList();
+    }
+
+    /**
+     * 하위 트리(자기 포함)의 모든 카테고리에 담긴 상품을 ID 순으로 `afterItemId` 다음부터 `limit` 개
+     *
+     * 클로저 테이블에서 하위 카테고리를 찾고 category_item 으로 바로 상품에 붙이므로 트리 깊이와 상관없이 SQL 한 번이다.
+     * 상품 엔티티 대신 목록에 필요한 컬럼만 읽는다. (여러 하위 카테고리에 담긴 상품은 한 번만)
+     */
+    public List<CategoryItemDto> findSubtreeItems(Long categoryId, Long afterItemId, int limit) {
+        return entityManager.createQuery(
+                "select distinct new jpabook.jpashop.repository.CategoryItemDto(i.id, i.name, i.price)" +
+                        " from CategoryClosure cc" +
+                        " join cc.descendant c" +
+                        " join c.items i" +
+                        " where cc.ancestor.id = :categoryId" +
+                        " and i.id > :afterItemId" +
+                        " order by i.id", CategoryItemDto.class)
+                .setParameter("categoryId", categoryId)
+                .setParameter("afterItemId", afterItemId == null ? 0L : afterItemId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
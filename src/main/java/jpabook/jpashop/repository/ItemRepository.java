@@ -2,10 +2,14 @@ package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.item.Item;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
@@ -26,7 +30,72 @@ public class ItemRepository {
         return entityManager.find(Item.class, id);
     }
 
+    /*
+    주문 화면의 상품 목록처럼 자주 불리므로 쿼리 캐시에 둔다.
+    쿼리 캐시에는 결과 ID 만 있고 엔티티는 2차 캐시에서 꺼내므로, 둘 다 맞으면 DB 를 거치지 않는다.
+    item 테이블이 바뀌면 (재고 변경 포함) 캐시된 결과는 버려지고 다음 조회에서 다시 채워진다.
+     */
     public List<Item> findAll() {
-        return entityManager.createQuery("select i from Item i", Item.class).getResultList();
+        return entityManager.createQuery("select i from Item i", Item.class)
+                .setHint(QueryHints.CACHEABLE, true)
+                .getResultList();
+    }
+
+    /*
+    장바구니 주문처럼 여러 상품을 한번에 다뤄야 할 때
+    상품마다 `findOne`을 호출하면 상품 수만큼 쿼리가 나가므로,
+    IN 절로 한번에 조회한다.
+     */
+    public List<Item> findAllByIds(Collection<Long> ids) {
+        return entityManager.createQuery("select i from Item i where i.id in :ids", Item.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    /**
+     * 상품 ID -> 가격 (엔티티를 올리지 않고 필요한 값만 조회)
+     */
+    public Map<Long, Integer> findPrices(Collection<Long> ids) {
+        return entityManager.createQuery("select i.id, i.price from Item i where i.id in :ids", Object[].class)
+                .setParameter("ids", ids)
+                .getResultStream()
+                .collect(Collectors.toMap(row -> (Long) row[0], row -> (Integer) row[1]));
+    }
+
+    /*
+    재고 감소를 엔티티의 변경 감지(Dirty Checking)에 맡기면
+    `stockQuantity`를 읽어서 자바에서 빼고, flush 시점에 덮어쓰게 된다.
+    동시에 두 주문이 같은 재고를 읽으면 나중에 쓴 쪽이 이겨버린다. (갱신 분실)
+
+    아래처럼 조건부 UPDATE 한 번으로 처리하면 DB 가 원자적으로 차감해주므로 경쟁 상태가 없다.
+    - 영향받은 row 수가 1이면 차감 성공, 0이면 재고 부족 (혹은 없는 상품)
+
+    벌크 연산은 `@Version`을 자동으로 올려주지 않으므로 직접 증가시켜서,
+    같은 상품을 엔티티로 수정하고 있던 트랜잭션이 낙관적 락 충돌을 감지할 수 있게 한다.
+
+    주의: 벌크 연산은 영속성 컨텍스트를 거치지 않기 때문에,
+    이미 영속성 컨텍스트에 올라와 있는 Item 의 `stockQuantity`는 갱신되지 않는다.
+     */
+    public int removeStock(Long itemId, int quantity) {
+        return entityManager.createQuery(
+                "update Item i" +
+                        " set i.stockQuantity = i.stockQuantity - :quantity" +
+                        ", i.version = i.version + 1" +
+                        " where i.id = :itemId" +
+                        " and i.stockQuantity >= :quantity")
+                .setParameter("quantity", quantity)
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+    }
+
+    public int addStock(Long itemId, int quantity) {
+        return entityManager.createQuery(
+                "update Item i" +
+                        " set i.stockQuantity = i.stockQuantity + :quantity" +
+                        ", i.version = i.version + 1" +
+                        " where i.id = :itemId")
+                .setParameter("quantity", quantity)
+                .setParameter("itemId", itemId)
+                .executeUpdate();
     }
 }
@@ -0,0 +1,142 @@
+package jpabook.jpashop.repository;
+
+import java.util.function.LongFunction;
+
+/**
+ * long 키 전용 해시 맵 (BatchCollectionLoader 의 결과)
+ *
+ * 주문 ID 처럼 long 키가 수십만 개 들어가도 키마다 Long 객체와 HashMap.Node 를 만들지 않는다.
+ * 배열 두 개(키, 값)에 선형 탐사로 넣는다. 값은 null 일 수 없다. (빈 칸 표시로 쓴다)
+ * 조회 스레드 하나에서 만들고 읽는 용도이므로 동기화하지 않는다.
+ */
+public class LongKeyMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    public LongKeyMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize 넣을 키 개수 (이만큼은 크기를 늘리지 않고 들어간다)
+     */
+    public LongKeyMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return values[indexOf(key)] != null;
+    }
+
+    public V get(long key) {
+        return getOrDefault(key, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(long key, V defaultValue) {
+        Object value = values[indexOf(key)];
+        return value != null ? (V) value : defaultValue;
+    }
+
+    /**
+     * @return 이전 값 (없었으면 null)
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null 값은 넣을 수 없습니다.");
+        }
+        int index = indexOf(key);
+        Object previous = values[index];
+        keys[index] = key;
+        values[index] = value;
+        if (previous == null) {
+            size++;
+            growIfNeeded();
+        }
+        return (V) previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        int index = indexOf(key);
+        Object value = values[index];
+        if (value == null) {
+            value = mappingFunction.apply(key);
+            keys[index] = key;
+            values[index] = value;
+            size++;
+            growIfNeeded();
+        }
+        return (V) value;
+    }
+
+    /*
+    키가 있으면 그 칸, 없으면 넣을 빈 칸
+    크기를 절반 이하로 유지하므로 빈 칸이 항상 있다.
+     */
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (values[index] != null && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void growIfNeeded() {
+        if (size * 2 <= keys.length) {
+            return;
+        }
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    // 시퀀스로 만든 연속된 ID 가 한쪽에 몰리지 않도록 섞는다. (MurmurHash3 fmix64)
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(keys[i]).append('=').append(values[i]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -2,9 +2,26 @@ package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.Member;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface MemberRepository extends JpaRepository<Member, Long> {
     List<Member> findByName(String name);
+
+    // 엔티티를 만들지 않고 member.name 유니크 인덱스로 한 건만 확인한다.
+    boolean existsByName(String name);
+
+    // 회원 이름 Bloom filter 를 만들 때 (MemberNameFilter, 트랜잭션 안에서 다 읽고 닫아야 한다)
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = "1000"))
+    @Query("select m.name from Member m where m.name is not null")
+    Stream<String> streamAllNames();
+
+    // 주문 화면의 회원 목록 (쿼리 캐시, ItemRepository.findAll 과 같은 이유)
+    @Override
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.CACHEABLE, value = "true"))
+    List<Member> findAll();
 }
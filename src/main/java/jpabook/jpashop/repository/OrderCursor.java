@@ -0,0 +1,61 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Order;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 주문 목록 커서 (keyset pagination)
+ *
+ * 주문 목록은 최신 주문부터 (orderDate desc, id desc) 정렬하므로, 마지막으로 본 주문의 (orderDate, id) 만 있으면
+ * 몇 번째 페이지든 `orders(order_date, order_id)` 인덱스에서 바로 그 다음 위치부터 읽을 수 있다.
+ * offset 처럼 앞 페이지를 읽고 버리지 않으므로 만 번째 페이지도 첫 페이지와 비용이 같다.
+ *
+ * 클라이언트에게는 내용을 알 필요 없는 문자열(Base64)로 내보낸다.
+ */
+@Getter
+public class OrderCursor {
+
+    private final LocalDateTime orderDate;
+    private final Long id;
+
+    private OrderCursor(LocalDateTime orderDate, Long id) {
+        this.orderDate = orderDate;
+        this.id = id;
+    }
+
+    public static OrderCursor of(Order order) {
+        return new OrderCursor(order.getOrderDate(), order.getId());
+    }
+
+    public static OrderCursor of(LocalDateTime orderDate, Long id) {
+        return new OrderCursor(orderDate, id);
+    }
+
+    /**
+     * @return 비어 있으면 null (첫 페이지)
+     */
+    public static OrderCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf('|');
+            return new OrderCursor(
+                    LocalDateTime.parse(decoded.substring(0, separator)),
+                    Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다. cursor=" + cursor);
+        }
+    }
+
+    public String encode() {
+        String raw = orderDate + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -2,20 +2,30 @@ package jpabook.jpashop.repository;
 
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderStatus;
 import jpabook.jpashop.domain.QMember;
 import jpabook.jpashop.domain.QOrder;
 import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import static jpabook.jpashop.domain.QDelivery.delivery;
 import static jpabook.jpashop.domain.QMember.member;
 import static jpabook.jpashop.domain.QOrder.order;
 
@@ -38,6 +48,78 @@ public class OrderRepository {
         return entityManager.find(Order.class, id);
     }
 
+    /*
+    주문 엔티티를 올리지 않고, 주문에 포함된 상품 ID 만 조회
+    `oi.item.id`는 FK 값을 바로 가져오므로 Item 테이블과 조인하지 않는다.
+     */
+    public List<Long> findItemIds(Long orderId) {
+        return entityManager.createQuery(
+                "select oi.item.id from OrderItem oi" +
+                        " where oi.order.id = :orderId", Long.class)
+                .setParameter("orderId", orderId)
+                .getResultList();
+    }
+
+    /*
+    일괄 취소 대상 확인 (쿼리 한 번)
+    - 주문 상태가 ORDER 이고, 배송 완료(COMP)가 아닌 주문만 취소할 수 있다. (Order.cancelWithoutRestock 과 같은 조건)
+    - 배송 상태가 아직 없는(null) 주문도 취소할 수 있다.
+     */
+    public List<Long> findCancelableIds(Collection<Long> orderIds) {
+        return entityManager.createQuery(
+                "select o.id from Order o" +
+                        " join o.delivery d" +
+                        " where o.id in :orderIds" +
+                        " and o.status = :order" +
+                        " and (d.status is null or d.status <> :comp)", Long.class)
+                .setParameter("orderIds", orderIds)
+                .setParameter("order", OrderStatus.ORDER)
+                .setParameter("comp", DeliveryStatus.COMP)
+                .getResultList();
+    }
+
+    /**
+     * 주문들에 포함된 상품별 주문 수량 합계 (상품 ID -> 수량)
+     */
+    public Map<Long, Long> sumItemCounts(Collection<Long> orderIds) {
+        return entityManager.createQuery(
+                "select oi.item.id, sum(oi.count) from OrderItem oi" +
+                        " where oi.order.id in :orderIds" +
+                        " group by oi.item.id", Object[].class)
+                .setParameter("orderIds", orderIds)
+                .getResultStream()
+                .collect(Collectors.toMap(row -> (Long) row[0], row -> (Long) row[1]));
+    }
+
+    /*
+    주문 상태를 벌크 UPDATE 한 번으로 CANCEL 로 바꾼다.
+    `status = ORDER` 조건과 `@Version` 증가로, 그 사이 다른 트랜잭션이 먼저 취소/수정한 주문과 겹치지 않게 한다.
+    (영향받은 row 수가 요청한 주문 수보다 적으면 누군가 먼저 바꾼 것)
+     */
+    public int cancelAll(Collection<Long> orderIds) {
+        return entityManager.createQuery(
+                "update Order o" +
+                        " set o.status = :cancel" +
+                        ", o.version = o.version + 1" +
+                        " where o.id in :orderIds" +
+                        " and o.status = :order")
+                .setParameter("cancel", OrderStatus.CANCEL)
+                .setParameter("order", OrderStatus.ORDER)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+
+    public Optional<Long> findIdByIdempotencyKey(Long memberId, String idempotencyKey) {
+        return entityManager.createQuery(
+                "select o.id from Order o" +
+                        " where o.member.id = :memberId" +
+                        " and o.idempotencyKey = :idempotencyKey", Long.class)
+                .setParameter("memberId", memberId)
+                .setParameter("idempotencyKey", idempotencyKey)
+                .getResultStream()
+                .findFirst();
+    }
+
     // 검색기능은 동적쿼리가 필요하기 때문에 나중에 설명
 
     /*
@@ -112,7 +194,8 @@ public class OrderRepository {
             }
             jpql += " m.name like :name";
         }
-        TypedQuery<Order> query = entityManager.createQuery(jpql, Order.class) .setMaxResults(1000); //최대 1000건
+        TypedQuery<Order> query = entityManager.createQuery(jpql, Order.class) .setMaxResults(1000) //최대 1000건
+                .setHint(QueryHints.READ_ONLY, true);
         if (orderSearch.getOrderStatus() != null) {
             query = query.setParameter("status", orderSearch.getOrderStatus());
         }
@@ -175,6 +258,31 @@ public class OrderRepository {
          */
     }
 
+    /**
+     * 검색 조건에 맞는 주문을 커서 다음부터 `limit` 개씩 (최신 주문부터)
+     */
+    public OrderSlice findAll(OrderSearch orderSearch, OrderCursor after, int limit) {
+        List<Order> orders = query
+                .select(order)
+                .from(order)
+                .join(order.member, member).fetchJoin()
+                .join(order.delivery, delivery).fetchJoin()
+                .where(statusEq(orderSearch.getOrderStatus()), nameLike(orderSearch.getMemberName()), after(after))
+                .orderBy(order.orderDate.desc(), order.id.desc())
+                .limit(limit + 1)
+                .fetch();
+        return OrderSlice.of(orders, limit);
+    }
+
+    private BooleanExpression after(OrderCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+
+        return order.orderDate.lt(cursor.getOrderDate())
+                .or(order.orderDate.eq(cursor.getOrderDate()).and(order.id.lt(cursor.getId())));
+    }
+
     private BooleanExpression nameLike(String memberName) {
 
         if(!StringUtils.hasText(memberName)){
@@ -192,6 +300,23 @@ public class OrderRepository {
         return order.status.eq(statusCondition);
     }
 
+    /**
+     * 검색 조건에 맞는 주문 ID 를 `afterId` 다음부터 `limit` 개씩 (ID 오름차순)
+     * 일괄 취소처럼 많은 주문을 나눠서 처리할 때, offset 대신 마지막 ID 를 기준으로 다음 묶음을 가져온다.
+     */
+    public List<Long> findIds(OrderSearch orderSearch, Long afterId, int limit) {
+        return query
+                .select(order.id)
+                .from(order)
+                .join(order.member, member)
+                .where(statusEq(orderSearch.getOrderStatus()),
+                        nameLike(orderSearch.getMemberName()),
+                        afterId == null ? null : order.id.gt(afterId))
+                .orderBy(order.id.asc())
+                .limit(limit)
+                .fetch();
+    }
+
     /*
     동적쿼리, 정적쿼리를 위해서 모두 유용하다.
     실무에서는 스프링부트, JPA, SPRING-JPA-DATA, QUERY DSL을 모두 사용하는 것이 좋다.
@@ -208,13 +333,40 @@ public class OrderRepository {
 
     `fetch join`은 100% 이해해야 실무에서 쓸 수 있다.
      */
+    /*
+    조회 API 는 OrderQueryService 의 읽기 전용 트랜잭션에서 부르지만, read-only 세션(ReadOnlySessionJpaDialect)을 끄거나
+    트랜잭션 밖에서 불러도 스냅샷을 두지 않도록 목록 조회는 쿼리 힌트로도 엔티티를 read-only 로 올린다. (페치 조인한 엔티티 포함)
+     */
     public List<Order> findAllWithMemberDelivery() {
         return entityManager.createQuery(
                 "select o from Order o" +
                         " join fetch o.member m" +
                         " join fetch o.delivery d",
                 Order.class
-        ).getResultList();
+        ).setHint(QueryHints.READ_ONLY, true)
+                .getResultList();
+    }
+
+    /**
+     * 주문 ID 목록으로 조회 (주어진 ID 순서대로, 없는 ID 는 빠진다)
+     * 검색 결과 캐시(OrderSearchCache)에 둔 ID 로 주문을 다시 읽을 때 쓴다.
+     */
+    public List<Order> findAllWithMemberDeliveryByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Order> orders = entityManager.createQuery(
+                "select o from Order o" +
+                        " join fetch o.member m" +
+                        " join fetch o.delivery d" +
+                        " where o.id in :ids", Order.class)
+                .setParameter("ids", ids)
+                .getResultStream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+        return ids.stream()
+                .map(orders::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     /*
@@ -232,9 +384,37 @@ public class OrderRepository {
                 , Order.class)
                 .setFirstResult(offset)
                 .setMaxResults(limit)
+                .setHint(QueryHints.READ_ONLY, true)
                 .getResultList();
     }
 
+    /*
+    V3.2 추가 (커서 페이징)
+
+    offset 페이징은 앞 페이지의 row 를 전부 읽고 버리므로 뒤로 갈수록 느려진다.
+    마지막으로 본 주문의 (orderDate, id) 보다 뒤에 있는 주문만 조건으로 찾으면
+    `orders(order_date, order_id)` 인덱스에서 바로 이어서 읽으므로 몇 번째 페이지든 비용이 같다.
+    ToOne 은 그대로 페치 조인하고, 컬렉션은 default_batch_fetch_size 로 IN 조회한다.
+     */
+    public OrderSlice findAllWithMemberDelivery(OrderCursor after, int limit) {
+        String jpql = "select o from Order o" +
+                " join fetch o.member m" +
+                " join fetch o.delivery d";
+        if (after != null) {
+            jpql += " where o.orderDate < :orderDate or (o.orderDate = :orderDate and o.id < :id)";
+        }
+        jpql += " order by o.orderDate desc, o.id desc";
+
+        TypedQuery<Order> query = entityManager.createQuery(jpql, Order.class)
+                .setMaxResults(limit + 1)
+                .setHint(QueryHints.READ_ONLY, true);
+        if (after != null) {
+            query.setParameter("orderDate", after.getOrderDate())
+                    .setParameter("id", after.getId());
+        }
+        return OrderSlice.of(query.getResultList(), limit);
+    }
+
     /*
     나중에 실무에서는 이렇게 약간이라도 복잡해지는 경우에는
     스트링으로 작성하기보다 QueryDSL 을 이용하는 편이 좋다.
@@ -301,6 +481,7 @@ public class OrderRepository {
                 , Order.class)
                 .setFirstResult(0)
                 .setMaxResults(100)
+                .setHint(QueryHints.READ_ONLY, true)
                 .getResultList();
     }
 
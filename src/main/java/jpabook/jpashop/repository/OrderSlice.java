@@ -0,0 +1,39 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Order;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 커서로 조회한 주문 한 페이지와 다음 페이지 커서
+ */
+@Getter
+public class OrderSlice {
+
+    private final List<Order> orders;
+    private final String nextCursor; // 마지막 페이지면 null
+
+    private OrderSlice(List<Order> orders, String nextCursor) {
+        this.orders = orders;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * 이미 나눠진 한 페이지 (검색 결과 캐시에서 다시 읽은 주문)
+     */
+    public static OrderSlice of(List<Order> orders, String nextCursor) {
+        return new OrderSlice(orders, nextCursor);
+    }
+
+    /*
+    `limit + 1` 개를 조회해서 남는 한 건이 있으면 다음 페이지가 있는 것으로 본다. (count 쿼리 없이)
+     */
+    static OrderSlice of(List<Order> fetched, int limit) {
+        if (fetched.size() <= limit) {
+            return new OrderSlice(fetched, null);
+        }
+        List<Order> orders = fetched.subList(0, limit);
+        return new OrderSlice(orders, OrderCursor.of(orders.get(limit - 1)).encode());
+    }
+}
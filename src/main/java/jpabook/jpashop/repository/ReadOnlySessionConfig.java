@@ -0,0 +1,42 @@
+package jpabook.jpashop.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.JpaVendorAdapter;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+/**
+ * JpaTransactionManager 가 ReadOnlySessionJpaDialect 를 쓰도록 JpaVendorAdapter 를 바꾼다.
+ *
+ * 트랜잭션 매니저는 EntityManagerFactory 의 dialect 를 가져다 쓰고, 그 dialect 는 JpaVendorAdapter 가 정하므로
+ * 스프링 부트가 만드는 것(JpaBaseConfiguration.jpaVendorAdapter)과 같은 설정으로 dialect 만 바꿔서 만든다.
+ */
+@Configuration
+public class ReadOnlySessionConfig {
+
+    @Value("${jpashop.query.read-only-session:true}")
+    private boolean readOnlySession;
+
+    @Bean
+    public JpaVendorAdapter jpaVendorAdapter(JpaProperties properties) {
+        HibernateJpaDialect jpaDialect = new ReadOnlySessionJpaDialect(readOnlySession);
+        HibernateJpaVendorAdapter adapter = new HibernateJpaVendorAdapter() {
+            @Override
+            public HibernateJpaDialect getJpaDialect() {
+                return jpaDialect;
+            }
+        };
+        adapter.setShowSql(properties.isShowSql());
+        if (properties.getDatabase() != null) {
+            adapter.setDatabase(properties.getDatabase());
+        }
+        if (properties.getDatabasePlatform() != null) {
+            adapter.setDatabasePlatform(properties.getDatabasePlatform());
+        }
+        adapter.setGenerateDdl(properties.isGenerateDdl());
+        return adapter;
+    }
+}
@@ -0,0 +1,90 @@
+package jpabook.jpashop.repository;
+
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * 읽기 전용 트랜잭션에서 조회한 엔티티를 read-only 로 올린다. (`jpashop.query.read-only-session`)
+ *
+ * read-only 엔티티는 변경 감지용 스냅샷(조회 당시 값 복사본)을 두지 않고 flush 때 비교하지도 않는다.
+ * 목록 조회처럼 엔티티를 많이 올리면 스냅샷만큼 메모리가 줄어든다.
+ *
+ * HibernateJpaDialect 는 트랜잭션마다 EntityManager 를 새로 만들 때만 세션을 read-only 로 바꾸고,
+ * OSIV 처럼 요청에 묶인 EntityManager 를 쓸 때는 FlushMode.MANUAL 만 건다. 여기서는 그때도 세션을 read-only 로 바꾸고
+ * 트랜잭션이 끝나면 되돌린다.
+ *
+ * 한 요청에서 읽기 전용 트랜잭션으로 읽은 엔티티를 뒤의 쓰기 트랜잭션에서 고치면 변경이 반영되지 않으므로,
+ * 쓰기 트랜잭션을 시작할 때 영속성 컨텍스트에 있는 read-only 엔티티를 다시 변경 가능하게 바꾼다. (그 시점의 값이 스냅샷이 된다)
+ */
+public class ReadOnlySessionJpaDialect extends HibernateJpaDialect {
+
+    private static final long serialVersionUID = 1L; // HibernateJpaDialect 가 Serializable 이다.
+
+    private final boolean enabled;
+
+    public ReadOnlySessionJpaDialect(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException, TransactionException {
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        if (!enabled) {
+            return transactionData;
+        }
+
+        SessionImplementor session = getSession(entityManager);
+        if (!definition.isReadOnly()) {
+            makeModifiable(session.getPersistenceContextInternal());
+            return transactionData;
+        }
+        if (session.isDefaultReadOnly()) {
+            return transactionData;
+        }
+        session.setDefaultReadOnly(true);
+        return new ReadOnlySessionData(session, transactionData);
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        if (transactionData instanceof ReadOnlySessionData) {
+            ReadOnlySessionData readOnlySessionData = (ReadOnlySessionData) transactionData;
+            readOnlySessionData.session.setDefaultReadOnly(false);
+            super.cleanupTransaction(readOnlySessionData.delegate);
+            return;
+        }
+        super.cleanupTransaction(transactionData);
+    }
+
+    private static void makeModifiable(PersistenceContext persistenceContext) {
+        if (persistenceContext.getNumberOfManagedEntities() == 0) {
+            return;
+        }
+        for (Map.Entry<Object, EntityEntry> entry : persistenceContext.reentrantSafeEntityEntries()) {
+            EntityEntry entityEntry = entry.getValue();
+            if (entityEntry.isReadOnly() && entityEntry.getPersister().isMutable()) {
+                persistenceContext.setReadOnly(entry.getKey(), false);
+            }
+        }
+    }
+
+    private static class ReadOnlySessionData {
+        private final SessionImplementor session;
+        private final Object delegate;
+
+        ReadOnlySessionData(SessionImplementor session, Object delegate) {
+            this.session = session;
+            this.delegate = delegate;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package jpabook.jpashop.repository.order.listquery;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 주문 목록 화면의 한 줄 (대표상품 = 첫 번째 주문상품)
+ */
+@Getter
+public class OrderListDto {
+    private final Long id;
+    private final String memberName;
+    private final String itemName; // 주문상품이 없으면 null
+    private final Integer orderPrice;
+    private final Integer count;
+    private final OrderStatus status;
+    private final LocalDateTime orderDate;
+
+    public OrderListDto(Long id, String memberName, String itemName, Integer orderPrice, Integer count,
+                        OrderStatus status, LocalDateTime orderDate) {
+        this.id = id;
+        this.memberName = memberName;
+        this.itemName = itemName;
+        this.orderPrice = orderPrice;
+        this.count = count;
+        this.status = status;
+        this.orderDate = orderDate;
+    }
+}
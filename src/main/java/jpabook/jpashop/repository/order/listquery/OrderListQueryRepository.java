@@ -0,0 +1,125 @@
+package jpabook.jpashop.repository.order.listquery;
+
+import com.querydsl.core.types.ConstructorExpression;
+import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.QOrderItem;
+import jpabook.jpashop.repository.OrderCursor;
+import jpabook.jpashop.repository.OrderSearch;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static jpabook.jpashop.domain.QMember.member;
+import static jpabook.jpashop.domain.QOrder.order;
+import static jpabook.jpashop.domain.QOrderItem.orderItem;
+import static jpabook.jpashop.domain.item.QItem.item;
+
+/**
+ * 주문 목록 화면 (/orders) 전용 조회
+ *
+ * 주문 엔티티를 올리고 뷰에서 member, orderItems, orderItems[0].item 을 지연 로딩하면
+ * 페이지 크기에 따라 쿼리가 늘어나고 엔티티 전체 컬럼을 읽는다.
+ * 화면에 쓰는 컬럼만 골라서 한 번의 SQL 로 DTO 를 만든다.
+ *
+ * 대표상품은 주문상품 중 ID 가 가장 작은 것 (엔티티의 orderItems[0] 과 같다)
+ * 주문상품과 1:N 조인을 하지만 대표상품 한 줄만 붙이므로 주문 한 건이 한 줄이고, 그래서 limit 을 그대로 걸 수 있다.
+ */
+@Repository
+public class OrderListQueryRepository {
+
+    private final JPAQueryFactory query;
+
+    public OrderListQueryRepository(EntityManager entityManager) {
+        query = new JPAQueryFactory(entityManager);
+    }
+
+    /**
+     * 검색 조건에 맞는 주문을 커서 다음부터 `limit + 1` 개 (최신 주문부터)
+     * 남는 한 건은 다음 페이지가 있는지 보는 데만 쓴다. (count 쿼리 없이)
+     */
+    public List<OrderListDto> findOrderList(OrderSearch orderSearch, OrderCursor after, int limit) {
+        return select()
+                .where(statusEq(orderSearch.getOrderStatus()), nameLike(orderSearch.getMemberName()), after(after))
+                .orderBy(order.orderDate.desc(), order.id.desc())
+                .limit(limit + 1)
+                .fetch();
+    }
+
+    /**
+     * 검색 결과 캐시에 둔 ID 목록으로 다시 읽는다. (ID 순서대로)
+     */
+    public List<OrderListDto> findOrderList(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, OrderListDto> rows = select()
+                .where(order.id.in(orderIds))
+                .fetch()
+                .stream()
+                .collect(Collectors.toMap(OrderListDto::getId, Function.identity()));
+        return orderIds.stream()
+                .map(rows::get)
+                .filter(row -> row != null) // 그 사이 지워진 주문
+                .collect(Collectors.toList());
+    }
+
+    private JPAQuery<OrderListDto> select() {
+        QOrderItem firstItem = new QOrderItem("firstItem");
+        return query
+                .select(row())
+                .from(order)
+                .join(order.member, member)
+                .leftJoin(order.orderItems, orderItem)
+                .on(orderItem.id.eq(JPAExpressions
+                        .select(firstItem.id.min())
+                        .from(firstItem)
+                        .where(firstItem.order.eq(order))))
+                .leftJoin(orderItem.item, item);
+    }
+
+    private static ConstructorExpression<OrderListDto> row() {
+        return Projections.constructor(OrderListDto.class,
+                order.id,
+                member.name,
+                item.name,
+                orderItem.orderPrice,
+                orderItem.count,
+                order.status,
+                order.orderDate);
+    }
+
+    private BooleanExpression after(OrderCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+
+        return order.orderDate.lt(cursor.getOrderDate())
+                .or(order.orderDate.eq(cursor.getOrderDate()).and(order.id.lt(cursor.getId())));
+    }
+
+    private BooleanExpression nameLike(String memberName) {
+        if (!StringUtils.hasText(memberName)) {
+            return null;
+        }
+
+        return member.name.like(memberName);
+    }
+
+    private BooleanExpression statusEq(OrderStatus statusCondition) {
+        if (statusCondition == null) {
+            return null;
+        }
+
+        return order.status.eq(statusCondition);
+    }
+}
@@ -1,11 +1,18 @@
 package jpabook.jpashop.repository.order.query;
 
+import jpabook.jpashop.repository.BatchCollectionLoader;
+import jpabook.jpashop.repository.LongKeyMap;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /*
@@ -17,6 +24,24 @@ API 에 의존 관계가 있는 것의 기준으로 나눈 것임
 @RequiredArgsConstructor
 public class OrderQueryRepository {
     private final EntityManager entityManager;
+    private final BatchCollectionLoader batchCollectionLoader;
+
+    private static final String FLAT_SELECT =
+            "select new jpabook.jpashop.repository.order.query.OrderFlatDto(" +
+                    "o.id" +
+                    ", m.name" +
+                    ", o.orderDate" +
+                    ", o.status" +
+                    ", m.address" +
+                    ", i.name" +
+                    ", oi.orderPrice" +
+                    ", oi.count" +
+                    ")" +
+                    " from Order o" +
+                    " join o.member m" +
+                    " join o.delivery d" +
+                    " join o.orderItems oi" +
+                    " join oi.item i";
 
     public List<OrderQueryDto> findAllByDto_optimization() {
         List<OrderQueryDto> orders = findOrders();
@@ -25,12 +50,27 @@ public class OrderQueryRepository {
                 .map(o -> o.getOrderId())
                 .collect(Collectors.toList());
 
+        LongKeyMap<List<OrderItemQueryDto>> orderItemsMap = findOrderItemMap(orderIds);
+
+        /*
+        메모리에 올려진 Map에 들어있는 OrderItems는 Order.id를 키로 하고 있는데,
+        그 키와 매칭시켜서 OrderItem을 세팅해줌
+          -> 쿼리가 총 2번 나감
+         */
+        orders.forEach(o -> o.setOrderItems(orderItemsMap.get(o.getOrderId())));
+
+        return orders;
+    }
+
+    private LongKeyMap<List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds) {
         /*
             findOrderItems를 가져와서 기존 orderId 로
             조건을 걸어 데이터를 가져오던 방식을 SQL IN 절로 변경함
              -> IN 쿼리에 List 파라미터를 주면, 하나하나씩 IN 을 찍음
+             -> 주문이 많으면 IN 목록이 DB 한도를 넘으므로 BatchCollectionLoader 가 나눠서(필요하면 동시에) 조회하고
+                Order.id 를 키로 묶어준다.
          */
-        List<OrderItemQueryDto> orderItems = entityManager.createQuery(
+        return batchCollectionLoader.load(orderIds,
                 "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto" +
                         "(" +
                         "oi.order.id" +
@@ -40,29 +80,72 @@ public class OrderQueryRepository {
                         ")" +
                         " from OrderItem oi" +
                         " join oi.item i" +
-                        " where oi.order.id in :orderIds"
-                , OrderItemQueryDto.class)
-                .setParameter("orderIds", orderIds)
-                .getResultList();
+                        " where oi.order.id in :ids"
+                , OrderItemQueryDto.class
+                , OrderItemQueryDto::getOrderId);
+    }
 
-        /*
-        orderItems 를 Id를 가진 맵으로 변경함
-         */
-        Map<Long, List<OrderItemQueryDto>> orderItemsMap = orderItems
-                .stream()
-                .collect(
-                        Collectors.groupingBy(orderItemQueryDto -> orderItemQueryDto.getOrderId()
-                        )
-                );
+    /*
+    전체 주문 내보내기 (OrderExportService)
 
-        /*
-        메모리에 올려진 Map에 들어있는 OrderItems는 Order.id를 키로 하고 있는데,
-        그 키와 매칭시켜서 OrderItem을 세팅해줌
-          -> 쿼리가 총 2번 나감
-         */
-        orders.forEach(o -> o.setOrderItems(orderItemsMap.get(o.getOrderId())));
+    findAllByDto_optimization 처럼 목록을 한 번에 만들면 주문 수만큼 메모리를 쓴다.
+    여기서는 ScrollableResults 로 주문을 앞에서부터 한 줄씩 읽고, `chunkSize` 개가 모이면
+    주문상품을 IN 쿼리 한 번으로 붙여서 바로 consumer 로 넘긴다. 메모리에는 한 묶음만 올라간다.
 
-        return orders;
+    fetch size 를 지키는지는 드라이버마다 다르다.
+    - H2: 결과가 MAX_MEMORY_ROWS 를 넘으면 임시 파일로 내려 쓴다.
+    - PostgreSQL: autocommit 이 꺼져 있을 때(트랜잭션 안)만 fetch size 만큼씩 가져온다.
+    - MySQL (Connector/J): 기본값으로는 fetch size 를 무시하고 결과 전체를 메모리에 올린다.
+      JDBC URL 에 useCursorFetch=true 를 줘야 fetch size 만큼씩 가져오고,
+      아니면 fetch size 를 Integer.MIN_VALUE 로 줘서 한 줄씩 스트리밍해야 한다. (다 읽을 때까지 그 커넥션으로 다른 쿼리를 못 한다)
+     */
+    public void scrollAllByDto(int chunkSize, Consumer<List<OrderQueryDto>> consumer) {
+        ScrollableResults results = entityManager.createQuery(
+                "select new jpabook.jpashop.repository.order.query.OrderQueryDto" +
+                        "(" +
+                        "o.id" +
+                        ", m.name" +
+                        ", o.orderDate" +
+                        ", o.status" +
+                        ", d.address" +
+                        ") from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        " order by o.id"
+                , OrderQueryDto.class)
+                .unwrap(Query.class)
+                .setFetchSize(chunkSize)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY);
+
+        try {
+            List<OrderQueryDto> chunk = new ArrayList<>(chunkSize);
+            while (results.next()) {
+                chunk.add((OrderQueryDto) results.get(0));
+                if (chunk.size() >= chunkSize) {
+                    attachOrderItems(chunk);
+                    consumer.accept(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                attachOrderItems(chunk);
+                consumer.accept(chunk);
+            }
+        } finally {
+            results.close();
+        }
+    }
+
+    private void attachOrderItems(List<OrderQueryDto> orders) {
+        List<Long> orderIds = orders.stream()
+                .map(OrderQueryDto::getOrderId)
+                .collect(Collectors.toList());
+        LongKeyMap<List<OrderItemQueryDto>> orderItemsMap = findOrderItemMap(orderIds);
+        orders.forEach(o -> o.setOrderItems(orderItemsMap.getOrDefault(o.getOrderId(), List.of())));
+
+        // DTO 조회라 관리되는 엔티티는 없지만, 묶음 사이에 영속성 컨텍스트에 남는 것이 없도록 비운다.
+        entityManager.clear();
     }
 
     public List<OrderQueryDto> findOrderQueryDtos() {
@@ -135,23 +218,55 @@ public class OrderQueryRepository {
     }
 
     public List<OrderFlatDto> findAllByDto_flat() {
-        return entityManager.createQuery(
-                "select new jpabook.jpashop.repository.order.query.OrderFlatDto(" +
-                        "o.id" +
-                        ", m.name" +
-                        ", o.orderDate" +
-                        ", o.status" +
-                        ", m.address" +
-                        ", i.name" +
-                        ", oi.orderPrice" +
-                        ", oi.count" +
-                        ")" +
-                        " from Order o" +
-                        " join o.member m" +
-                        " join o.delivery d" +
-                        " join o.orderItems oi" +
-                        " join oi.item i"
-                , OrderFlatDto.class)
+        return entityManager.createQuery(FLAT_SELECT + " order by o.id, oi.id", OrderFlatDto.class)
+                .getResultList();
+    }
+
+    /*
+    V6 페이징: 페이징은 루트(주문) ID 로 먼저 하고, 그 주문들만 플랫 조인으로 가져온다.
+    플랫 조인 결과에 바로 limit 을 걸면 주문이 아니라 주문상품 row 기준으로 잘리기 때문이다.
+    `afterId` 다음 주문부터 `limit` 개 (주문 ID 오름차순)
+     */
+    public List<OrderQueryDto> findAllByDto_flat(Long afterId, int limit) {
+        String jpql = "select o.id from Order o";
+        if (afterId != null) {
+            jpql += " where o.id > :afterId";
+        }
+        TypedQuery<Long> idQuery = entityManager.createQuery(jpql + " order by o.id", Long.class)
+                .setMaxResults(limit);
+        if (afterId != null) {
+            idQuery.setParameter("afterId", afterId);
+        }
+        List<Long> orderIds = idQuery.getResultList();
+        if (orderIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<OrderFlatDto> flats = entityManager.createQuery(
+                FLAT_SELECT + " where o.id in :orderIds order by o.id, oi.id", OrderFlatDto.class)
+                .setParameter("orderIds", orderIds)
                 .getResultList();
+        return groupByOrder(flats);
+    }
+
+    /*
+    주문 ID 순으로 정렬된 플랫 row 를 한 번 훑으면서 주문별로 묶는다.
+    같은 주문의 row 는 붙어서 나오므로 orderId 가 바뀔 때만 OrderQueryDto 를 새로 만들면 된다.
+    groupingBy 처럼 키로 쓸 DTO 나 중간 Map 을 만들지 않고, 정렬 순서도 그대로 유지된다.
+    Iterator 로 받으므로 ScrollableResults 처럼 흘러오는 결과에도 그대로 쓸 수 있다.
+     */
+    public static List<OrderQueryDto> groupByOrder(Iterable<OrderFlatDto> flats) {
+        List<OrderQueryDto> orders = new ArrayList<>();
+        OrderQueryDto current = null;
+        for (OrderFlatDto flat : flats) {
+            if (current == null || !current.getOrderId().equals(flat.getOrderId())) {
+                current = new OrderQueryDto(flat.getOrderId(), flat.getName(), flat.getOrderDate(),
+                        flat.getOrderStatus(), flat.getAddress(), new ArrayList<>());
+                orders.add(current);
+            }
+            current.getOrderItems().add(new OrderItemQueryDto(
+                    flat.getOrderId(), flat.getItemName(), flat.getOrderPrice(), flat.getCount()));
+        }
+        return orders;
     }
 }
@@ -0,0 +1,165 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.service.inventory.InventoryEngine;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 주문 일괄 취소
+ *
+ * `OrderService.cancelOrder`는 주문마다 엔티티를 올리고 주문상품을 하나씩 돌면서 재고를 되돌린다.
+ * 수만 건을 한꺼번에 취소할 때는 그만큼 SELECT/UPDATE 가 나가므로, 여기서는 묶음(chunk) 단위로
+ * - 취소 가능 여부를 쿼리 한 번으로 확인하고
+ * - 재고는 상품별로 합산해서 상품당 UPDATE 한 번으로 되돌리고
+ * - 주문 상태는 벌크 UPDATE 한 번으로 바꾼다.
+ *
+ * 묶음마다 트랜잭션을 따로 커밋하므로, 중간에 실패해도 앞서 끝난 묶음은 취소된 채로 남는다.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkOrderCancelService {
+
+    private final OrderRepository orderRepository;
+    private final ItemRepository itemRepository;
+    private final InventoryEngine inventoryEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${jpashop.order.bulk-cancel.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${jpashop.order.bulk-cancel.max-attempts:3}")
+    private int maxAttempts;
+
+    /**
+     * 주문 ID 목록으로 일괄 취소
+     */
+    public BulkCancelResult cancelOrders(Collection<Long> orderIds) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(orderIds));
+        BulkCancelResult result = new BulkCancelResult();
+
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            cancelChunk(ids.subList(from, Math.min(from + chunkSize, ids.size())), result);
+        }
+        return result;
+    }
+
+    /**
+     * 검색 조건에 맞는 주문 일괄 취소
+     * 조건이 하나도 없으면 (빈 이름은 조건에서 빠진다) 전체 주문이 취소되므로 받지 않는다.
+     */
+    public BulkCancelResult cancelOrders(OrderSearch orderSearch) {
+        if (!StringUtils.hasText(orderSearch.getMemberName()) && orderSearch.getOrderStatus() == null) {
+            throw new IllegalArgumentException("취소할 주문의 검색 조건이 필요합니다.");
+        }
+        BulkCancelResult result = new BulkCancelResult();
+
+        Long afterId = null;
+        while (true) {
+            Long lastId = afterId;
+            List<Long> ids = transactionTemplate.execute(status -> orderRepository.findIds(orderSearch, lastId, chunkSize));
+            if (ids == null || ids.isEmpty()) {
+                return result;
+            }
+            cancelChunk(ids, result);
+            afterId = ids.get(ids.size() - 1);
+        }
+    }
+
+    /*
+    한 묶음을 한 트랜잭션으로 취소한다.
+    확인한 뒤 UPDATE 하기 전에 다른 트랜잭션이 먼저 취소한 주문이 있으면 (영향받은 row 수가 다르면)
+    묶음 전체를 롤백하고 다시 확인부터 시작한다.
+     */
+    private void cancelChunk(List<Long> orderIds, BulkCancelResult result) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Integer cancelled = transactionTemplate.execute(status -> {
+                    List<Long> cancelableIds = orderRepository.findCancelableIds(orderIds);
+                    if (cancelableIds.isEmpty()) {
+                        return 0;
+                    }
+
+                    int updated = orderRepository.cancelAll(cancelableIds);
+                    if (updated != cancelableIds.size()) {
+                        throw new OptimisticLockingFailureException(
+                                "취소하는 도중 다른 트랜잭션이 주문을 변경했습니다. expected=" + cancelableIds.size() + ", updated=" + updated);
+                    }
+
+                    restoreStock(orderRepository.sumItemCounts(cancelableIds));
+                    eventPublisher.publishEvent(OrderChangedEvent.cancelledMany());
+                    return updated;
+                });
+                result.add(orderIds.size(), cancelled == null ? 0 : cancelled);
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    log.warn("bulk cancel chunk failed. orders={}, attempts={}", orderIds.size(), attempt, e);
+                    result.addFailed(orderIds.size());
+                    return;
+                }
+            } finally {
+                // OSIV 를 켜면 요청 내내 같은 영속성 컨텍스트를 쓰므로, 묶음마다 비워줘야 메모리에 쌓이지 않는다.
+                entityManager.clear();
+            }
+        }
+    }
+
+    /*
+    상품별 수량 합계만큼 재고를 되돌린다. (OrderService.restock 과 같은 분기)
+     */
+    private void restoreStock(Map<Long, Long> itemCounts) {
+        if (itemCounts.isEmpty()) {
+            return;
+        }
+        for (Item item : itemRepository.findAllByIds(itemCounts.keySet())) {
+            int quantity = Math.toIntExact(itemCounts.get(item.getId()));
+            if (item.isSplitStock()) {
+                item.addStock(quantity);
+            } else if (inventoryEngine.isEnabled()) {
+                inventoryEngine.release(item, quantity);
+            } else {
+                itemRepository.addStock(item.getId(), quantity);
+            }
+        }
+    }
+
+    @Getter
+    public static class BulkCancelResult {
+        private int requested; // 확인한 주문 수
+        private int cancelled; // 취소된 주문 수
+        private int skipped; // 이미 취소되었거나 배송 완료라서 건너뛴 주문 수
+        private int failed; // 재시도 후에도 충돌이 나서 취소하지 못한 주문 수
+
+        void add(int requested, int cancelled) {
+            this.requested += requested;
+            this.cancelled += cancelled;
+            this.skipped += requested - cancelled;
+        }
+
+        void addFailed(int requested) {
+            this.requested += requested;
+            this.failed += requested;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package jpabook.jpashop.service;
+
+import lombok.Getter;
+
+/**
+ * 카테고리가 추가되었을 때 (커밋 후 CategoryTreeCache 가 받는다)
+ */
+@Getter
+public class CategoryChangedEvent {
+
+    private final Long categoryId;
+
+    public CategoryChangedEvent(Long categoryId) {
+        this.categoryId = categoryId;
+    }
+}
@@ -0,0 +1,53 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.CategoryRepository;
+import jpabook.jpashop.repository.ItemRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class CategoryService {
+
+    private final CategoryRepository categoryRepository;
+    private final ItemRepository itemRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 카테고리 추가
+     * @param parentId 없으면 최상위 카테고리
+     */
+    @Transactional
+    public Long addCategory(Long parentId, String name) {
+        Category category = Category.createCategory(name);
+        if (parentId != null) {
+            Category parent = categoryRepository.findOne(parentId);
+            if (parent == null) {
+                throw new IllegalArgumentException("존재하지 않는 카테고리입니다. id=" + parentId);
+            }
+            parent.addChildCategory(category);
+        }
+        categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(category.getId()));
+        return category.getId();
+    }
+
+    /**
+     * 카테고리에 상품 담기
+     */
+    @Transactional
+    public void addItem(Long categoryId, Long itemId) {
+        Category category = categoryRepository.findOne(categoryId);
+        Item item = itemRepository.findOne(itemId);
+        if (category == null || item == null) {
+            throw new IllegalArgumentException("존재하지 않는 카테고리 또는 상품입니다. categoryId=" + categoryId + ", itemId=" + itemId);
+        }
+        category.getItems().add(item);
+        item.getCategories().add(category);
+    }
+}
@@ -0,0 +1,99 @@
+package jpabook.jpashop.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 카테고리 트리 스냅샷 (CategoryTreeCache)
+ *
+ * 만든 뒤에는 바뀌지 않으므로 여러 요청이 락 없이 같이 읽는다.
+ * 트리를 따라가는 조회(자식, 경로, 하위 트리)는 DB 를 거치지 않는다.
+ */
+public class CategoryTree {
+
+    private final Map<Long, Node> nodes;
+    private final List<Node> roots;
+
+    private CategoryTree(Map<Long, Node> nodes, List<Node> roots) {
+        this.nodes = nodes;
+        this.roots = roots;
+    }
+
+    /**
+     * @param rows {id, name, parentId} (CategoryRepository.findAllNodes)
+     */
+    static CategoryTree of(List<Object[]> rows) {
+        Map<Long, Node> nodes = new HashMap<>();
+        for (Object[] row : rows) {
+            Long id = (Long) row[0];
+            nodes.put(id, new Node(id, (String) row[1], (Long) row[2]));
+        }
+
+        List<Node> roots = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            Node parent = node.parentId == null ? null : nodes.get(node.parentId);
+            if (parent == null) {
+                roots.add(node);
+            } else {
+                parent.childList.add(node);
+            }
+        }
+        roots.sort(Node.BY_ID);
+        for (Node node : nodes.values()) {
+            node.childList.sort(Node.BY_ID);
+        }
+        return new CategoryTree(nodes, Collections.unmodifiableList(roots));
+    }
+
+    public List<Node> getRoots() {
+        return roots;
+    }
+
+    /**
+     * @return 없으면 null
+     */
+    public Node find(Long id) {
+        return nodes.get(id);
+    }
+
+    /**
+     * 최상위 카테고리부터 `id` 까지 (breadcrumb)
+     */
+    public List<Node> path(Long id) {
+        List<Node> path = new ArrayList<>();
+        for (Node node = nodes.get(id); node != null; node = node.parentId == null ? null : nodes.get(node.parentId)) {
+            path.add(node);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    @Getter
+    public static class Node {
+        private static final Comparator<Node> BY_ID = Comparator.comparing(Node::getId);
+
+        private final Long id;
+        private final String name;
+        private final Long parentId; // 최상위면 null
+        @Getter(AccessLevel.NONE)
+        private final List<Node> childList = new ArrayList<>(); // CategoryTree.of 에서만 채운다.
+        private final List<Node> children = Collections.unmodifiableList(childList); // 스냅샷을 여러 요청이 같이 쓰므로 밖에서 바꿀 수 없게
+
+        Node(Long id, String name, Long parentId) {
+            this.id = id;
+            this.name = name;
+            this.parentId = parentId;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.datasource.ReplicaReads;
+import jpabook.jpashop.repository.CategoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 카테고리 트리 스냅샷 캐시
+ *
+ * 카테고리는 거의 바뀌지 않으므로 전체 트리를 메모리에 두고, 트리 탐색은 DB 를 거치지 않는다.
+ * 스냅샷이 없거나 `tree-ttl-seconds` 가 지났으면 전체 카테고리를 한 번에 읽어 새로 만든다.
+ * 카테고리가 추가되면 (CategoryChangedEvent) 커밋 후에 버린다. (다른 서버에서 바꾼 것은 TTL 이 지나면 맞춰진다)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CategoryTreeCache {
+
+    private final CategoryRepository categoryRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${jpashop.category.tree-ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private volatile Snapshot snapshot;
+
+    // 무효화될 때마다 올린다. 읽는 동안 무효화가 있었으면 그 스냅샷은 담지 않는다. (OrderSearchCache 와 같다)
+    private final AtomicLong generation = new AtomicLong();
+
+    /*
+    스냅샷이 있으면 트랜잭션도 열지 않는다. (커넥션을 잡지 않는다)
+    만료되었을 때 여러 요청이 같이 다시 읽을 수 있지만, 결과가 같으므로 막지 않는다.
+    replica 에서 읽은 트리는 복제 지연만큼 늦을 수 있으므로 이번 요청에만 쓰고 담지 않는다.
+     */
+    public CategoryTree get() {
+        Snapshot current = snapshot;
+        long now = System.currentTimeMillis();
+        if (current != null && now < current.expiresAt) {
+            return current.tree;
+        }
+
+        long generationBeforeLoad = generation.get();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Loaded loaded = readOnly.execute(status -> new Loaded(categoryRepository.findAllNodes(), ReplicaReads.isReplicaRead()));
+        CategoryTree tree = CategoryTree.of(loaded.nodes);
+        synchronized (generation) {
+            if (generation.get() == generationBeforeLoad && !loaded.replicaRead) {
+                snapshot = new Snapshot(tree, now + ttlSeconds * 1000);
+            }
+        }
+        log.debug("category tree loaded. categories={}", tree.size());
+        return tree;
+    }
+
+    public void invalidate() {
+        synchronized (generation) {
+            generation.incrementAndGet();
+            snapshot = null;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        invalidate();
+    }
+
+    private static class Loaded {
+        private final List<Object[]> nodes;
+        private final boolean replicaRead;
+
+        Loaded(List<Object[]> nodes, boolean replicaRead) {
+            this.nodes = nodes;
+            this.replicaRead = replicaRead;
+        }
+    }
+
+    private static class Snapshot {
+        private final CategoryTree tree;
+        private final long expiresAt;
+
+        Snapshot(CategoryTree tree, long expiresAt) {
+            this.tree = tree;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package jpabook.jpashop.service;
 import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.service.inventory.InventoryEngine;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -14,6 +15,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ItemService {
     private final ItemRepository itemRepository;
+    private final InventoryEngine inventoryEngine;
 
     /*
     이번 개발은 위임만하면 끝이라, 정말 이런 서비스를 만들어야될지에 대한 고민도 해볼만하다.
@@ -30,7 +32,7 @@ public class ItemService {
         Item findItem = itemRepository.findOne(itemId);
         findItem.setPrice(price);
         findItem.setName(name);
-        findItem.setStockQuantity(stockQuantity);
+        changeStockQuantity(findItem, stockQuantity);
     }
 
     @Transactional
@@ -38,11 +40,49 @@ public class ItemService {
         Item findItem = itemRepository.findOne(itemId);
         findItem.setPrice(param.getPrice());
         findItem.setName(param.getName());
-        findItem.setStockQuantity(param.getStockQuantity());
+        changeStockQuantity(findItem, param.getStockQuantity());
 
         return findItem;
     }
 
+    /*
+    인메모리 재고 엔진을 쓰는 중이면 재고는 엔진을 통해서만 바꾼다.
+    (엔티티로 덮어쓰면 아직 DB 에 반영되지 않은 주문 차감분이 사라진다.)
+    분할 재고 상품은 엔진을 거치지 않으므로 엔티티가 버킷에 다시 나눠 담는다.
+     */
+    private void changeStockQuantity(Item item, int stockQuantity) {
+        if (inventoryEngine.isEnabled() && !item.isSplitStock()) {
+            inventoryEngine.adjustTo(item, stockQuantity);
+            return;
+        }
+        item.setStockQuantity(stockQuantity);
+    }
+
+    /**
+     * 분할 재고 사용 (주문이 몰리는 상품의 재고를 여러 버킷 row 로 나눈다)
+     */
+    @Transactional
+    public void enableSplitStock(Long itemId, int bucketCount) {
+        /*
+        인메모리 재고 엔진은 item.stock_quantity 에 변경분을 더하는 방식이라,
+        엔진이 이미 다루고 있는 상품의 재고를 버킷으로 옮기면 반영되지 않은 변경분이 엉뚱한 곳에 쌓인다.
+         */
+        if (inventoryEngine.isEnabled()) {
+            throw new IllegalStateException("인메모리 재고 엔진을 사용하는 중에는 분할 재고를 바꿀 수 없습니다.");
+        }
+        Item findItem = itemRepository.findOne(itemId);
+        findItem.enableSplitStock(bucketCount);
+    }
+
+    @Transactional
+    public void disableSplitStock(Long itemId) {
+        if (inventoryEngine.isEnabled()) {
+            throw new IllegalStateException("인메모리 재고 엔진을 사용하는 중에는 분할 재고를 바꿀 수 없습니다.");
+        }
+        Item findItem = itemRepository.findOne(itemId);
+        findItem.disableSplitStock();
+    }
+
     public List<Item> findItems() {
         return itemRepository.findAll();
     }
@@ -0,0 +1,163 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.MemberRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * 가입된 회원 이름의 Bloom filter (MemberService 의 중복 회원 검증용)
+ *
+ * `mightContain` 이 false 이면 그 이름은 확실히 없으므로 DB 를 조회하지 않고 바로 가입시킨다. (대부분의 가입)
+ * true 이면 있을 수도 있으므로 DB 에서 확인한다. (`false-positive-rate` 만큼은 없는 이름도 true)
+ *
+ * 기동이 끝나면 (데이터 생성기까지 끝난 뒤) 회원 이름을 모두 읽어서 만들고, 가입/이름 변경 때마다 이름을 더한다.
+ * 지우는 연산은 없으므로 바뀌기 전 이름은 남아서 오탐이 될 뿐 틀린 답이 되지는 않는다.
+ * 다른 서버에서 가입한 이름은 모를 수 있으므로 member.name 유니크 제약이 최종적으로 중복을 막는다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MemberNameFilter {
+
+    private final MemberRepository memberRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${jpashop.member.name-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jpashop.member.name-filter.expected-members:1000000}")
+    private long expectedMembers;
+
+    @Value("${jpashop.member.name-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private volatile Bits bits; // 만들기 전이면 null (모든 이름이 있을 수도 있다고 답한다)
+    private volatile Queue<String> addedWhileRebuilding;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        Queue<String> added = new ConcurrentLinkedQueue<>();
+        addedWhileRebuilding = added;
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Bits rebuilt = readOnly.execute(status -> {
+            Bits newBits = new Bits(Math.max(expectedMembers, memberRepository.count() * 2), falsePositiveRate);
+            try (Stream<String> names = memberRepository.streamAllNames()) {
+                names.forEach(newBits::add);
+            }
+            return newBits;
+        });
+
+        // 다 읽는 동안 가입한 이름도 빠지지 않도록 옮겨 담는다.
+        bits = rebuilt;
+        addedWhileRebuilding = null;
+        added.forEach(rebuilt::add);
+
+        log.info("member name filter rebuilt. bits={}, hashes={}, {}ms",
+                rebuilt.size(), rebuilt.hashCount, System.currentTimeMillis() - startedAt);
+    }
+
+    public boolean mightContain(String name) {
+        Bits current = bits;
+        return current == null || current.mightContain(name);
+    }
+
+    public void add(String name) {
+        if (name == null) {
+            return;
+        }
+        Queue<String> added = addedWhileRebuilding;
+        if (added != null) {
+            added.add(name);
+        }
+        Bits current = bits;
+        if (current != null) {
+            current.add(name);
+        }
+    }
+
+    /*
+    비트 배열은 AtomicLongArray 라서 잠그지 않고 여러 스레드가 동시에 더하고 읽을 수 있다.
+    해시는 64비트 해시 두 개를 섞어서 k 개를 만든다. (h1 + i * h2)
+     */
+    private static class Bits {
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashCount;
+
+        Bits(long expectedInsertions, double falsePositiveRate) {
+            long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int wordCount = Math.toIntExact(Math.max(1, (optimalBits + 63) / 64));
+            this.words = new AtomicLongArray(wordCount);
+            this.bitCount = wordCount * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        }
+
+        long size() {
+            return bitCount;
+        }
+
+        void add(String name) {
+            long[] hashes = hash(name);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hashes[0] + i * hashes[1], bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                while (((current = words.get(word)) & mask) == 0
+                        && !words.compareAndSet(word, current, current | mask)) {
+                    // 다른 스레드가 같은 word 를 먼저 바꿨으면 다시 시도한다.
+                }
+            }
+        }
+
+        boolean mightContain(String name) {
+            long[] hashes = hash(name);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hashes[0] + i * hashes[1], bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // FNV-1a 64 로 훑고 MurmurHash3 fmix64 로 섞은 값 두 개
+        private static long[] hash(String name) {
+            long h = 0xcbf29ce484222325L;
+            for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+                h ^= b;
+                h *= 0x100000001b3L;
+            }
+            long h1 = fmix64(h);
+            long h2 = fmix64(h1 ^ 0x9e3779b97f4a7c15L) | 1; // 0 이면 k 개가 모두 같은 비트가 된다.
+            return new long[]{h1, h2};
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
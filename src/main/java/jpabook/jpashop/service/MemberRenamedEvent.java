@@ -0,0 +1,20 @@
+package jpabook.jpashop.service;
+
+import lombok.Getter;
+
+/**
+ * 회원 이름이 바뀌었을 때 (커밋 후 OrderSearchCache 가 받는다)
+ */
+@Getter
+public class MemberRenamedEvent {
+
+    private final Long memberId;
+    private final String previousName; // 이름이 없었으면 null
+    private final String name; // 이름을 지웠으면 null
+
+    public MemberRenamedEvent(Long memberId, String previousName, String name) {
+        this.memberId = memberId;
+        this.previousName = previousName;
+        this.name = name;
+    }
+}
@@ -6,6 +6,8 @@ import jpabook.jpashop.repository.MemberRepository;
 import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,28 +19,49 @@ import java.util.List;
 public class MemberService {
 
     private final MemberRepository memberRepository;
+    private final MemberNameFilter memberNameFilter;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * 회원 가입
      */
     @Transactional
     public Long join(Member member) {
-        validateDuplicateMember(member);
-        memberRepository.save(member);
+        validateDuplicateMember(member.getName());
+        saveAndFlush(member);
+        memberNameFilter.add(member.getName());
         return member.getId();
     }
 
     /**
      * 중복회원 검증
+     *
+     * 처음에는 findByName 으로 회원을 모두 불러와서 isEmpty 로 확인했는데, 확인만 하면 되므로 exists 로 바꿨다.
+     * 대부분의 가입은 처음 보는 이름이라 Bloom filter 에서 걸러지고 DB 는 조회하지 않는다.
+     *
+     * 동시에 같은 이름으로 가입하면 둘 다 여기를 통과할 수 있는데, 그건 member.name 유니크 제약이 막는다. (saveAndFlush)
      */
-    private void validateDuplicateMember(Member member) {
-        List<Member> findMembers = memberRepository.findByName(member.getName());
-
-        if(!findMembers.isEmpty()) {
+    private void validateDuplicateMember(String name) {
+        if (name == null) {
+            return;
+        }
+        if (memberNameFilter.mightContain(name) && memberRepository.existsByName(name)) {
             throw new IllegalStateException("이미 존재하는 회원입니다.");
         }
     }
 
+    /*
+    INSERT/UPDATE 를 바로 실행해야 유니크 제약 위반을 여기서 받아서 중복 회원 예외로 바꿀 수 있다.
+    (커밋 시점까지 미루면 컨트롤러에는 DataIntegrityViolationException 이 그대로 올라간다)
+     */
+    private void saveAndFlush(Member member) {
+        try {
+            memberRepository.saveAndFlush(member);
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalStateException("이미 존재하는 회원입니다.", e);
+        }
+    }
+
     /**
      * 회원 전체 조회
      */
@@ -59,8 +82,18 @@ public class MemberService {
     @Transactional
     public void update(Long id, String name) {
         Member member = memberRepository.findById(id).get();
+        if (name != null && name.equals(member.getName())) {
+            return;
+        }
+        validateDuplicateMember(name);
+        String previousName = member.getName();
         // Transaction 이 끝날 때, Dirty Check 에 의해서 변경
+        // (유니크 제약 위반을 여기서 받기 위해 바로 flush 한다)
         member.setName(name);
+        saveAndFlush(member);
+        memberNameFilter.add(name);
+        // 이름으로 검색한 주문 결과(OrderSearchCache)가 바뀐다.
+        eventPublisher.publishEvent(new MemberRenamedEvent(id, previousName, name));
 
         /*
         여기에 있는 Member 객체를 반환하게 되면,
@@ -0,0 +1,109 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Item;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.OptimisticLockException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 낙관적 락 충돌 시 재시도하는 주문 퍼사드
+ *
+ * 재시도는 반드시 트랜잭션 바깥에서 해야 한다.
+ * 충돌은 커밋(flush) 시점에 발생하고, 이미 실패한 트랜잭션 안에서는 다시 시도할 수 없으므로
+ * `@Transactional`이 붙은 OrderService 를 한 번 더 감싸서 새 트랜잭션으로 다시 호출한다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OptimisticLockOrderFacade {
+
+    private final OrderService orderService;
+    private final StockContentionMetrics stockContentionMetrics;
+
+    @Value("${jpashop.order.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${jpashop.order.retry.backoff-ms:50}")
+    private long backoffMillis;
+
+    public Long order(Long memberId, Long itemId, int count) {
+        return executeWithRetry(List.of(itemId), () -> orderService.order(memberId, itemId, count));
+    }
+
+    public Long order(Long memberId, Map<Long, Integer> itemCounts) {
+        return executeWithRetry(itemCounts.keySet(), () -> orderService.order(memberId, itemCounts));
+    }
+
+    public Long order(Long memberId, Map<Long, Integer> itemCounts, String idempotencyKey) {
+        return executeWithRetry(itemCounts.keySet(), () -> orderService.order(memberId, itemCounts, idempotencyKey));
+    }
+
+    public void cancelOrder(Long orderId) {
+        List<Long> itemIds = orderService.findOrderItemIds(orderId);
+        executeWithRetry(itemIds, () -> {
+            orderService.cancelOrder(orderId);
+            return null;
+        });
+    }
+
+    private <T> T executeWithRetry(Collection<Long> itemIds, Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            stockContentionMetrics.recordAttempt(itemIds);
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                Collection<Long> conflictedItemIds = conflictedItemIds(e, itemIds);
+                stockContentionMetrics.recordConflict(conflictedItemIds);
+
+                if (attempt >= maxAttempts) {
+                    stockContentionMetrics.recordGiveUp(conflictedItemIds);
+                    log.warn("optimistic lock retry exhausted. itemIds={}, attempts={}", itemIds, attempt);
+                    throw e;
+                }
+
+                stockContentionMetrics.recordRetry(conflictedItemIds);
+                backoff(attempt);
+            }
+        }
+    }
+
+    /*
+    충돌한 엔티티가 Item 이면 해당 상품만, 아니면(Order 충돌 등) 요청에 포함된 상품 전체로 집계한다.
+     */
+    private Collection<Long> conflictedItemIds(RuntimeException e, Collection<Long> itemIds) {
+        if (e instanceof ObjectOptimisticLockingFailureException) {
+            ObjectOptimisticLockingFailureException lockFailure = (ObjectOptimisticLockingFailureException) e;
+            Class<?> persistentClass = lockFailure.getPersistentClass();
+            if (persistentClass != null
+                    && Item.class.isAssignableFrom(persistentClass)
+                    && lockFailure.getIdentifier() instanceof Long) {
+                return List.of((Long) lockFailure.getIdentifier());
+            }
+        }
+        return itemIds;
+    }
+
+    /*
+    지수 백오프 (50ms, 100ms, 200ms ...) + 약간의 지터
+    모든 재시도가 같은 시점에 몰려서 또 충돌하는 것을 막는다.
+     */
+    private void backoff(int attempt) {
+        long delay = backoffMillis * (1L << (attempt - 1));
+        long jitter = (long) (Math.random() * backoffMillis);
+        try {
+            Thread.sleep(delay + jitter);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("재시도 대기 중 인터럽트가 발생했습니다.", ie);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.Getter;
+
+/**
+ * 주문이 생기거나 주문 상태가 바뀌었을 때 (커밋 후 OrderSearchCache 가 받는다)
+ */
+@Getter
+public class OrderChangedEvent {
+
+    private final Long orderId; // 여러 주문이 한꺼번에 바뀌었으면 null
+    private final String memberName; // 알 수 없으면 null
+    private final OrderStatus previousStatus; // 새 주문이면 null
+    private final OrderStatus status;
+
+    private OrderChangedEvent(Long orderId, String memberName, OrderStatus previousStatus, OrderStatus status) {
+        this.orderId = orderId;
+        this.memberName = memberName;
+        this.previousStatus = previousStatus;
+        this.status = status;
+    }
+
+    public static OrderChangedEvent placed(Long orderId, String memberName) {
+        return new OrderChangedEvent(orderId, memberName, null, OrderStatus.ORDER);
+    }
+
+    /**
+     * 어떤 회원의 주문인지 모르는 여러 건의 새 주문 (대량 가져오기)
+     */
+    public static OrderChangedEvent placedMany() {
+        return new OrderChangedEvent(null, null, null, OrderStatus.ORDER);
+    }
+
+    public static OrderChangedEvent cancelled(Long orderId, String memberName) {
+        return new OrderChangedEvent(orderId, memberName, OrderStatus.ORDER, OrderStatus.CANCEL);
+    }
+
+    /**
+     * 어떤 주문인지 모르는 여러 건의 취소 (일괄 취소)
+     */
+    public static OrderChangedEvent cancelledMany() {
+        return new OrderChangedEvent(null, null, OrderStatus.ORDER, OrderStatus.CANCEL);
+    }
+
+    public boolean isPlaced() {
+        return previousStatus == null;
+    }
+}
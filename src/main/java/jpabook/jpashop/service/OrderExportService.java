@@ -0,0 +1,71 @@
+package jpabook.jpashop.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * 전체 주문 내보내기 (NDJSON)
+ *
+ * 주문 하나를 JSON 한 줄로 쓴다. 목록을 메모리에 다 만든 뒤 직렬화하지 않고
+ * `chunk-size` 개씩 읽자마자 써서 내보내므로, 주문이 몇 건이든 메모리 사용량이 일정하다.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderExportService {
+
+    private static final byte NEW_LINE = '\n';
+
+    private final OrderQueryRepository orderQueryRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    @Value("${jpashop.order.export.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * @return 내보낸 주문 수
+     */
+    public long exportOrders(OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(OrderQueryDto.class);
+        long[] exported = {0};
+        long startedAt = System.currentTimeMillis();
+
+        // StreamingResponseBody 는 요청 스레드 밖에서 실행되어 OSIV 가 없으므로 여기서 트랜잭션을 연다.
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        try {
+            readOnly.executeWithoutResult(status -> orderQueryRepository.scrollAllByDto(chunkSize, chunk -> {
+                try {
+                    for (OrderQueryDto order : chunk) {
+                        out.write(writer.writeValueAsBytes(order));
+                        out.write(NEW_LINE);
+                    }
+                    // 묶음마다 내보내야 클라이언트가 바로 받기 시작하고, 응답 버퍼에도 쌓이지 않는다.
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                exported[0] += chunk.size();
+            }));
+        } catch (UncheckedIOException e) {
+            // 클라이언트가 중간에 연결을 끊은 경우 등
+            throw e.getCause();
+        }
+
+        log.info("order export finished. orders={}, {}ms", exported[0], System.currentTimeMillis() - startedAt);
+        return exported[0];
+    }
+}
@@ -0,0 +1,143 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.exception.InvalidIdempotencyKeyException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * 주문 Idempotency-Key 캐시
+ *
+ * 같은 회원이 같은 키로 다시 보낸 주문 요청에는 처음 요청의 결과(주문 ID)를 그대로 돌려준다.
+ * 처음 요청이 아직 처리 중이면 새로 주문하지 않고 같은 결과를 함께 기다린다.
+ * 키는 클라이언트가 정하므로 회원마다 따로 센다. (다른 회원의 키와 겹쳐도 그 회원의 주문 ID 를 받지 않도록)
+ *
+ * 메모리에는 최근 `max-entries` 개의 키만 `ttl-seconds` 동안 들고 있다.
+ * 그 밖의 경우(만료, 재시작, 여러 서버)는 orders (member_id, idempotency_key) 유니크 제약이 중복 주문을 막는다.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderIdempotencyCache {
+
+    public static final int MAX_KEY_LENGTH = 64; // orders.idempotency_key 컬럼 길이
+
+    private final OrderService orderService;
+
+    @Value("${jpashop.order.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${jpashop.order.idempotency.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>(); // 오래된 키부터 내보내기 위한 순서
+
+    /**
+     * @param memberId       주문하는 회원 (키는 회원마다 따로 센다)
+     * @param idempotencyKey 없으면 캐시를 거치지 않고 바로 주문한다.
+     * @param placeOrder     처음 들어온 요청일 때만 실행된다.
+     * @throws InvalidIdempotencyKeyException 키가 비어 있거나 너무 길면 (400)
+     */
+    public CompletableFuture<Long> execute(Long memberId, String idempotencyKey, Supplier<CompletableFuture<Long>> placeOrder) {
+        if (idempotencyKey == null) {
+            return placeOrder.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException("Idempotency-Key 는 1~" + MAX_KEY_LENGTH + "자여야 합니다.");
+        }
+
+        String cacheKey = memberId + ":" + idempotencyKey;
+        while (true) {
+            long now = System.currentTimeMillis();
+            Entry entry = new Entry(now + ttlSeconds * 1000);
+            Entry existing = entries.putIfAbsent(cacheKey, entry);
+
+            if (existing != null && !existing.isExpired(now)) {
+                // 요청마다 다른 future 를 돌려줘야 한 요청이 취소되어도 다른 요청에 영향이 없다.
+                return existing.result.copy();
+            }
+            if (existing != null && !entries.replace(cacheKey, existing, entry)) {
+                continue; // 다른 요청이 먼저 새 값으로 바꿨다.
+            }
+
+            insertionOrder.add(cacheKey);
+            evict(now);
+            run(memberId, idempotencyKey, cacheKey, entry, placeOrder);
+            return entry.result.copy();
+        }
+    }
+
+    private void run(Long memberId, String idempotencyKey, String cacheKey, Entry entry,
+                     Supplier<CompletableFuture<Long>> placeOrder) {
+        CompletableFuture<Long> placed;
+        try {
+            placed = placeOrder.get();
+        } catch (RuntimeException e) {
+            placed = CompletableFuture.failedFuture(e);
+        }
+
+        placed.whenComplete((orderId, failure) -> {
+            if (failure == null) {
+                entry.result.complete(orderId);
+                return;
+            }
+
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause()
+                    : failure;
+
+            // 캐시에 없던 사이에 (다른 서버 등에서) 같은 키로 먼저 저장된 주문이 있으면 그 주문을 돌려준다.
+            if (cause instanceof DataIntegrityViolationException) {
+                Optional<Long> storedOrderId = orderService.findOrderIdByIdempotencyKey(memberId, idempotencyKey);
+                if (storedOrderId.isPresent()) {
+                    entry.result.complete(storedOrderId.get());
+                    return;
+                }
+            }
+
+            // 실패는 기억하지 않는다. 일시적인 실패였다면 다음 재시도에서 다시 주문할 수 있어야 한다.
+            entries.remove(cacheKey, entry);
+            entry.result.completeExceptionally(cause);
+        });
+    }
+
+    /*
+    가장 오래된 키부터, 만료되었거나 최대 개수를 넘은 만큼 내보낸다.
+     */
+    private void evict(long now) {
+        String oldest;
+        while ((oldest = insertionOrder.peek()) != null) {
+            Entry entry = entries.get(oldest);
+            boolean stale = entry == null || entry.isExpired(now);
+            if (!stale && entries.size() <= maxEntries) {
+                return;
+            }
+            if (insertionOrder.remove(oldest) && (stale || entries.size() > maxEntries)) {
+                entries.remove(oldest);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private final long expiresAt;
+
+        Entry(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package jpabook.jpashop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.OrderRepository;
+import lombok.Data;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 주문 대량 가져오기 (CSV / NDJSON)
+ *
+ * 다른 채널의 주문을 옮겨올 때 `OrderService.order`로 한 건씩 넣으면 너무 느리다.
+ * 파일을 한 줄씩 읽어서 `chunk-size` 만큼 모이면 한 트랜잭션으로 저장하고 영속성 컨텍스트를 비운다.
+ * 메모리에는 한 묶음과 상품 가격 캐시만 올라가므로 파일 크기와 상관없이 사용량이 일정하다.
+ *
+ * 다른 채널에서 이미 재고가 반영된 주문을 옮겨오는 용도이므로 재고는 건드리지 않는다.
+ *
+ * CSV: `memberId,itemId,count[,itemId,count ...]` (첫 줄이 `memberId` 로 시작하면 헤더로 보고 건너뛴다)
+ * NDJSON: `{"memberId":1,"orderDate":"2021-01-01T10:00:00","orderItems":[{"itemId":2,"count":3}]}`
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderImportService {
+
+    private static final int MAX_REPORTED_FAILURES = 1000; // 실패 목록도 메모리에 쌓이므로 앞쪽 일부만 돌려준다.
+
+    private final MemberRepository memberRepository;
+    private final ItemRepository itemRepository;
+    private final OrderRepository orderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${jpashop.order.import.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${jpashop.order.import.item-cache-size:10000}")
+    private int itemCacheSize;
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    public ImportResult importOrders(InputStream input, Format format) throws IOException {
+        ImportResult result = new ImportResult();
+        Map<Long, Integer> itemPrices = lruCache(itemCacheSize);
+        List<ImportLine> chunk = new ArrayList<>(chunkSize);
+        long startedAt = System.nanoTime();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (format == Format.CSV && lineNumber == 1 && line.startsWith("memberId"))) {
+                    continue;
+                }
+
+                result.lines++;
+                try {
+                    chunk.add(format == Format.CSV ? parseCsv(line, lineNumber) : parseJson(line, lineNumber));
+                } catch (JsonProcessingException | IllegalArgumentException e) {
+                    result.fail(lineNumber, "형식이 올바르지 않습니다. " + e.getMessage());
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(chunk, itemPrices, result);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, itemPrices, result);
+        }
+
+        result.finish(System.nanoTime() - startedAt);
+        log.info("order import finished. lines={}, imported={}, failed={}, rows/sec={}",
+                result.lines, result.imported, result.failed, String.format("%.1f", result.rowsPerSecond));
+        return result;
+    }
+
+    /*
+    한 묶음을 한 트랜잭션으로 저장한다.
+    - 회원은 묶음에 나온 ID 를 IN 쿼리 한 번으로 조회한다. (주문과 연관관계를 맺어야 하므로 엔티티가 필요)
+    - 상품은 가격만 있으면 되므로 가격 캐시에서 찾고, 없는 것만 IN 쿼리로 조회한 뒤 프록시(getReference)로 연결한다.
+    - 주문/주문상품/배송은 cascade 로 저장되고 `hibernate.jdbc.batch_size` 만큼 묶여서 INSERT 된다.
+     */
+    private void writeChunk(List<ImportLine> chunk, Map<Long, Integer> itemPrices, ImportResult result) {
+        List<Long> placedLines = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<Long> memberIds = chunk.stream().map(line -> line.memberId).collect(Collectors.toSet());
+                Map<Long, Member> members = memberRepository.findAllById(memberIds)
+                        .stream()
+                        .collect(Collectors.toMap(Member::getId, Function.identity()));
+                Map<Long, Integer> prices = resolvePrices(chunk, itemPrices);
+
+                for (ImportLine line : chunk) {
+                    Member member = members.get(line.memberId);
+                    if (member == null) {
+                        result.fail(line.lineNumber, "존재하지 않는 회원입니다. memberId=" + line.memberId);
+                        continue;
+                    }
+                    Long missingItemId = line.itemCounts.keySet().stream()
+                            .filter(itemId -> !prices.containsKey(itemId))
+                            .findFirst()
+                            .orElse(null);
+                    if (missingItemId != null) {
+                        result.fail(line.lineNumber, "존재하지 않는 상품입니다. itemId=" + missingItemId);
+                        continue;
+                    }
+
+                    List<OrderItem> orderItems = new ArrayList<>();
+                    line.itemCounts.forEach((itemId, count) -> orderItems.add(OrderItem.createOrderItemWithoutStock(
+                            entityManager.getReference(Item.class, itemId), prices.get(itemId), count)));
+
+                    Delivery delivery = new Delivery();
+                    delivery.setAddress(member.getAddress());
+                    Order order = Order.createOrder(member, delivery, orderItems.toArray(new OrderItem[0]));
+                    if (line.orderDate != null) {
+                        order.setOrderDate(line.orderDate);
+                    }
+                    orderRepository.save(order);
+                    placedLines.add(line.lineNumber);
+                }
+                entityManager.flush();
+                if (!placedLines.isEmpty()) {
+                    eventPublisher.publishEvent(OrderChangedEvent.placedMany());
+                }
+            });
+            result.imported += placedLines.size();
+        } catch (RuntimeException e) {
+            // 묶음 전체가 롤백되었으므로 저장하려던 줄은 모두 실패로 기록한다.
+            log.warn("order import chunk failed. lines={}", placedLines.size(), e);
+            placedLines.forEach(lineNumber -> result.fail(lineNumber, "저장하지 못했습니다. " + e.getMessage()));
+        } finally {
+            entityManager.clear();
+        }
+    }
+
+    /*
+    묶음에 필요한 상품 가격
+    캐시가 묶음보다 작아서 중간에 밀려나더라도 이번 묶음에서는 쓸 수 있도록 묶음 전용 맵에 따로 담는다.
+     */
+    private Map<Long, Integer> resolvePrices(List<ImportLine> chunk, Map<Long, Integer> itemPrices) {
+        Map<Long, Integer> prices = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        for (ImportLine line : chunk) {
+            for (Long itemId : line.itemCounts.keySet()) {
+                Integer price = itemPrices.get(itemId);
+                if (price != null) {
+                    prices.put(itemId, price);
+                } else {
+                    missing.add(itemId);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<Long, Integer> found = itemRepository.findPrices(missing);
+            prices.putAll(found);
+            itemPrices.putAll(found);
+        }
+        return prices;
+    }
+
+    private ImportLine parseCsv(String line, long lineNumber) {
+        String[] columns = line.split(",");
+        if (columns.length < 3 || columns.length % 2 == 0) {
+            throw new IllegalArgumentException("memberId,itemId,count[,itemId,count ...] 형식이어야 합니다.");
+        }
+
+        ImportLine importLine = new ImportLine(lineNumber, Long.parseLong(columns[0].trim()), null);
+        for (int i = 1; i < columns.length; i += 2) {
+            importLine.addItem(Long.parseLong(columns[i].trim()), Integer.parseInt(columns[i + 1].trim()));
+        }
+        return importLine;
+    }
+
+    private ImportLine parseJson(String line, long lineNumber) throws JsonProcessingException {
+        JsonOrderLine json = objectMapper.readValue(line, JsonOrderLine.class);
+        if (json.getMemberId() == null || json.getOrderItems() == null || json.getOrderItems().isEmpty()) {
+            throw new IllegalArgumentException("memberId 와 orderItems 가 필요합니다.");
+        }
+
+        ImportLine importLine = new ImportLine(lineNumber, json.getMemberId(), json.getOrderDate());
+        for (JsonOrderItem item : json.getOrderItems()) {
+            if (item.getItemId() == null) {
+                throw new IllegalArgumentException("itemId 가 필요합니다.");
+            }
+            importLine.addItem(item.getItemId(), item.getCount());
+        }
+        return importLine;
+    }
+
+    private static <K, V> Map<K, V> lruCache(int maxSize) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private static class ImportLine {
+        private final long lineNumber;
+        private final Long memberId;
+        private final LocalDateTime orderDate; // 없으면 가져온 시각
+        private final Map<Long, Integer> itemCounts = new LinkedHashMap<>();
+
+        ImportLine(long lineNumber, Long memberId, LocalDateTime orderDate) {
+            this.lineNumber = lineNumber;
+            this.memberId = memberId;
+            this.orderDate = orderDate;
+        }
+
+        void addItem(Long itemId, int count) {
+            if (count <= 0) {
+                throw new IllegalArgumentException("주문 수량은 1 이상이어야 합니다. itemId=" + itemId);
+            }
+            itemCounts.merge(itemId, count, Integer::sum);
+        }
+    }
+
+    @Data
+    static class JsonOrderLine {
+        private Long memberId;
+        private LocalDateTime orderDate;
+        private List<JsonOrderItem> orderItems;
+    }
+
+    @Data
+    static class JsonOrderItem {
+        private Long itemId;
+        private int count;
+    }
+
+    @Getter
+    public static class ImportResult {
+        private long lines; // 읽은 줄 수 (빈 줄, 헤더 제외)
+        private long imported; // 저장된 주문 수
+        private long failed; // 실패한 줄 수
+        private long elapsedMillis;
+        private double rowsPerSecond;
+        private final List<LineFailure> failures = new ArrayList<>(); // 앞쪽 최대 1000건
+
+        void fail(long lineNumber, String message) {
+            failed++;
+            if (failures.size() < MAX_REPORTED_FAILURES) {
+                failures.add(new LineFailure(lineNumber, message));
+            }
+        }
+
+        void finish(long elapsedNanos) {
+            this.elapsedMillis = elapsedNanos / 1_000_000;
+            this.rowsPerSecond = elapsedNanos == 0 ? 0 : lines * 1_000_000_000.0 / elapsedNanos;
+        }
+    }
+
+    @Getter
+    public static class LineFailure {
+        private final long lineNumber;
+        private final String message;
+
+        LineFailure(long lineNumber, String message) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.service.OrderService.OrderCommand;
+import jpabook.jpashop.service.OrderService.OrderResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 주문 수집 파이프라인 (선택 기능, `jpashop.order.pipeline.enabled`)
+ *
+ * 주문 요청마다 트랜잭션을 열고 커밋하는 대신, 요청을 큐에 쌓아두고
+ * 소수의 writer 스레드가 여러 건을 모아서 한 트랜잭션으로 저장한다. (group commit)
+ * 커밋(fsync) 한 번으로 여러 주문이 저장되므로, 주문이 몰릴 때 처리량이 올라간다.
+ *
+ * 호출한 쪽은 주문 ID 로 완료되는 future 를 받는다.
+ * 재고 부족 등으로 실패한 주문은 해당 예외로 완료된다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderIngestionPipeline {
+
+    private final OrderService orderService;
+    private final OptimisticLockOrderFacade optimisticLockOrderFacade;
+
+    @Value("${jpashop.order.pipeline.enabled:false}")
+    private boolean enabled;
+
+    @Value("${jpashop.order.pipeline.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${jpashop.order.pipeline.writers:1}")
+    private int writers;
+
+    @Value("${jpashop.order.pipeline.batch-size:100}")
+    private int batchSize;
+
+    @Value("${jpashop.order.pipeline.max-wait-ms:5}")
+    private long maxWaitMillis;
+
+    private BlockingQueue<PendingOrder> queue;
+    private ExecutorService writerPool;
+    private volatile boolean running;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+
+        AtomicInteger sequence = new AtomicInteger();
+        writerPool = Executors.newFixedThreadPool(writers, runnable -> {
+            Thread thread = new Thread(runnable, "order-writer-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < writers; i++) {
+            writerPool.execute(this::runWriter);
+        }
+    }
+
+    /**
+     * 큐에 남은 주문까지 모두 저장한 뒤 종료한다.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        writerPool.shutdown();
+        if (!writerPool.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("order writers did not finish in time. pending={}", queue.size());
+        }
+    }
+
+    /**
+     * 주문 접수
+     * 큐가 가득 차 있으면 기다리지 않고 바로 실패한다. (요청이 끝없이 쌓여서 응답이 늦어지는 것보다 낫다)
+     */
+    public CompletableFuture<Long> submit(Long memberId, Map<Long, Integer> itemCounts) {
+        return submit(memberId, itemCounts, null);
+    }
+
+    public CompletableFuture<Long> submit(Long memberId, Map<Long, Integer> itemCounts, String idempotencyKey) {
+        PendingOrder pending = new PendingOrder(new OrderCommand(memberId, itemCounts, idempotencyKey));
+        if (!running || !queue.offer(pending)) {
+            pending.future.completeExceptionally(new RejectedExecutionException("주문이 밀려 있습니다. 잠시 후 다시 시도해주세요."));
+        }
+        return pending.future;
+    }
+
+    /*
+    첫 주문이 들어오면 최대 `max-wait-ms` 동안 `batch-size` 까지 더 모아서 한번에 저장한다.
+    주문이 드문드문 들어올 때는 오래 붙잡아두지 않고, 몰릴 때는 큰 묶음으로 커밋하게 된다.
+     */
+    private void runWriter() {
+        List<PendingOrder> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingOrder next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(pending -> pending.future.completeExceptionally(e));
+                return;
+            } catch (RuntimeException e) {
+                // writer 스레드가 죽으면 큐가 영영 비워지지 않으므로, 이 묶음만 실패시키고 계속 돈다.
+                log.error("order writer failed. batch={}", batch.size(), e);
+                batch.forEach(pending -> pending.future.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<PendingOrder> batch) {
+        List<OrderCommand> commands = new ArrayList<>(batch.size());
+        batch.forEach(pending -> commands.add(pending.command));
+
+        List<OrderResult> results;
+        try {
+            results = orderService.orderBatch(commands);
+        } catch (RuntimeException e) {
+            /*
+            묶음 전체가 실패하면 (다른 writer 와의 낙관적 락 충돌 등) 어느 주문 때문인지 알 수 없으므로
+            한 건씩 다시 처리한다. 이때는 재시도 퍼사드를 거친다.
+             */
+            log.warn("order batch failed, falling back to single orders. batch={}", batch.size(), e);
+            batch.forEach(this::processOne);
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            OrderResult result = results.get(i);
+            if (result.getFailure() != null) {
+                batch.get(i).future.completeExceptionally(result.getFailure());
+            } else {
+                batch.get(i).future.complete(result.getOrderId());
+            }
+        }
+    }
+
+    private void processOne(PendingOrder pending) {
+        try {
+            OrderCommand command = pending.command;
+            pending.future.complete(optimisticLockOrderFacade.order(
+                    command.getMemberId(), command.getItemCounts(), command.getIdempotencyKey()));
+        } catch (RuntimeException e) {
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    private static class PendingOrder {
+        private final OrderCommand command;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        PendingOrder(OrderCommand command) {
+            this.command = command;
+        }
+    }
+}
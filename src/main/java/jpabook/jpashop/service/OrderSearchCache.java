@@ -0,0 +1,235 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.datasource.ReplicaReads;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.OrderSearch;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.StringUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * 주문 검색 결과 캐시 (OrderService.findOrders, OrderQueryService.findOrderList)
+ *
+ * 같은 검색 조건(+ 페이지)으로 다시 조회하면 검색 쿼리 대신 캐시에 둔 주문 ID 목록으로 주문만 다시 읽는다.
+ * 엔티티는 영속성 컨텍스트마다 달라야 하므로 담지 않는다.
+ *
+ * 최근 `max-entries` 개의 결과를 `ttl-seconds` 동안 들고 있고, 커밋된 변경에 따라 ID 목록이 바뀔 수 있는 결과만 지운다.
+ * - 주문/취소 (OrderChangedEvent): 그 주문이 들어가거나 빠질 수 있는 결과
+ * - 회원 이름 변경 (MemberRenamedEvent): 이전 이름이나 새 이름이 이름 조건에 맞는 결과
+ */
+@Component
+public class OrderSearchCache {
+
+    @Value("${jpashop.order.search-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jpashop.order.search-cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${jpashop.order.search-cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    private final Map<Key, CachedResult> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /*
+    무효화될 때마다 올린다.
+    검색하는 동안 무효화가 있었으면 그 결과는 바뀌기 전 데이터일 수 있으므로 담지 않는다.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @return 없거나 만료되었으면 null
+     */
+    public Result get(Key key) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (entries) {
+            CachedResult entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired(System.currentTimeMillis())) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.result;
+        }
+    }
+
+    /**
+     * 검색을 시작하기 전에 받아두고 `put` 에 넘긴다.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * replica 에서 검색한 결과는 복제 지연만큼 늦을 수 있으므로 담지 않는다.
+     */
+    public void put(Key key, long generationBeforeSearch, List<Long> orderIds, String nextCursor) {
+        if (!enabled || ReplicaReads.isReplicaRead()) {
+            return;
+        }
+        synchronized (entries) {
+            if (generation.get() != generationBeforeSearch) {
+                return;
+            }
+            entries.put(key, new CachedResult(new Result(List.copyOf(orderIds), nextCursor),
+                    System.currentTimeMillis() + ttlSeconds * 1000));
+        }
+    }
+
+    /*
+    트랜잭션이 없으면 (fallbackExecution) 바로, 있으면 커밋된 뒤에 지운다.
+    커밋 전에 지우면 그 사이 다른 요청이 바뀌기 전 데이터로 다시 채울 수 있다.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.entrySet().removeIf(e -> affects(e.getKey(), e.getValue().result, event));
+        }
+    }
+
+    /*
+    이전 이름에 맞던 결과에서는 그 회원의 주문이 빠지고, 새 이름에 맞는 결과에는 들어간다.
+    이름 조건이 없는 결과는 ID 목록이 그대로다.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMemberRenamed(MemberRenamedEvent event) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.keySet().removeIf(key -> key.memberName != null
+                    && (key.nameMatches(event.getPreviousName()) || key.nameMatches(event.getName())));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /*
+    결과에는 주문 ID 만 있고 주문은 매번 다시 읽으므로, ID 목록이 바뀌는 경우만 지우면 된다.
+    - 새 주문: 상태 조건이 없거나 ORDER 인 결과에 들어갈 수 있다.
+    - 상태 변경: 상태 조건이 바뀐 상태인 결과에는 들어가고, 이전 상태인 결과 중 그 주문이 있던 것에서는 빠진다.
+      상태 조건이 없는 결과는 ID 목록이 그대로다.
+    회원 이름 조건은 검색과 같은 LIKE 규칙으로 비교하고, 이름을 모르면 맞는 것으로 본다.
+     */
+    private static boolean affects(Key key, Result result, OrderChangedEvent event) {
+        if (!key.nameMatches(event.getMemberName())) {
+            return false;
+        }
+        if (key.status == null) {
+            return event.isPlaced();
+        }
+        if (key.status == event.getStatus()) {
+            return true;
+        }
+        if (key.status == event.getPreviousStatus()) {
+            return event.getOrderId() == null || result.orderIds.contains(event.getOrderId());
+        }
+        return false;
+    }
+
+    /**
+     * 정규화한 검색 조건 + 페이지
+     */
+    @EqualsAndHashCode(exclude = "namePattern")
+    public static class Key {
+        private final String memberName; // LIKE 패턴, 비어 있으면 (검색 조건이 없는 것과 같으므로) null
+        private final OrderStatus status;
+        private final String after; // 첫 페이지면 null
+        private final int limit;
+        private final Pattern namePattern;
+
+        private Key(String memberName, OrderStatus status, String after, int limit) {
+            this.memberName = memberName;
+            this.status = status;
+            this.after = after;
+            this.limit = limit;
+            this.namePattern = memberName == null ? null : likePattern(memberName);
+        }
+
+        /**
+         * 검색 조건만 있는 전체 검색 (OrderService.findOrders(OrderSearch), limit 은 0 으로 둔다)
+         */
+        public static Key of(OrderSearch orderSearch) {
+            return of(orderSearch, null, 0);
+        }
+
+        /**
+         * 커서 페이지
+         */
+        public static Key of(OrderSearch orderSearch, String after, int limit) {
+            String memberName = StringUtils.hasText(orderSearch.getMemberName()) ? orderSearch.getMemberName() : null;
+            return new Key(memberName, orderSearch.getOrderStatus(), StringUtils.hasText(after) ? after : null, limit);
+        }
+
+        boolean nameMatches(String name) {
+            return namePattern == null || name == null || namePattern.matcher(name).matches();
+        }
+
+        // LIKE 의 % 는 아무 문자열, _ 는 아무 문자 하나
+        private static Pattern likePattern(String like) {
+            StringBuilder regex = new StringBuilder();
+            StringBuilder literal = new StringBuilder();
+            for (char c : like.toCharArray()) {
+                if (c == '%' || c == '_') {
+                    if (literal.length() > 0) {
+                        regex.append(Pattern.quote(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    regex.append(c == '%' ? ".*" : ".");
+                } else {
+                    literal.append(c);
+                }
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+            }
+            return Pattern.compile(regex.toString(), Pattern.DOTALL);
+        }
+    }
+
+    @Getter
+    public static class Result {
+        private final List<Long> orderIds;
+        private final String nextCursor; // 마지막 페이지면 null
+
+        Result(List<Long> orderIds, String nextCursor) {
+            this.orderIds = orderIds;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    private static class CachedResult {
+        private final Result result;
+        private final long expiresAt;
+
+        CachedResult(Result result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
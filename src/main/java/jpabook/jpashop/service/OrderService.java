@@ -5,15 +5,30 @@ import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
 import jpabook.jpashop.repository.ItemRepository;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.OrderCursor;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderSlice;
+import jpabook.jpashop.service.inventory.InventoryEngine;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
@@ -22,6 +37,16 @@ public class OrderService {
     private final OrderRepository orderRepository;
     private final MemberRepository memberRepository;
     private final ItemRepository itemRepository;
+    private final InventoryEngine inventoryEngine;
+    private final OrderSearchCache orderSearchCache;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /*
+    true 이면 재고를 엔티티 변경 감지 대신 조건부 UPDATE 쿼리로 차감/복구한다.
+    (ItemRepository.removeStock 참고)
+     */
+    @Value("${jpashop.order.atomic-stock:false}")
+    private boolean atomicStock;
 
     /**
      * 주문
@@ -42,7 +67,7 @@ public class OrderService {
         // 생성 메소드륾 막을 때는
         // 롬복의 `@NoArgsConstructor(access = AccessLevel.PROTECTED)` 어노테이션이 유용하다.
         // 항상 필요한 부분만 사용하고 나머지는 제약하는 스타일이 유지보수에 용이하다.
-        OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), count);
+        OrderItem orderItem = createOrderItem(item, count);
 
         // 주문 생성
         Order order = Order.createOrder(member, delivery, orderItem);
@@ -56,9 +81,124 @@ public class OrderService {
         // 다른 테이블에서 참조하는 엔티티가 변할 수도 있기에 주의해야 한다.
         // 이 방법에 대해 잘 모르면 아예 안쓰다가 조심조심 리팩토링 해보는 것이 좋다.
         orderRepository.save(order);
+        eventPublisher.publishEvent(OrderChangedEvent.placed(order.getId(), member.getName()));
+        return order.getId();
+    }
+
+    /**
+     * 장바구니 주문 (여러 상품을 하나의 주문으로)
+     *
+     * @param itemCounts 상품 ID -> 주문 수량
+     */
+    @Transactional
+    public Long order(Long memberId, Map<Long, Integer> itemCounts) {
+        return order(memberId, itemCounts, null);
+    }
+
+    /**
+     * 장바구니 주문 (Idempotency-Key 포함)
+     * 같은 회원이 같은 키로 이미 저장한 주문이 있으면 새로 주문하지 않고 그 주문 ID 를 돌려준다.
+     */
+    @Transactional
+    public Long order(Long memberId, Map<Long, Integer> itemCounts, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            Optional<Long> existingOrderId = orderRepository.findIdByIdempotencyKey(memberId, idempotencyKey);
+            if (existingOrderId.isPresent()) {
+                return existingOrderId.get();
+            }
+        }
+
+        if (itemCounts.isEmpty()) {
+            throw new IllegalArgumentException("주문할 상품이 없습니다.");
+        }
+
+        Member member = memberRepository.findById(memberId).get();
+
+        // 상품은 IN 쿼리 한번으로 모두 조회한다.
+        Map<Long, Item> items = itemRepository.findAllByIds(itemCounts.keySet())
+                .stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+
+        // 재고가 하나라도 부족하면 예외가 발생하고, 트랜잭션 전체가 롤백된다.
+        List<OrderItem> orderItems = new ArrayList<>();
+        itemCounts.forEach((itemId, count) -> {
+            Item item = items.get(itemId);
+            if (item == null) {
+                throw new IllegalArgumentException("존재하지 않는 상품입니다. itemId=" + itemId);
+            }
+            orderItems.add(createOrderItem(item, count));
+        });
+
+        Order order = Order.createOrder(member, delivery, orderItems.toArray(new OrderItem[0]));
+        order.setIdempotencyKey(idempotencyKey);
+
+        // OrderItem 들은 cascade 로 함께 저장되고, `hibernate.jdbc.batch_size` 설정에 의해 배치 INSERT 된다.
+        orderRepository.save(order);
+        eventPublisher.publishEvent(OrderChangedEvent.placed(order.getId(), member.getName()));
         return order.getId();
     }
 
+    /**
+     * 여러 건의 주문을 한 트랜잭션으로 저장 (주문 수집 파이프라인의 묶음 커밋용)
+     *
+     * 재고 부족처럼 한 건에만 해당하는 실패는 그 주문만 실패로 돌려주고 나머지는 그대로 저장한다.
+     * 실패한 주문에서 이미 차감한 재고는 같은 트랜잭션 안에서 되돌린다.
+     *
+     * @return 요청과 같은 순서의 결과
+     */
+    @Transactional
+    public List<OrderResult> orderBatch(List<OrderCommand> commands) {
+        // 묶음 안의 상품은 IN 쿼리 한번으로 모두 조회한다.
+        Set<Long> itemIds = commands.stream()
+                .flatMap(command -> command.getItemCounts().keySet().stream())
+                .collect(Collectors.toSet());
+        Map<Long, Item> items = itemRepository.findAllByIds(itemIds)
+                .stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+
+        List<OrderResult> results = new ArrayList<>(commands.size());
+        for (OrderCommand command : commands) {
+            List<OrderItem> orderItems = new ArrayList<>();
+            try {
+                if (command.getIdempotencyKey() != null) {
+                    Optional<Long> existingOrderId = orderRepository.findIdByIdempotencyKey(command.getMemberId(), command.getIdempotencyKey());
+                    if (existingOrderId.isPresent()) {
+                        results.add(OrderResult.success(existingOrderId.get()));
+                        continue;
+                    }
+                }
+                if (command.getItemCounts().isEmpty()) {
+                    throw new IllegalArgumentException("주문할 상품이 없습니다.");
+                }
+                Member member = memberRepository.findById(command.getMemberId())
+                        .orElseThrow(() -> new IllegalArgumentException("존재하지 않는 회원입니다. memberId=" + command.getMemberId()));
+
+                command.getItemCounts().forEach((itemId, count) -> {
+                    Item item = items.get(itemId);
+                    if (item == null) {
+                        throw new IllegalArgumentException("존재하지 않는 상품입니다. itemId=" + itemId);
+                    }
+                    orderItems.add(createOrderItem(item, count));
+                });
+
+                Delivery delivery = new Delivery();
+                delivery.setAddress(member.getAddress());
+                Order order = Order.createOrder(member, delivery, orderItems.toArray(new OrderItem[0]));
+                order.setIdempotencyKey(command.getIdempotencyKey());
+                orderRepository.save(order);
+                eventPublisher.publishEvent(OrderChangedEvent.placed(order.getId(), member.getName()));
+                results.add(OrderResult.success(order.getId()));
+            } catch (NotEnoughStockException | IllegalArgumentException e) {
+                orderItems.forEach(this::restock);
+                results.add(OrderResult.failure(e));
+            }
+        }
+        return results;
+    }
+
     /**
      * 주문 취소
      */
@@ -66,18 +206,140 @@ public class OrderService {
     public void cancelOrder(Long orderId) {
         // 주문 엔티티 조회
         Order order = orderRepository.findOne(orderId);
+        // 검색 결과 캐시는 커밋된 뒤에 지운다. (OrderSearchCache)
+        eventPublisher.publishEvent(OrderChangedEvent.cancelled(order.getId(), order.getMember().getName()));
         // 주문 취소 (기존에 만들었던 엔티티 내부메소드로 처리)
         // JPA의 진짜 장점은 이 과정에서 생기는 여러가지 update 쿼리를 작성하지 않아도 된다는 것이다.
         // 엔티티 내부메소드로 엔티티 내부의 데이터를 Set 하게 되면 업데이트 쿼리가 자동으로 날아간다.
         // 아래 취소의 경우에는 Order와 OrderItem에 업데이트 쿼리가 날아갈 것이다.
-        order.cancel();
+        if (!inventoryEngine.isEnabled() && !atomicStock) {
+            order.cancel();
+            return;
+        }
+
+        order.cancelWithoutRestock();
+        for (OrderItem orderItem : order.getOrderItems()) {
+            restock(orderItem);
+        }
+    }
+
+    /*
+    재고 차감 방식
+    1. 분할 재고 상품은 항상 엔티티로 버킷에서 차감 (item row 의 재고 컬럼을 쓰지 않음)
+    2. 인메모리 재고 엔진이 켜져 있으면 메모리에서 예약 (item row 를 잠그지 않음)
+    3. atomic-stock 이면 조건부 UPDATE
+    4. 기본은 엔티티 변경 감지
+     */
+    private OrderItem createOrderItem(Item item, int count) {
+        if (item.isSplitStock()) {
+            return OrderItem.createOrderItem(item, item.getPrice(), count);
+        }
+
+        if (inventoryEngine.isEnabled()) {
+            if (!inventoryEngine.reserve(item, count)) {
+                throw new NotEnoughStockException("need more stock");
+            }
+            return OrderItem.createOrderItemWithoutStock(item, item.getPrice(), count);
+        }
+
+        if (atomicStock) {
+            if (itemRepository.removeStock(item.getId(), count) == 0) {
+                throw new NotEnoughStockException("need more stock");
+            }
+            return OrderItem.createOrderItemWithoutStock(item, item.getPrice(), count);
+        }
+
+        return OrderItem.createOrderItem(item, item.getPrice(), count);
+    }
+
+    private void restock(OrderItem orderItem) {
+        Item item = orderItem.getItem();
+        if (item.isSplitStock()) {
+            orderItem.cancel();
+        } else if (inventoryEngine.isEnabled()) {
+            inventoryEngine.release(item, orderItem.getCount());
+        } else if (atomicStock) {
+            itemRepository.addStock(item.getId(), orderItem.getCount());
+        } else {
+            orderItem.cancel();
+        }
+    }
+
+    public Optional<Long> findOrderIdByIdempotencyKey(Long memberId, String idempotencyKey) {
+        return orderRepository.findIdByIdempotencyKey(memberId, idempotencyKey);
+    }
+
+    /**
+     * 주문에 포함된 상품 ID 목록
+     */
+    public List<Long> findOrderItemIds(Long orderId) {
+        return orderRepository.findItemIds(orderId);
     }
 
     /**
      * TODO: 주문 검색
+     * 같은 조건으로 다시 검색하면 검색 결과 캐시의 주문 ID 로 주문만 다시 읽는다. (OrderSearchCache)
     */
     public List<Order> findOrders(OrderSearch orderSearch) {
-        return orderRepository.findAll(orderSearch);
+        OrderSearchCache.Key key = OrderSearchCache.Key.of(orderSearch);
+        OrderSearchCache.Result cached = orderSearchCache.get(key);
+        if (cached != null) {
+            return orderRepository.findAllWithMemberDeliveryByIds(cached.getOrderIds());
+        }
+
+        long generation = orderSearchCache.generation();
+        List<Order> orders = orderRepository.findAll(orderSearch);
+        orderSearchCache.put(key, generation, orderIds(orders), null);
+        return orders;
+    }
+
+    /**
+     * 주문 검색 (커서 페이징, 최신 주문부터)
+     * @param after 이전 페이지의 nextCursor (없으면 첫 페이지)
+     */
+    public OrderSlice findOrders(OrderSearch orderSearch, String after, int limit) {
+        OrderCursor cursor = OrderCursor.decode(after); // 잘못된 커서는 캐시를 보기 전에 거른다.
+        OrderSearchCache.Key key = OrderSearchCache.Key.of(orderSearch, after, limit);
+        OrderSearchCache.Result cached = orderSearchCache.get(key);
+        if (cached != null) {
+            return OrderSlice.of(orderRepository.findAllWithMemberDeliveryByIds(cached.getOrderIds()), cached.getNextCursor());
+        }
+
+        long generation = orderSearchCache.generation();
+        OrderSlice orderSlice = orderRepository.findAll(orderSearch, cursor, limit);
+        orderSearchCache.put(key, generation, orderIds(orderSlice.getOrders()), orderSlice.getNextCursor());
+        return orderSlice;
+    }
+
+    private static List<Long> orderIds(List<Order> orders) {
+        return orders.stream().map(Order::getId).collect(Collectors.toList());
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class OrderCommand {
+        private Long memberId;
+        private Map<Long, Integer> itemCounts; // 상품 ID -> 주문 수량
+        private String idempotencyKey; // 없으면 null
+
+        public OrderCommand(Long memberId, Map<Long, Integer> itemCounts) {
+            this(memberId, itemCounts, null);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class OrderResult {
+        private Long orderId;
+        private RuntimeException failure; // 성공이면 null
+
+        static OrderResult success(Long orderId) {
+            return new OrderResult(orderId, null);
+        }
+
+        static OrderResult failure(RuntimeException failure) {
+            return new OrderResult(null, failure);
+        }
     }
 
     /*
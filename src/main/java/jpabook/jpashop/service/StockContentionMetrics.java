@@ -0,0 +1,83 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 상품별 낙관적 락 충돌 통계
+ *
+ * 어떤 상품(SKU)에서 충돌이 많이 나는지 보고, 재시도 횟수를 정하는 데 참고한다.
+ */
+@Component
+public class StockContentionMetrics {
+
+    private final ConcurrentMap<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    public void recordAttempt(Collection<Long> itemIds) {
+        itemIds.forEach(itemId -> counter(itemId).attempts.increment());
+    }
+
+    public void recordConflict(Collection<Long> itemIds) {
+        itemIds.forEach(itemId -> counter(itemId).conflicts.increment());
+    }
+
+    public void recordRetry(Collection<Long> itemIds) {
+        itemIds.forEach(itemId -> counter(itemId).retries.increment());
+    }
+
+    public void recordGiveUp(Collection<Long> itemIds) {
+        itemIds.forEach(itemId -> counter(itemId).giveUps.increment());
+    }
+
+    /**
+     * 충돌이 많은 상품 순으로 정렬된 통계
+     */
+    public List<ItemContention> snapshot() {
+        return counters.entrySet()
+                .stream()
+                .map(e -> e.getValue().toSnapshot(e.getKey()))
+                .sorted(Comparator.comparingLong(ItemContention::getConflicts).reversed())
+                .collect(Collectors.toList());
+    }
+
+    private Counter counter(Long itemId) {
+        return counters.computeIfAbsent(itemId, id -> new Counter());
+    }
+
+    /*
+    여러 스레드가 같은 상품의 카운터를 동시에 올리므로 LongAdder 를 사용한다.
+     */
+    private static class Counter {
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder giveUps = new LongAdder();
+
+        ItemContention toSnapshot(Long itemId) {
+            long attemptCount = attempts.sum();
+            long conflictCount = conflicts.sum();
+            double conflictRate = attemptCount == 0 ? 0 : (double) conflictCount / attemptCount;
+            return new ItemContention(itemId, attemptCount, conflictCount, retries.sum(), giveUps.sum(), conflictRate);
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class ItemContention {
+        private Long itemId;
+        private long attempts; // 주문/취소 시도 횟수
+        private long conflicts; // 낙관적 락 충돌 횟수
+        private long retries; // 충돌 후 재시도한 횟수
+        private long giveUps; // 재시도 한도를 넘겨서 실패한 횟수
+        private double conflictRate; // conflicts / attempts
+    }
+}
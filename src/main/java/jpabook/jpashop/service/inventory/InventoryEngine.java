@@ -0,0 +1,320 @@
+package jpabook.jpashop.service.inventory;
+
+import jpabook.jpashop.domain.InventoryCheckpoint;
+import jpabook.jpashop.domain.item.Item;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 인메모리 재고 엔진 (선택 기능, `jpashop.inventory.in-memory.enabled`)
+ *
+ * 주문할 때 item 테이블의 row 를 잠그지 않고 메모리의 카운터에서 재고를 예약한다.
+ * 변경분은 모아두었다가 주기적으로 한 번에 item 테이블에 반영한다. (write-behind)
+ *
+ * - 예약/반환은 먼저 예약 로그에 기록한 뒤 메모리에 반영한다.
+ * - 반영(flush)은 변경분과 체크포인트를 같은 트랜잭션으로 커밋한다.
+ * - 재시작할 때는 체크포인트 이후의 로그 세그먼트를 DB 에 다시 적용한다. (reconcile)
+ *
+ * 주의: 이 모드에서는 item.stock_quantity 가 flush 주기만큼 늦게 반영된다.
+ * 주문 도중 서버가 죽으면 커밋되지 않은 주문의 예약분까지 차감된 채로 복구되므로,
+ * 재고는 실제보다 적게 잡힐 수는 있어도 초과 판매되지는 않는다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InventoryEngine {
+
+    private static final String FLUSH_SQL =
+            "update item set stock_quantity = stock_quantity + ?, version = version + 1 where item_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+
+    @Value("${jpashop.inventory.in-memory.enabled:false}")
+    private boolean enabled;
+
+    @Value("${jpashop.inventory.in-memory.log-dir:./inventory-log}")
+    private String logDirectory;
+
+    @Value("${jpashop.inventory.in-memory.sync-on-write:true}")
+    private boolean syncOnWrite;
+
+    @Value("${jpashop.inventory.in-memory.stripes:0}")
+    private int stripes;
+
+    private final ConcurrentMap<Long, StripedStockCounter> counters = new ConcurrentHashMap<>();
+
+    /*
+    예약/반환은 read lock 을 공유하고, flush 는 write lock 으로 잠깐 멈춰 세운 뒤
+    변경분을 꺼내고 로그 세그먼트를 넘긴다. (둘이 같은 시점을 기준으로 잘려야 하기 때문)
+     */
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    private ReservationLog reservationLog;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (stripes <= 0) {
+            stripes = Runtime.getRuntime().availableProcessors();
+        }
+
+        reservationLog = new ReservationLog(Paths.get(logDirectory), syncOnWrite);
+        long lastSegment = reconcile();
+        reservationLog.open(lastSegment);
+    }
+
+    /**
+     * 재고 예약
+     * 현재 트랜잭션이 롤백되면 예약한 재고를 자동으로 되돌린다.
+     *
+     * @return 재고가 부족하면 false
+     */
+    public boolean reserve(Item item, int quantity) {
+        StripedStockCounter counter = counter(item);
+
+        flushLock.readLock().lock();
+        try {
+            if (!counter.tryReserve(quantity)) {
+                return false;
+            }
+            try {
+                reservationLog.append(item.getId(), -quantity);
+            } catch (IOException e) {
+                counter.release(quantity);
+                throw new UncheckedIOException("재고 예약 로그를 기록하지 못했습니다.", e);
+            }
+        } finally {
+            flushLock.readLock().unlock();
+        }
+
+        Long itemId = item.getId();
+        afterRollback(() -> release(itemId, quantity));
+        return true;
+    }
+
+    /**
+     * 재고 반환 (주문 취소)
+     * 트랜잭션 안에서 호출되면 커밋된 뒤에 반환한다.
+     */
+    public void release(Item item, int quantity) {
+        counter(item);
+        Long itemId = item.getId();
+        afterCommit(() -> release(itemId, quantity));
+    }
+
+    /**
+     * 재고 수량 직접 수정
+     * item 테이블을 바로 덮어쓰면 아직 반영되지 않은 변경분과 섞이므로, 차이만큼을 변경분으로 기록한다.
+     */
+    public void adjustTo(Item item, int stockQuantity) {
+        StripedStockCounter counter = counter(item);
+        Long itemId = item.getId();
+        afterCommit(() -> {
+            flushLock.readLock().lock();
+            try {
+                long delta = counter.adjustTo(stockQuantity);
+                appendOrThrow(itemId, delta);
+            } finally {
+                flushLock.readLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * 메모리에 쌓인 변경분을 item 테이블에 반영한다.
+     */
+    @Scheduled(fixedDelayString = "${jpashop.inventory.in-memory.flush-interval-ms:200}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        Map<Long, Long> deltas = new HashMap<>();
+        long segment;
+
+        flushLock.writeLock().lock();
+        try {
+            counters.forEach((itemId, counter) -> {
+                long delta = counter.drainPendingDelta();
+                if (delta != 0) {
+                    deltas.put(itemId, delta);
+                }
+            });
+            segment = reservationLog.rotate();
+        } catch (IOException e) {
+            deltas.forEach((itemId, delta) -> counters.get(itemId).restorePendingDelta(delta));
+            log.error("failed to rotate reservation log", e);
+            return;
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+
+        try {
+            apply(deltas, segment);
+        } catch (RuntimeException e) {
+            // 실패한 변경분은 다음 flush 때 다시 반영한다. 세그먼트는 지우지 않고 남겨둔다.
+            deltas.forEach((itemId, delta) -> counters.get(itemId).restorePendingDelta(delta));
+            log.error("failed to flush inventory deltas. segment={}", segment, e);
+            return;
+        }
+
+        deleteSegmentsUpTo(segment);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        reservationLog.close();
+    }
+
+    /*
+    체크포인트 이후의 세그먼트를 순서대로 DB 에 다시 적용한다.
+     */
+    private long reconcile() throws IOException {
+        long lastSegment = transactionTemplate.execute(status -> checkpoint().getLastSegment());
+
+        for (Long segment : reservationLog.segments()) {
+            if (segment > lastSegment) {
+                Map<Long, Long> deltas = reservationLog.read(segment);
+                log.info("reconcile reservation log. segment={}, items={}", segment, deltas.size());
+                apply(deltas, segment);
+                lastSegment = segment;
+            }
+            reservationLog.delete(segment);
+        }
+        return lastSegment;
+    }
+
+    /*
+    변경분과 체크포인트를 한 트랜잭션으로 커밋한다.
+    커밋 직후 죽더라도 체크포인트가 함께 올라갔으므로 같은 세그먼트를 두 번 적용하지 않는다.
+
+    JDBC 로 직접 갱신하므로 2차 캐시(item 영역)는 이 변경을 모른다.
+    커밋한 뒤 반영한 상품을 캐시에서 지워야 다음 조회가 새 재고와 version 을 읽는다.
+    (지우지 않으면 TTL 동안 옛 재고가 보이고, 옛 version 으로 수정하다 OptimisticLockException 이 난다)
+     */
+    private void apply(Map<Long, Long> deltas, long segment) {
+        List<Object[]> batchArgs = new ArrayList<>();
+        deltas.forEach((itemId, delta) -> batchArgs.add(new Object[]{delta, itemId}));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!batchArgs.isEmpty()) {
+                jdbcTemplate.batchUpdate(FLUSH_SQL, batchArgs);
+            }
+            checkpoint().advanceTo(segment);
+        });
+
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        deltas.keySet().forEach(itemId -> cache.evict(Item.class, itemId));
+    }
+
+    private InventoryCheckpoint checkpoint() {
+        InventoryCheckpoint checkpoint = entityManager.find(InventoryCheckpoint.class, InventoryCheckpoint.SINGLETON_ID);
+        if (checkpoint == null) {
+            checkpoint = InventoryCheckpoint.create();
+            entityManager.persist(checkpoint);
+        }
+        return checkpoint;
+    }
+
+    private void deleteSegmentsUpTo(long segment) {
+        try {
+            for (Long closed : reservationLog.segments()) {
+                if (closed <= segment) {
+                    reservationLog.delete(closed);
+                }
+            }
+        } catch (IOException e) {
+            // 지우지 못한 세그먼트는 체크포인트 이하이므로 재시작 시 적용되지 않고 지워진다.
+            log.warn("failed to delete reservation log segments up to {}", segment, e);
+        }
+    }
+
+    private void release(Long itemId, int quantity) {
+        StripedStockCounter counter = counters.get(itemId);
+        flushLock.readLock().lock();
+        try {
+            counter.release(quantity);
+            appendOrThrow(itemId, quantity);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    private void appendOrThrow(Long itemId, long delta) {
+        try {
+            reservationLog.append(itemId, delta);
+        } catch (IOException e) {
+            throw new UncheckedIOException("재고 예약 로그를 기록하지 못했습니다.", e);
+        }
+    }
+
+    /*
+    처음 다루는 상품은 DB 의 재고로 카운터를 만든다.
+    reconcile 이후에는 DB 와 메모리의 재고가 같으므로 이 값을 믿을 수 있다.
+     */
+    private StripedStockCounter counter(Item item) {
+        return counters.computeIfAbsent(item.getId(), id -> new StripedStockCounter(stripes, item.getStockQuantity()));
+    }
+
+    private void afterRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
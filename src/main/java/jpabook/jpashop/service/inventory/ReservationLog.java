@@ -0,0 +1,137 @@
+package jpabook.jpashop.service.inventory;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 재고 예약 로그 (append-only)
+ *
+ * 메모리에서 재고를 바꾸기 전에 `itemId,delta` 한 줄을 먼저 기록해둔다.
+ * 서버가 죽어서 메모리의 변경분을 DB 에 반영하지 못했더라도, 재시작할 때 이 로그를 다시 적용하면 된다.
+ *
+ * 로그는 세그먼트 단위로 나뉜다. (reservation-{번호}.log)
+ * DB 에 반영할 때마다 새 세그먼트로 넘어가고, 반영이 끝난 세그먼트는 지운다.
+ */
+@Slf4j
+class ReservationLog implements Closeable {
+
+    private static final String PREFIX = "reservation-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final boolean syncOnWrite;
+
+    private FileChannel channel;
+    private long segment;
+
+    ReservationLog(Path directory, boolean syncOnWrite) throws IOException {
+        this.directory = directory;
+        this.syncOnWrite = syncOnWrite;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * 기존 세그먼트들 뒤에 새 세그먼트를 열어서 기록을 시작한다.
+     */
+    synchronized void open(long afterSegment) throws IOException {
+        long last = segments().stream().mapToLong(Long::longValue).max().orElse(0L);
+        openSegment(Math.max(last, afterSegment) + 1);
+    }
+
+    synchronized void append(long itemId, long delta) throws IOException {
+        ByteBuffer line = ByteBuffer.wrap((itemId + "," + delta + "\n").getBytes(StandardCharsets.US_ASCII));
+        while (line.hasRemaining()) {
+            channel.write(line);
+        }
+        if (syncOnWrite) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * 현재 세그먼트를 닫고 다음 세그먼트로 넘어간다.
+     *
+     * @return 닫힌 세그먼트 번호
+     */
+    synchronized long rotate() throws IOException {
+        long closed = segment;
+        channel.force(false);
+        channel.close();
+        openSegment(closed + 1);
+        return closed;
+    }
+
+    /**
+     * 남아있는 세그먼트 번호들 (오름차순)
+     */
+    List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 세그먼트에 기록된 변경분을 상품별로 합산한다.
+     * 기록 도중 죽어서 마지막 줄이 잘렸다면 그 줄은 무시한다.
+     */
+    Map<Long, Long> read(long segment) throws IOException {
+        Map<Long, Long> deltas = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(path(segment), StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.split(",");
+                if (columns.length != 2) {
+                    log.warn("skip broken reservation log line. segment={}, line={}", segment, line);
+                    continue;
+                }
+                try {
+                    deltas.merge(Long.parseLong(columns[0]), Long.parseLong(columns[1]), Long::sum);
+                } catch (NumberFormatException e) {
+                    log.warn("skip broken reservation log line. segment={}, line={}", segment, line);
+                }
+            }
+        }
+        return deltas;
+    }
+
+    void delete(long segment) throws IOException {
+        Files.deleteIfExists(path(segment));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    private void openSegment(long segment) throws IOException {
+        this.segment = segment;
+        this.channel = FileChannel.open(path(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path path(long segment) {
+        return directory.resolve(PREFIX + segment + SUFFIX);
+    }
+}
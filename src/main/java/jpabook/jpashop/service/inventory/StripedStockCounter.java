@@ -0,0 +1,146 @@
+package jpabook.jpashop.service.inventory;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 상품 하나의 가용 재고를 여러 칸(stripe)에 나눠 담은 카운터
+ *
+ * 재고를 하나의 값으로 두면 모든 주문 스레드가 같은 값에 CAS 를 시도하므로 경합이 생긴다.
+ * 칸을 나눠두면 스레드마다 다른 칸에서 차감하므로 코어 수만큼 처리량이 늘어난다.
+ * - 내 칸이 부족하면 옆 칸을 차례로 시도한다.
+ * - 한 칸으로는 부족하지만 전체 합은 충분하면, 여러 칸에서 나눠 가져온다.
+ *
+ * DB 에 아직 반영하지 않은 변경분(pendingDelta)은 LongAdder 로 따로 모은다.
+ */
+class StripedStockCounter {
+
+    // 서로 다른 칸이 같은 캐시 라인에 올라가지 않도록(false sharing) 간격을 둔다.
+    private static final int PADDING = 8;
+
+    private final int stripeCount;
+    private final AtomicLongArray stripes;
+    private final LongAdder pendingDelta = new LongAdder();
+
+    StripedStockCounter(int stripeCount, long initialStock) {
+        this.stripeCount = stripeCount;
+        this.stripes = new AtomicLongArray(stripeCount * PADDING);
+
+        long share = initialStock / stripeCount;
+        long remainder = initialStock % stripeCount;
+        for (int i = 0; i < stripeCount; i++) {
+            stripes.set(i * PADDING, share + (i < remainder ? 1 : 0));
+        }
+    }
+
+    /**
+     * 재고 예약 (차감)
+     *
+     * @return 재고가 부족하면 false
+     */
+    boolean tryReserve(long quantity) {
+        int start = homeStripe();
+
+        // 1. 한 칸에서 모두 가져올 수 있는지 먼저 본다. (대부분 여기서 끝난다)
+        for (int i = 0; i < stripeCount; i++) {
+            if (tryTake((start + i) % stripeCount, quantity)) {
+                pendingDelta.add(-quantity);
+                return true;
+            }
+        }
+
+        // 2. 여러 칸에서 나눠 가져온다. 그래도 모자라면 가져온 만큼 되돌린다.
+        long taken = takeUpTo(start, quantity);
+        if (taken < quantity) {
+            stripes.addAndGet(start * PADDING, taken);
+            return false;
+        }
+        pendingDelta.add(-quantity);
+        return true;
+    }
+
+    /**
+     * 재고 반환 (증가)
+     */
+    void release(long quantity) {
+        stripes.addAndGet(homeStripe() * PADDING, quantity);
+        pendingDelta.add(quantity);
+    }
+
+    /**
+     * 재고를 지정한 값으로 맞춘다. (관리자가 재고 수량을 직접 수정한 경우)
+     *
+     * @return 실제로 변경된 양
+     */
+    long adjustTo(long stockQuantity) {
+        long delta = stockQuantity - available();
+        if (delta >= 0) {
+            release(delta);
+            return delta;
+        }
+
+        long taken = takeUpTo(homeStripe(), -delta);
+        pendingDelta.add(-taken);
+        return -taken;
+    }
+
+    long available() {
+        long sum = 0;
+        for (int i = 0; i < stripeCount; i++) {
+            sum += stripes.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * DB 에 반영할 변경분을 꺼내고 0 으로 초기화한다.
+     * LongAdder.sumThenReset 은 동시에 add 가 일어나면 값을 잃을 수 있으므로,
+     * 반드시 변경 작업이 모두 멈춘 상태(InventoryEngine 의 write lock)에서만 호출한다.
+     */
+    long drainPendingDelta() {
+        return pendingDelta.sumThenReset();
+    }
+
+    /**
+     * DB 반영에 실패한 변경분을 다시 쌓아둔다.
+     */
+    void restorePendingDelta(long delta) {
+        pendingDelta.add(delta);
+    }
+
+    private boolean tryTake(int stripe, long quantity) {
+        int index = stripe * PADDING;
+        long current;
+        do {
+            current = stripes.get(index);
+            if (current < quantity) {
+                return false;
+            }
+        } while (!stripes.compareAndSet(index, current, current - quantity));
+        return true;
+    }
+
+    private long takeUpTo(int start, long quantity) {
+        long taken = 0;
+        for (int i = 0; i < stripeCount && taken < quantity; i++) {
+            int index = ((start + i) % stripeCount) * PADDING;
+            long current;
+            long take;
+            do {
+                current = stripes.get(index);
+                take = Math.min(current, quantity - taken);
+                if (take <= 0) {
+                    break;
+                }
+            } while (!stripes.compareAndSet(index, current, current - take));
+            if (take > 0) {
+                taken += take;
+            }
+        }
+        return taken;
+    }
+
+    private int homeStripe() {
+        return (int) (Thread.currentThread().getId() % stripeCount);
+    }
+}
@@ -0,0 +1,105 @@
+package jpabook.jpashop.service.query;
+
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.CategoryItemDto;
+import jpabook.jpashop.repository.CategoryRepository;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.service.CategoryTreeCache;
+import jpabook.jpashop.service.query.OrderQueryService.CursorPage;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * 화면/API 에 내보낼 상품 조회 모델을 트랜잭션 안에서 만든다. (OrderQueryService 참고)
+ *
+ * 재고를 나눈 상품은 getStockQuantity() 가 지연 로딩되는 stockBuckets 를 더하므로
+ * 뷰에서 엔티티의 재고를 읽으면 OSIV 없이는 LazyInitializationException 이 난다.
+ */
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class ItemQueryService {
+
+    private final ItemRepository itemRepository;
+    private final CategoryRepository categoryRepository;
+    private final CategoryTreeCache categoryTreeCache;
+
+    /**
+     * 상품 목록 화면 (/items), 주문 화면 (/order)
+     */
+    public List<ItemDto> findItems() {
+        return itemRepository.findAll()
+                .stream()
+                .map(ItemDto::new)
+                .collect(toList());
+    }
+
+    public SplitStockDto findSplitStock(Long itemId) {
+        return new SplitStockDto(itemRepository.findOne(itemId));
+    }
+
+    /**
+     * 카테고리 하위 트리(자기 포함)의 상품, 상품 ID 순
+     * 카테고리가 있는지는 트리 스냅샷으로 보므로 SQL 은 상품 조회 한 번이다.
+     * @param after 이전 페이지의 nextCursor (없으면 첫 페이지)
+     */
+    public CursorPage<CategoryItemDto> findCategoryItems(Long categoryId, String after, int limit) {
+        if (categoryTreeCache.get().find(categoryId) == null) {
+            throw new IllegalArgumentException("존재하지 않는 카테고리입니다. id=" + categoryId);
+        }
+
+        List<CategoryItemDto> fetched = categoryRepository.findSubtreeItems(categoryId, decodeItemCursor(after), limit + 1);
+        if (fetched.size() <= limit) {
+            return new CursorPage<>(fetched, null);
+        }
+        List<CategoryItemDto> items = fetched.subList(0, limit);
+        return new CursorPage<>(items, String.valueOf(items.get(limit - 1).getId()));
+    }
+
+    private static Long decodeItemCursor(String after) {
+        if (after == null || after.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(after);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다. cursor=" + after);
+        }
+    }
+
+    @Getter
+    public static class ItemDto {
+        private final Long id;
+        private final String name;
+        private final int price;
+        private final int stockQuantity; // 재고를 나눈 상품은 버킷 합계
+
+        ItemDto(Item item) {
+            id = item.getId();
+            name = item.getName();
+            price = item.getPrice();
+            stockQuantity = item.getStockQuantity();
+        }
+    }
+
+    @Getter
+    public static class SplitStockDto {
+        private final Long id;
+        private final boolean splitStock;
+        private final int bucketCount;
+        private final int stockQuantity;
+
+        SplitStockDto(Item item) {
+            id = item.getId();
+            splitStock = item.isSplitStock();
+            bucketCount = item.getStockBuckets().size();
+            stockQuantity = item.getStockQuantity();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package jpabook.jpashop.service.query;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.OrderCursor;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderSlice;
+import jpabook.jpashop.repository.order.listquery.OrderListDto;
+import jpabook.jpashop.repository.order.listquery.OrderListQueryRepository;
+import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
+import jpabook.jpashop.service.OrderSearchCache;
+import lombok.Data;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * 화면/API 에 내보낼 주문 조회 모델을 트랜잭션 안에서 다 만들어서 돌려준다.
+ *
+ * OSIV 를 끄면(`spring.jpa.open-in-view: false`) 트랜잭션이 끝날 때 영속성 컨텍스트도 닫히므로
+ * 컨트롤러나 뷰(Thymeleaf)에서 지연 로딩을 할 수 없다. 대신 커넥션이 트랜잭션이 끝나자마자 풀로 돌아가므로
+ * 뷰를 그리거나 JSON 을 쓰는 동안 커넥션을 붙잡고 있지 않는다.
+ *
+ * 그래서 지연 로딩이 필요한 변환(엔티티 -> DTO)은 모두 여기서 한다.
+ * 핵심 비즈니스 로직(OrderService)과 화면에 맞춘 조회를 나눠두면 각각 바뀌는 이유가 달라서 관리하기도 편하다.
+ */
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class OrderQueryService {
+
+    private final OrderRepository orderRepository;
+    private final OrderListQueryRepository orderListQueryRepository;
+    private final OrderSearchCache orderSearchCache;
+
+    /**
+     * 주문 목록 화면 (/orders), 주문마다 대표상품(첫 번째 주문상품) 한 줄
+     * 페이지마다 SQL 한 번 (OrderListQueryRepository)
+     *
+     * 검색 결과 캐시는 OrderService.findOrders 와 같이 쓴다. (캐시에는 ID 목록만 있으므로 키가 같으면 결과도 같다)
+     */
+    public CursorPage<OrderListDto> findOrderList(OrderSearch orderSearch, String after, int limit) {
+        OrderCursor cursor = OrderCursor.decode(after); // 잘못된 커서는 캐시를 보기 전에 거른다.
+        OrderSearchCache.Key key = OrderSearchCache.Key.of(orderSearch, after, limit);
+        OrderSearchCache.Result cached = orderSearchCache.get(key);
+        if (cached != null) {
+            return new CursorPage<>(orderListQueryRepository.findOrderList(cached.getOrderIds()), cached.getNextCursor());
+        }
+
+        long generation = orderSearchCache.generation();
+        List<OrderListDto> fetched = orderListQueryRepository.findOrderList(orderSearch, cursor, limit);
+        CursorPage<OrderListDto> page = fetched.size() <= limit
+                ? new CursorPage<>(fetched, null)
+                : new CursorPage<>(fetched.subList(0, limit), nextCursor(fetched.get(limit - 1)));
+        orderSearchCache.put(key, generation,
+                page.getContent().stream().map(OrderListDto::getId).collect(toList()), page.getNextCursor());
+        return page;
+    }
+
+    private static String nextCursor(OrderListDto last) {
+        return OrderCursor.of(last.getOrderDate(), last.getId()).encode();
+    }
+
+    /*
+    V1: 엔티티를 그대로 내보낸다. (비추천)
+    Hibernate5Module 은 초기화된 것만 JSON 에 넣으므로 트랜잭션 안에서 강제로 초기화해 둔다.
+    상품의 stockQuantity 는 분할 재고이면 지연 로딩되는 버킷을 더하는 getter 라서 함께 읽어 둔다.
+     */
+    public List<Order> ordersV1() {
+        List<Order> all = orderRepository.findAllByString(new OrderSearch());
+        for (Order order : all) {
+            order.getMember().getName();
+            order.getDelivery().getAddress();
+            order.getOrderItems().forEach(orderItem -> {
+                orderItem.getItem().getName();
+                orderItem.getItem().getStockQuantity();
+            });
+        }
+        return all;
+    }
+
+    public List<OrderDto> ordersV2() {
+        return toDtos(orderRepository.findAllByString(new OrderSearch()));
+    }
+
+    public List<OrderDto> ordersV3() {
+        return toDtos(orderRepository.findAllWithItem());
+    }
+
+    public List<OrderDto> ordersV3_page(int offset, int limit) {
+        return toDtos(orderRepository.findAllWithMemberDelivery(offset, limit));
+    }
+
+    public CursorPage<OrderDto> ordersV3_cursor(String after, int limit) {
+        OrderSlice slice = orderRepository.findAllWithMemberDelivery(OrderCursor.decode(after), limit);
+        return new CursorPage<>(toDtos(slice.getOrders()), slice.getNextCursor());
+    }
+
+    public List<Order> simpleOrdersV1() {
+        List<Order> orderList = orderRepository.findAllByString(new OrderSearch());
+        for (Order order : orderList) {
+            order.getMember().getName(); // Lazy 강제 초기화
+            order.getDelivery().getAddress(); // Lazy 강제 초기화
+            order.getTotalPrice(); // JSON 의 totalPrice 가 orderItems 를 돈다.
+        }
+        return orderList;
+    }
+
+    public List<OrderSimpleQueryDto> simpleOrdersV2() {
+        return orderRepository.findAllByString(new OrderSearch())
+                .stream()
+                .map(OrderSimpleQueryDto::new)
+                .collect(toList());
+    }
+
+    public List<OrderSimpleQueryDto> simpleOrdersV3() {
+        return orderRepository.findAllWithMemberDelivery()
+                .stream()
+                .map(OrderSimpleQueryDto::new)
+                .collect(toList());
+    }
+
+    private static List<OrderDto> toDtos(List<Order> orders) {
+        return orders.stream().map(OrderDto::new).collect(toList());
+    }
+
+    /**
+     * 커서로 나눈 한 페이지
+     */
+    @Getter
+    public static class CursorPage<T> {
+        private final List<T> content;
+        private final String nextCursor; // 마지막 페이지면 null
+
+        CursorPage(List<T> content, String nextCursor) {
+            this.content = content;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    @Data
+    /*
+    Jackson 에서 TypeDefinition Error (no properties) 날 때는
+    `@Data` 혹은 `@Getter` 어노테이션과 같은 Getter 생성이 있는지 확인
+
+    실행결과, orderItems 가 null 로 나옴.
+    왜냐하면 OrderItem 은 엔티티임
+
+    이 방법의 문제는 완전히 엔티티에 대한 의존을 끊지 않아서
+    엔티티가 노출된다는 것임
+
+    List 의 `<OrderItem>` 조차도 다 DTO 로 변경해야 함
+
+    이렇게 엔티티에 의존하면, 나중에 `OrderItem`이 변경되었을 때,
+    API 스펙이 전부 다 바뀌어버림
+     */
+    public static class OrderDto {
+        private Long orderId;
+        private String name;
+        private LocalDateTime orderDate;
+        private OrderStatus orderStatus;
+        private Address address;
+        private List<OrderItemDto> orderItems;
+
+        public OrderDto(Order order) {
+            orderId = order.getId();
+            name = order.getMember().getName();
+            orderDate = order.getOrderDate();
+            orderStatus = order.getStatus();
+            address = order.getDelivery().getAddress();
+            /*
+            Lazy Loading 시에 Hibernate5Module 이
+            null 로 표기하지 않게 만들기 위해서 한번씩 접근
+             */
+            // order.getOrderItems().stream().forEach(o -> o.getItem().getName());
+            // orderItems = order.getOrderItems();
+            orderItems =  order.getOrderItems().stream().map(OrderItemDto::new).collect(toList());
+
+        }
+    }
+
+
+    /*
+    엔티티를 노출하지 말라는 것은 List 내부에 <> 타입까지 노출하지 말라는 것이다.
+    단, Address 와 같은 Value Object 는 노출해도 무방하다.
+     */
+    @Getter
+    public static class OrderItemDto {
+        private String itemName; // 상품명
+        private int orderPrice; // 주문 가격
+        private int count; // 주문 수량
+
+        public OrderItemDto(OrderItem orderItem) {
+            itemName = orderItem.getItem().getName();
+            orderPrice = orderItem.getOrderPrice();
+            count = orderItem.getCount();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package jpabook.jpashop.api;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+class OrderIdempotencyKeyTest {
+
+    @Autowired MockMvc mockMvc;
+
+    @Test
+    public void 잘못된_키는_400() throws Exception {
+        mockMvc.perform(post("/api/v1/orders")
+                        .header("Idempotency-Key", "k".repeat(65))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\": 1, \"orderItems\": [{\"itemId\": 1, \"count\": 1}]}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/order")
+                        .header("Idempotency-Key", " ")
+                        .param("memberId", "1")
+                        .param("itemId", "1")
+                        .param("count", "1"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,182 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.support.ExpectedQueries;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 주문 조회 API 별 SQL 수 계약
+ *
+ * 주문을 `ORDER_COUNT` 건 넣어두고 각 API 를 호출한다. `ORDER_COUNT` 는 V4 를 뺀 어떤 상한보다도 크므로
+ * DTO 생성자 등에서 지연 로딩이 새서 주문 수만큼 SQL 이 늘어나면 바로 실패한다.
+ *
+ * 테스트용 application.yml 에는 default_batch_fetch_size 가 없으므로 운영 설정과 같게 맞춰준다.
+ * 지연 로딩하는 API 의 상한에는 IN 조회가 배치 크기 단위(100/50/25/12/10 ...)로 나뉘어 나가는 횟수가 포함되어 있다.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.default_batch_fetch_size=100")
+@AutoConfigureMockMvc
+@Transactional
+class OrderQueryCountTest {
+
+    private static final int ORDER_COUNT = 20;
+    private static final int INIT_DB_ORDERS = 2; // InitDB 가 기동할 때 넣는 주문
+
+    @Autowired EntityManager entityManager;
+    @Autowired MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < ORDER_COUNT; i++) {
+            Member member = new Member();
+            member.setName("회원" + i);
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            entityManager.persist(member);
+
+            Book book1 = createBook("JPA" + i);
+            Book book2 = createBook("Spring" + i);
+
+            Delivery delivery = new Delivery();
+            delivery.setAddress(member.getAddress());
+            entityManager.persist(Order.createOrder(member, delivery,
+                    OrderItem.createOrderItem(book1, 10000, 1),
+                    OrderItem.createOrderItem(book2, 20000, 2)));
+        }
+
+        // 영속성 컨텍스트에 남아 있으면 API 가 DB 를 조회하지 않으므로 비운다.
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @ExpectedQueries(max = 7)
+    void simpleOrdersV1() throws Exception {
+        mockMvc.perform(get("/api/v1/simple-orders")).andExpect(status().isOk());
+    }
+
+    @Test
+    @ExpectedQueries(max = 5)
+    void simpleOrdersV2() throws Exception {
+        mockMvc.perform(get("/api/v2/simple-orders")).andExpect(status().isOk());
+    }
+
+    @Test
+    @ExpectedQueries(max = 1)
+    void simpleOrdersV3() throws Exception {
+        mockMvc.perform(get("/api/v3/simple-orders")).andExpect(status().isOk());
+    }
+
+    @Test
+    @ExpectedQueries(max = 1)
+    void simpleOrdersV4() throws Exception {
+        mockMvc.perform(get("/api/v4/simple-orders")).andExpect(status().isOk());
+    }
+
+    @Test
+    @ExpectedQueries(max = 11)
+    void ordersV1() throws Exception {
+        mockMvc.perform(get("/api/v1/orders")).andExpect(status().isOk());
+    }
+
+    @Test
+    @ExpectedQueries(max = 11)
+    void ordersV2() throws Exception {
+        mockMvc.perform(get("/api/v2/orders")).andExpect(status().isOk());
+    }
+
+    @Test
+    @ExpectedQueries(max = 1)
+    void ordersV3() throws Exception {
+        mockMvc.perform(get("/api/v3/orders")).andExpect(status().isOk());
+    }
+
+    @Test
+    @ExpectedQueries(max = 7)
+    void ordersV3_page() throws Exception {
+        mockMvc.perform(get("/api/v3.1/orders").param("limit", String.valueOf(ORDER_COUNT)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @ExpectedQueries(max = 7)
+    void ordersV3_cursor() throws Exception {
+        mockMvc.perform(get("/api/v3.2/orders").param("limit", String.valueOf(ORDER_COUNT)))
+                .andExpect(status().isOk());
+    }
+
+    /*
+    주문마다 주문상품을 따로 조회하는 1 + N 이므로 주문 수만큼 늘어나는 것이 계약이다. (V5 에서 해결)
+     */
+    @Test
+    @ExpectedQueries(max = 1 + ORDER_COUNT + INIT_DB_ORDERS)
+    void ordersV4() throws Exception {
+        mockMvc.perform(get("/api/v4/orders")).andExpect(status().isOk());
+    }
+
+    @Test
+    @ExpectedQueries(max = 2)
+    void ordersV5() throws Exception {
+        mockMvc.perform(get("/api/v5/orders")).andExpect(status().isOk());
+    }
+
+    @Test
+    @ExpectedQueries(max = 1)
+    void ordersV6() throws Exception {
+        mockMvc.perform(get("/api/v6/orders")).andExpect(status().isOk());
+    }
+
+    /*
+    주문 ID 페이지 1번 + 그 주문들의 플랫 조인 1번
+     */
+    @Test
+    @ExpectedQueries(max = 2)
+    void ordersV6_page() throws Exception {
+        mockMvc.perform(get("/api/v6.1/orders").param("limit", String.valueOf(ORDER_COUNT)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(ORDER_COUNT));
+    }
+
+    /*
+    주문 목록 화면: 대표상품까지 프로젝션 한 번 (OrderListQueryRepository)
+     */
+    @Test
+    @ExpectedQueries(max = 1)
+    void orderList() throws Exception {
+        mockMvc.perform(get("/orders"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("회원19")))
+                .andExpect(content().string(containsString("JPA19")))
+                .andExpect(content().string(not(containsString("Spring19")))); // 대표상품은 첫 번째 주문상품
+    }
+
+    private Book createBook(String name) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(100);
+        entityManager.persist(book);
+        return book;
+    }
+}
@@ -0,0 +1,70 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.service.query.ItemQueryService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/*
+OSIV 를 끈 상태에서 화면/조회 API 가 지연 로딩 없이 그려지는지 본다.
+테스트 트랜잭션이 있으면 영속성 컨텍스트가 열려 있어서 지연 로딩이 되어버리므로 @Transactional 을 붙이지 않는다. (InitDB 의 주문 2건을 쓴다)
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "spring.jpa.open-in-view=false")
+@AutoConfigureMockMvc
+class OsivDisabledTest {
+
+    @Autowired MockMvc mockMvc;
+    @Autowired ItemQueryService itemQueryService;
+
+    @Test
+    public void 주문_화면() throws Exception {
+        mockMvc.perform(get("/orders"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("userA")));
+        mockMvc.perform(get("/order")).andExpect(status().isOk());
+        mockMvc.perform(get("/items")).andExpect(status().isOk());
+    }
+
+    @Test
+    public void 주문_조회_API() throws Exception {
+        for (String url : new String[]{"/api/v1/orders", "/api/v2/orders", "/api/v3/orders",
+                "/api/v3.1/orders", "/api/v3.2/orders", "/api/v1/simple-orders", "/api/v2/simple-orders", "/api/v3/simple-orders"}) {
+            mockMvc.perform(get(url)).andExpect(status().isOk());
+        }
+    }
+
+    @Test
+    public void 분할_재고_상품() throws Exception {
+        //given (InitDB 에서 userA 가 주문한 상품)
+        Long itemId = itemQueryService.findItems().stream()
+                .filter(item -> item.getName().equals("JPA1 BOOK"))
+                .findFirst().orElseThrow().getId();
+
+        //when
+        mockMvc.perform(put("/api/v1/items/{id}/split-stock", itemId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bucketCount\": 4}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bucketCount").value(4));
+
+        //then
+        try {
+            mockMvc.perform(get("/items")).andExpect(status().isOk()); // 재고 합계에 버킷 지연 로딩이 필요하다.
+            mockMvc.perform(get("/api/v1/orders"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].orderItems[0].item.stockQuantity").value(99)); // 엔티티를 그대로 내보내는 V1
+        } finally {
+            mockMvc.perform(delete("/api/v1/items/{id}/split-stock", itemId)).andExpect(status().isOk());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package jpabook.jpashop.datasource;
+
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.BatchCollectionLoader;
+import jpabook.jpashop.repository.LongKeyMap;
+import jpabook.jpashop.service.ItemService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.servlet.http.Cookie;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+BatchCollectionLoader 가 호출한 쪽과 같은 DB 에서 읽는지 본다. (ReplicaCacheTest 처럼 H2 메모리 DB 두 개를 primary / replica 로 쓴다)
+상품 6개를 4개씩 나누면 묶음이 두 개라 동시 조회 조건이 맞으면 동시에 조회한다.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replica_loader_primary;DB_CLOSE_DELAY=-1",
+        "jpashop.datasource.replica.enabled=true",
+        "jpashop.datasource.replica.urls=jdbc:h2:mem:replica_loader_replica;DB_CLOSE_DELAY=-1",
+        "jpashop.datasource.replica.max-lag-ms=600000",
+        "decorator.datasource.exclude-beans=replicaRoutingDataSource",
+        "jpashop.query.batch-loader.chunk-size=4",
+        "jpashop.query.batch-loader.parallelism=2"
+})
+class ReplicaBatchCollectionLoaderTest {
+
+    static final String LOAD_ITEMS = "select i from Item i where i.id in :ids";
+
+    DriverManagerDataSource primary = new DriverManagerDataSource("jdbc:h2:mem:replica_loader_primary;DB_CLOSE_DELAY=-1", "sa", "");
+    DriverManagerDataSource replica = new DriverManagerDataSource("jdbc:h2:mem:replica_loader_replica;DB_CLOSE_DELAY=-1", "sa", "");
+
+    @Autowired ReplicaDataSourceConfig replicaDataSourceConfig;
+    @Autowired BatchCollectionLoader batchCollectionLoader;
+    @Autowired ItemService itemService;
+    @Autowired EntityManager entityManager;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    List<Long> itemIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        replicaDataSourceConfig.checkReplicationLag();
+        for (int i = 0; i < 6; i++) {
+            Book book = new Book();
+            book.setName("바뀌기 전");
+            book.setPrice(10000);
+            book.setStockQuantity(10);
+            itemService.saveItem(book);
+            itemIds.add(book.getId());
+        }
+        replicate();
+        replicaDataSourceConfig.checkReplicationLag();
+
+        itemIds.forEach(itemId -> itemService.updateItem(itemId, 10000, "바뀐 후", 10)); // replica 에는 아직 복제되지 않았다.
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReadYourWrites.end();
+    }
+
+    @Test
+    public void replicaCallerLoadsFromSameReplica() throws Exception {
+        //when
+        List<String> names = loadInReadOnlyTransaction(true);
+
+        //then
+        assertEquals(List.of("바뀌기 전"), names, "호출한 쪽이 replica 에서 읽으면 나눠서 읽는 것도 replica 에서 읽어야 한다.");
+    }
+
+    @Test
+    public void readYourWritesCallerLoadsFromPrimary() throws Exception {
+        //given (방금 쓰기를 한 클라이언트)
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(ReadYourWrites.COOKIE_NAME, String.valueOf(System.currentTimeMillis() + 600_000)));
+        ReadYourWrites.begin(request, new MockHttpServletResponse(), 1000);
+
+        //when
+        List<String> names = loadInReadOnlyTransaction(false);
+
+        //then
+        assertEquals(List.of("바뀐 후"), names, "호출한 쪽이 primary 에서 읽으면 동시 조회도 primary 에서 읽어야 한다.");
+    }
+
+    private List<String> loadInReadOnlyTransaction(boolean expectReplicaRead) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> {
+            entityManager.createQuery("select count(i) from Item i").getSingleResult(); // 호출한 쪽의 커넥션을 먼저 잡는다.
+            assertEquals(expectReplicaRead, ReplicaReads.isReplicaRead());
+
+            LongKeyMap<List<Item>> items = batchCollectionLoader.load(itemIds, LOAD_ITEMS, Item.class, Item::getId);
+            List<String> names = new ArrayList<>();
+            for (Long itemId : itemIds) {
+                String name = items.get(itemId).get(0).getName();
+                if (!names.contains(name)) {
+                    names.add(name);
+                }
+            }
+            return names;
+        });
+    }
+
+    /*
+    primary 의 테이블과 데이터를 replica 로 통째로 옮긴다. (replication_heartbeat 포함)
+     */
+    private void replicate() {
+        JdbcTemplate replicaTemplate = new JdbcTemplate(replica);
+        replicaTemplate.execute("drop all objects");
+        for (String sql : new JdbcTemplate(primary).queryForList("script", String.class)) {
+            replicaTemplate.execute(sql);
+        }
+    }
+}
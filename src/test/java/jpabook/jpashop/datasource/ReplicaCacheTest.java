@@ -0,0 +1,110 @@
+package jpabook.jpashop.datasource;
+
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.service.CategoryService;
+import jpabook.jpashop.service.CategoryTreeCache;
+import jpabook.jpashop.service.ItemService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+replica 에서 읽은 옛 데이터가 캐시에 남지 않는지 본다.
+H2 메모리 DB 두 개를 primary / replica 로 쓰고, replicate() 로 primary 를 통째로 복사해서 복제가 따라온 것처럼 만든다.
+테스트용 application.yml 은 비어 있으므로 p6spy 제외 설정도 여기서 한다.
+캐시 매니저(Caffeine)는 JVM 에 하나라 다른 테스트 컨텍스트와 ID 가 겹치지 않게 영역 이름을 나눈다.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replica_cache_primary;DB_CLOSE_DELAY=-1",
+        "jpashop.datasource.replica.enabled=true",
+        "jpashop.datasource.replica.urls=jdbc:h2:mem:replica_cache_replica;DB_CLOSE_DELAY=-1",
+        "jpashop.datasource.replica.max-lag-ms=600000",
+        "decorator.datasource.exclude-beans=replicaRoutingDataSource",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=true",
+        "spring.jpa.properties.hibernate.cache.region.factory_class=jcache",
+        "spring.jpa.properties.hibernate.javax.cache.provider=com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+        "spring.jpa.properties.hibernate.cache.region_prefix=replica-cache"
+})
+class ReplicaCacheTest {
+
+    DriverManagerDataSource primary = new DriverManagerDataSource("jdbc:h2:mem:replica_cache_primary;DB_CLOSE_DELAY=-1", "sa", "");
+    DriverManagerDataSource replica = new DriverManagerDataSource("jdbc:h2:mem:replica_cache_replica;DB_CLOSE_DELAY=-1", "sa", "");
+
+    @Autowired ReplicaDataSourceConfig replicaDataSourceConfig;
+    @Autowired ItemService itemService;
+    @Autowired CategoryService categoryService;
+    @Autowired CategoryTreeCache categoryTreeCache;
+    @Autowired EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        replicaDataSourceConfig.checkReplicationLag();
+        replicate();
+        replicaDataSourceConfig.checkReplicationLag();
+    }
+
+    @Test
+    public void replicaReadDoesNotFillSecondLevelCache() throws Exception {
+        //given
+        Book book = new Book();
+        book.setName("바뀌기 전");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        itemService.saveItem(book);
+        replicate();
+
+        itemService.updateItem(book.getId(), 10000, "바뀐 후", 10); // replica 에는 아직 복제되지 않았다.
+        entityManagerFactory.getCache().evictAll(); // 만료되거나 밀려나서 캐시에 없는 상황
+
+        //when
+        Item stale = itemService.findOne(book.getId());
+
+        //then
+        assertEquals("바뀌기 전", stale.getName(), "읽기 전용 트랜잭션은 replica 에서 읽어야 한다.");
+        assertFalse(entityManagerFactory.getCache().contains(Item.class, book.getId()), "replica 에서 읽은 상품은 캐시에 넣지 않아야 한다.");
+
+        //when
+        replicate();
+
+        //then
+        assertEquals("바뀐 후", itemService.findOne(book.getId()).getName(), "복제가 따라오면 바뀐 값을 읽어야 한다.");
+    }
+
+    @Test
+    public void replicaReadDoesNotStoreCategoryTree() throws Exception {
+        //given
+        categoryTreeCache.get();
+        Long categoryId = categoryService.addCategory(null, "새 카테고리"); // 커밋 후 스냅샷을 버린다.
+
+        //when
+        boolean foundBeforeReplication = categoryTreeCache.get().find(categoryId) != null;
+        replicate();
+
+        //then
+        assertFalse(foundBeforeReplication, "카테고리 트리는 replica 에서 읽어야 한다.");
+        assertNotNull(categoryTreeCache.get().find(categoryId), "replica 에서 읽은 트리는 담지 않고 다음 조회에서 다시 읽어야 한다.");
+    }
+
+    /*
+    primary 의 테이블과 데이터를 replica 로 통째로 옮긴다. (replication_heartbeat 포함)
+     */
+    private void replicate() {
+        JdbcTemplate replicaTemplate = new JdbcTemplate(replica);
+        replicaTemplate.execute("drop all objects");
+        for (String sql : new JdbcTemplate(primary).queryForList("script", String.class)) {
+            replicaTemplate.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package jpabook.jpashop.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.servlet.http.Cookie;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+로컬 H2 메모리 DB 두 개를 primary / replica 로 쓴다.
+H2 는 복제를 하지 않으므로 replicate() 로 heartbeat 를 직접 옮겨서 복제가 따라온 것처럼 만든다.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    DriverManagerDataSource primary = new DriverManagerDataSource("jdbc:h2:mem:routing_primary;DB_CLOSE_DELAY=-1", "sa", "");
+    DriverManagerDataSource replica = new DriverManagerDataSource("jdbc:h2:mem:routing_replica;DB_CLOSE_DELAY=-1", "sa", "");
+
+    ReplicaRoutingDataSource routingDataSource;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate readWrite;
+    TransactionTemplate readOnly;
+
+    @BeforeEach
+    void setUp() {
+        new JdbcTemplate(primary).execute("drop table if exists replication_heartbeat");
+        new JdbcTemplate(replica).execute("drop table if exists replication_heartbeat");
+        new JdbcTemplate(replica).execute("create table replication_heartbeat (id int primary key, beat_at bigint not null)");
+
+        routingDataSource = new ReplicaRoutingDataSource(primary, List.of(replica), 0);
+        routingDataSource.afterPropertiesSet();
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReadYourWrites.end();
+    }
+
+    @Test
+    public void routeReadOnlyToReplica() throws Exception {
+        //given
+        routingDataSource.checkReplicationLag();
+        replicate();
+        routingDataSource.checkReplicationLag();
+
+        //then
+        assertEquals("ROUTING_REPLICA", readOnly.execute(status -> database()), "읽기 전용 트랜잭션은 replica 로 가야 한다.");
+        assertEquals("ROUTING_PRIMARY", readWrite.execute(status -> database()), "쓰기 트랜잭션은 primary 로 가야 한다.");
+        assertEquals("ROUTING_PRIMARY", database(), "트랜잭션 밖의 조회는 primary 로 가야 한다.");
+        assertEquals(0L, routingDataSource.replicationLag().get("replica-1"));
+    }
+
+    @Test
+    public void fallbackToPrimaryWhenReplicaLags() throws Exception {
+        //given
+        routingDataSource.checkReplicationLag();
+        replicate();
+        routingDataSource.checkReplicationLag();
+
+        //when
+        routingDataSource.checkReplicationLag(); // replica 가 직전 heartbeat 를 받지 못했다.
+
+        //then
+        assertTrue(routingDataSource.replicationLag().get("replica-1") > 0);
+        assertEquals("ROUTING_PRIMARY", readOnly.execute(status -> database()), "지연이 허용치를 넘은 replica 는 쓰지 않아야 한다.");
+
+        //when
+        replicate();
+        routingDataSource.checkReplicationLag();
+
+        //then
+        assertEquals("ROUTING_REPLICA", readOnly.execute(status -> database()), "따라오면 다시 replica 로 가야 한다.");
+    }
+
+    @Test
+    public void readYourWrites() throws Exception {
+        //given
+        routingDataSource.checkReplicationLag();
+        replicate();
+        routingDataSource.checkReplicationLag();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ReadYourWrites.begin(new MockHttpServletRequest(), response, 60_000);
+
+        //when
+        readWrite.execute(status -> database());
+
+        //then
+        assertEquals("ROUTING_PRIMARY", readOnly.execute(status -> database()), "쓰기를 한 요청의 읽기는 primary 로 가야 한다.");
+        Cookie cookie = response.getCookie(ReadYourWrites.COOKIE_NAME);
+        assertNotNull(cookie, "다음 요청도 primary 에서 읽도록 쿠키를 남겨야 한다.");
+        ReadYourWrites.end();
+
+        //when
+        MockHttpServletRequest nextRequest = new MockHttpServletRequest();
+        nextRequest.setCookies(cookie);
+        ReadYourWrites.begin(nextRequest, new MockHttpServletResponse(), 60_000);
+
+        //then
+        assertEquals("ROUTING_PRIMARY", readOnly.execute(status -> database()), "쿠키의 시각까지는 primary 에서 읽어야 한다.");
+        ReadYourWrites.end();
+
+        //when
+        MockHttpServletRequest expiredRequest = new MockHttpServletRequest();
+        expiredRequest.setCookies(new Cookie(ReadYourWrites.COOKIE_NAME, String.valueOf(System.currentTimeMillis() - 1)));
+        ReadYourWrites.begin(expiredRequest, new MockHttpServletResponse(), 60_000);
+
+        //then
+        assertEquals("ROUTING_REPLICA", readOnly.execute(status -> database()), "시각이 지나면 다시 replica 로 가야 한다.");
+    }
+
+    private String database() {
+        return jdbcTemplate.queryForObject("select database()", String.class);
+    }
+
+    private void replicate() {
+        Long beatAt = new JdbcTemplate(primary).queryForObject("select beat_at from replication_heartbeat where id = 1", Long.class);
+        JdbcTemplate replicaTemplate = new JdbcTemplate(replica);
+        replicaTemplate.update("delete from replication_heartbeat");
+        replicaTemplate.update("insert into replication_heartbeat (id, beat_at) values (1, ?)", beatAt);
+    }
+}
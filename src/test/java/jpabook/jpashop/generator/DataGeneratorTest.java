@@ -0,0 +1,89 @@
+package jpabook.jpashop.generator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+작은 설정으로 기동 시에 데이터를 만들게 하고 (generate 프로필이라 InitDB 는 돌지 않는다) 만들어진 행 수와 스냅샷을 본다.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {
+        "jpashop.generator.members=50",
+        "jpashop.generator.books=30",
+        "jpashop.generator.albums=10",
+        "jpashop.generator.movies=10",
+        "jpashop.generator.orders=200",
+        "jpashop.generator.max-items-per-order=3",
+        "jpashop.generator.category-depth=2",
+        "jpashop.generator.category-fan-out=3",
+        "jpashop.generator.threads=2",
+        "jpashop.generator.batch-size=16",
+        "jpashop.generator.snapshot=${java.io.tmpdir}/data-generator-test-${random.uuid}.zip"
+})
+@ActiveProfiles("generate")
+class DataGeneratorTest {
+
+    @Autowired DataGenerator dataGenerator;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void generate() throws Exception {
+        assertEquals(50, count("member"));
+        assertEquals(50, count("item"));
+        assertEquals(30, jdbcTemplate.queryForObject("select count(*) from item where dtype = 'B'", Long.class),
+                "상품 종류별로 설정한 수만큼 만들어야 한다.");
+
+        //then (카테고리: 전체 1 + 3 + 9, 클로저: 깊이가 d 인 카테고리마다 d + 1 행)
+        assertEquals(1 + 3 + 9, count("category"));
+        assertEquals(1 + 3 * 2 + 9 * 3, count("category_closure"), "조상(자기 포함) -> 자손 행이 모두 있어야 한다.");
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from category_closure cc" +
+                " join category c on c.category_id = cc.descendant_id" +
+                " where cc.depth = 1 and cc.ancestor_id <> c.parent_id", Long.class), "깊이 1 인 조상은 부모여야 한다.");
+        assertEquals(50, count("category_item"), "상품은 모두 말단 카테고리에 담겨야 한다.");
+
+        //then (주문)
+        assertEquals(200, count("orders"));
+        assertEquals(200, count("delivery"));
+        long orderItems = count("order_item");
+        assertTrue(orderItems >= 200 && orderItems <= 200 * 3, "주문마다 상품이 1~3개여야 한다. orderItems=" + orderItems);
+
+        //then (직접 매긴 ID 다음부터 시퀀스가 이어져야 한다)
+        long maxId = jdbcTemplate.queryForObject("select max(order_item_id) from order_item", Long.class);
+        assertTrue(jdbcTemplate.queryForObject("select next value for hibernate_sequence", Long.class) > maxId);
+    }
+
+    @Test
+    public void restoreSnapshot() throws Exception {
+        //given
+        Path snapshot = Paths.get((String) ReflectionTestUtils.getField(dataGenerator, "snapshot"));
+        assertTrue(Files.exists(snapshot), "다 만든 뒤에 스냅샷을 저장해야 한다.");
+        jdbcTemplate.update("delete from order_item");
+        try {
+            //when (스냅샷이 있으면 새로 만들지 않고 복원한다)
+            dataGenerator.run(null);
+
+            //then
+            assertEquals(200, count("orders"), "복원하면 주문 수가 같아야 한다.");
+            assertTrue(count("order_item") >= 200, "지운 데이터가 스냅샷에서 돌아와야 한다.");
+            assertEquals(50, count("member"), "다시 만들지 않아야 한다.");
+        } finally {
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table, Long.class);
+    }
+}
@@ -0,0 +1,69 @@
+package jpabook.jpashop.generator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipfSamplerTest {
+
+    @Test
+    public void sameSeedSameSamples() throws Exception {
+        //given
+        ZipfSampler sampler = new ZipfSampler(1000, 1.0);
+        SplittableRandom first = new SplittableRandom(42);
+        SplittableRandom second = new SplittableRandom(42);
+
+        //when, then
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(sampler.sample(first), sampler.sample(second), "seed 가 같으면 같은 순서로 뽑아야 한다.");
+        }
+    }
+
+    @Test
+    public void zeroSkewIsUniform() throws Exception {
+        //given
+        int size = 10;
+        int samples = 100_000;
+        ZipfSampler sampler = new ZipfSampler(size, 0);
+        SplittableRandom random = new SplittableRandom(42);
+
+        //when
+        int[] counts = sample(sampler, random, size, samples);
+
+        //then
+        for (int rank = 0; rank < size; rank++) {
+            assertEquals(samples / size, counts[rank], samples / size * 0.05, "지수가 0 이면 모든 순위가 고르게 나와야 한다. rank=" + rank);
+        }
+    }
+
+    @Test
+    public void skewFavorsTopRanks() throws Exception {
+        //given
+        int size = 100;
+        int samples = 100_000;
+        ZipfSampler sampler = new ZipfSampler(size, 1.0);
+        SplittableRandom random = new SplittableRandom(42);
+
+        //when
+        int[] counts = sample(sampler, random, size, samples);
+
+        //then (순위 k 의 확률은 1 / k 에 비례한다)
+        assertEquals(2.0, (double) counts[0] / counts[1], 0.1, "1위는 2위보다 두 배쯤 많이 나와야 한다.");
+        assertTrue(counts[0] > counts[size - 1] * 50, "1위가 꼴찌보다 훨씬 많이 나와야 한다.");
+    }
+
+    @Test
+    public void rejectEmpty() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> new ZipfSampler(0, 1.0));
+    }
+
+    private static int[] sample(ZipfSampler sampler, SplittableRandom random, int size, int samples) {
+        int[] counts = new int[size];
+        for (int i = 0; i < samples; i++) {
+            counts[sampler.sample(random)]++;
+        }
+        return counts;
+    }
+}
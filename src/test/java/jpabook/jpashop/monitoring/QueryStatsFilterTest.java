@@ -0,0 +1,60 @@
+package jpabook.jpashop.monitoring;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/*
+InitDB 의 주문 2건으로 응답 헤더를 본다.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+class QueryStatsFilterTest {
+
+    @Autowired MockMvc mockMvc;
+
+    @Test
+    public void 응답_헤더() throws Exception {
+        //when (V2 는 주문마다 회원/배송/상품을 지연 로딩한다)
+        MvcResult v2 = mockMvc.perform(get("/api/v2/orders"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryStatsFilter.SERVER_TIMING_HEADER,
+                        matchesPattern("db;dur=\\d+\\.\\d;desc=\"\\d+ queries, \\d+ rows\"")))
+                .andReturn();
+        MvcResult v3 = mockMvc.perform(get("/api/v3/orders"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        //then
+        int v2Count = Integer.parseInt(v2.getResponse().getHeader(QueryStatsFilter.QUERY_COUNT_HEADER));
+        int v3Count = Integer.parseInt(v3.getResponse().getHeader(QueryStatsFilter.QUERY_COUNT_HEADER));
+        assertTrue(v3Count >= 1, "SQL 수를 세야 한다.");
+        assertTrue(v2Count > v3Count, "fetch join 한 V3 가 V2 보다 SQL 이 적어야 한다. v2=" + v2Count + ", v3=" + v3Count);
+        assertTrue(v2.getResponse().getHeader(QueryStatsFilter.SERVER_TIMING_HEADER).contains("\"" + v2Count + " queries, "),
+                "Server-Timing 의 SQL 수가 X-Query-Count 와 같아야 한다.");
+    }
+
+    @Test
+    public void 비동기_응답은_세지_않는다() throws Exception {
+        //when (내보내기는 다른 스레드에서 SQL 을 실행한다)
+        MvcResult result = mockMvc.perform(get("/api/v1/orders/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        //then
+        assertNull(result.getResponse().getHeader(QueryStatsFilter.QUERY_COUNT_HEADER), "일부만 센 값을 헤더로 내보내면 안 된다.");
+        assertNull(result.getResponse().getHeader(QueryStatsFilter.SERVER_TIMING_HEADER));
+    }
+}
@@ -0,0 +1,104 @@
+package jpabook.jpashop.monitoring;
+
+import jpabook.jpashop.monitoring.QueryStats.RepeatedStatement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryStatsTest {
+
+    @AfterEach
+    void tearDown() {
+        QueryStats.end();
+    }
+
+    @Test
+    public void shapeOf() throws Exception {
+        assertEquals("select * from member where name = ? and age > ?",
+                QueryStats.shapeOf("select *  from member\n where name = 'O''Brien' and age > 20"),
+                "문자열/숫자 리터럴은 ? 로 바꾸고 공백은 하나로 합쳐야 한다.");
+        assertEquals(QueryStats.shapeOf("select * from orders where order_id in (1, 2, 3)"),
+                QueryStats.shapeOf("select * from orders where order_id in (?,?)"),
+                "IN 목록은 개수와 상관없이 같은 모양이어야 한다.");
+        assertEquals("select * from orders where order_id in (?...)",
+                QueryStats.shapeOf("select * from orders where order_id in (?, ?, ?)"));
+        assertEquals("select * from item2 where item_id = ?",
+                QueryStats.shapeOf("select * from item2 where item_id = ?"), "이름 안의 숫자는 바꾸지 않아야 한다.");
+    }
+
+    @Test
+    public void repeatedStatements() throws Exception {
+        //given
+        QueryStats stats = new QueryStats();
+        for (int i = 1; i <= 3; i++) {
+            stats.recordStatement("select * from delivery where delivery_id = " + i, 1_000_000);
+        }
+        stats.recordStatement("select * from orders", 1_000_000);
+        stats.recordStatement("select * from member where member_id = 1", 1_000_000);
+        stats.recordStatement("select * from member where member_id = 2", 1_000_000);
+
+        //when
+        List<RepeatedStatement> repeated = stats.repeatedStatements(2);
+
+        //then
+        assertEquals(6, stats.getStatements());
+        assertEquals(6.0, stats.getJdbcMillis(), 0.001);
+        assertEquals(2, repeated.size(), "기준 횟수보다 적게 나온 SQL 은 빠져야 한다.");
+        assertEquals("select * from delivery where delivery_id = ?", repeated.get(0).getSql());
+        assertEquals(3, repeated.get(0).getCount(), "많이 실행된 순이어야 한다.");
+        assertEquals(2, repeated.get(1).getCount());
+        assertTrue(stats.repeatedStatements(4).isEmpty());
+    }
+
+    @Test
+    public void propagate() throws Exception {
+        //given
+        QueryStats stats = new QueryStats();
+        QueryStats.begin(stats);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        //when (요청 스레드가 맡긴 작업들이 동시에 SQL 을 실행한다)
+        try {
+            for (int i = 0; i < 8; i++) {
+                executor.submit(QueryStats.propagate(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        QueryStats.current().recordStatement("select * from orders where order_id = " + j, 1);
+                        QueryStats.current().recordRow(1);
+                    }
+                    return null;
+                }));
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        //then
+        assertEquals(8000, stats.getStatements(), "다른 스레드에서 실행한 SQL 도 빠짐없이 세야 한다.");
+        assertEquals(8000, stats.getRows());
+        assertEquals(8000, stats.repeatedStatements(2).get(0).getCount());
+    }
+
+    @Test
+    public void propagateDoesNotLeakToPooledThread() throws Exception {
+        //given
+        QueryStats.begin(new QueryStats());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            //when
+            executor.submit(QueryStats.propagate(() -> null)).get();
+
+            //then
+            assertNull(executor.submit(QueryStats::current).get(), "작업이 끝나면 풀 스레드에서 통계를 떼어내야 한다.");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
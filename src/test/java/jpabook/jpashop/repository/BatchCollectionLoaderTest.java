@@ -0,0 +1,74 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+동시 조회는 커밋된 데이터만 보이므로 트랜잭션 없이 InitDB 가 넣은 주문으로 확인한다.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {
+        "jpashop.query.batch-loader.chunk-size=4",
+        "jpashop.query.batch-loader.parallelism=2"
+})
+class BatchCollectionLoaderTest {
+
+    @Autowired EntityManager entityManager;
+    @Autowired BatchCollectionLoader batchCollectionLoader;
+
+    @Test
+    public void chunk() throws Exception {
+        //when
+        List<List<Long>> chunks = batchCollectionLoader.chunk(List.of(7L, 1L, 3L, 3L, 5L, 2L, 6L, 4L, 8L, 9L, 10L));
+
+        //then
+        assertEquals(3, chunks.size(), "중복을 빼고 4개씩 나눠야 한다.");
+        assertEquals(List.of(1L, 2L, 3L, 4L), chunks.get(0), "정렬해서 나눠야 한다.");
+        assertEquals(List.of(5L, 6L, 7L, 8L), chunks.get(1));
+        assertEquals(List.of(9L, 10L), chunks.get(2), "마지막 묶음은 2의 거듭제곱 크기여야 한다.");
+        assertEquals(List.of(1L, 2L, 3L, 3L), batchCollectionLoader.chunk(List.of(1L, 2L, 3L)).get(0),
+                "모자란 자리는 마지막 ID 로 채워야 한다.");
+    }
+
+    @Test
+    public void loadInParallel() throws Exception {
+        //given
+        List<Object[]> itemCounts = entityManager.createQuery(
+                "select oi.order.id, count(oi) from OrderItem oi group by oi.order.id", Object[].class)
+                .getResultList();
+        List<Long> ids = new ArrayList<>();
+        itemCounts.forEach(row -> ids.add((Long) row[0]));
+        ids.add(-1L); // 주문상품이 없는 ID
+        for (long id = 1_000_000; id < 1_000_010; id++) {
+            ids.add(id); // 묶음이 여러 개가 되도록
+        }
+
+        //when
+        LongKeyMap<List<OrderItemQueryDto>> result = batchCollectionLoader.load(ids,
+                "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(oi.order.id, i.name, oi.orderPrice, oi.count)" +
+                        " from OrderItem oi join oi.item i where oi.order.id in :ids",
+                OrderItemQueryDto.class,
+                OrderItemQueryDto::getOrderId);
+
+        //then
+        assertFalse(itemCounts.isEmpty());
+        assertEquals(itemCounts.size(), result.size(), "주문상품이 있는 주문만 들어있어야 한다.");
+        for (Object[] row : itemCounts) {
+            Long orderId = (Long) row[0];
+            List<OrderItemQueryDto> orderItems = result.get(orderId);
+            assertEquals(((Long) row[1]).intValue(), orderItems.size(), "주문마다 주문상품을 모두 가져와야 한다.");
+            orderItems.forEach(orderItem -> assertEquals(orderId, orderItem.getOrderId()));
+        }
+        assertNull(result.get(-1L), "주문상품이 없는 ID 는 없어야 한다.");
+    }
+}
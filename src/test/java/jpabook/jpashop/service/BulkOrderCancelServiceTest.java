@@ -0,0 +1,123 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.service.BulkOrderCancelService.BulkCancelResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "jpashop.order.bulk-cancel.chunk-size=2") // 묶음이 여러 개로 나뉘도록
+@Transactional
+class BulkOrderCancelServiceTest {
+
+    @Autowired EntityManager entityManager;
+    @Autowired OrderService orderService;
+    @Autowired BulkOrderCancelService bulkOrderCancelService;
+
+    @Test
+    public void cancelOrders() throws Exception {
+        //given
+        Member member = createMember("회원1");
+        Book book1 = createBook("시골 JPA", 10);
+        Book book2 = createBook("시골 Spring", 10);
+
+        Long orderId1 = orderService.order(member.getId(), book1.getId(), 2);
+        Long orderId2 = orderService.order(member.getId(), Map.of(book1.getId(), 1, book2.getId(), 3));
+        Long orderId3 = orderService.order(member.getId(), book2.getId(), 1);
+        Long deliveredOrderId = orderService.order(member.getId(), book1.getId(), 4);
+        entityManager.find(Order.class, deliveredOrderId).getDelivery().setStatus(DeliveryStatus.COMP);
+        entityManager.flush();
+
+        //when
+        BulkCancelResult result = bulkOrderCancelService.cancelOrders(List.of(orderId1, orderId2, orderId3, deliveredOrderId));
+
+        //then
+        assertEquals(4, result.getRequested());
+        assertEquals(3, result.getCancelled(), "배송 완료된 주문을 뺀 나머지는 모두 취소되어야 한다.");
+        assertEquals(1, result.getSkipped(), "배송 완료된 주문은 건너뛰어야 한다.");
+
+        assertEquals(OrderStatus.CANCEL, entityManager.find(Order.class, orderId2).getStatus());
+        assertEquals(OrderStatus.ORDER, entityManager.find(Order.class, deliveredOrderId).getStatus());
+        assertEquals(6, entityManager.find(Item.class, book1.getId()).getStockQuantity(), "배송 완료된 주문의 재고만 빼고 복구되어야 한다.");
+        assertEquals(10, entityManager.find(Item.class, book2.getId()).getStockQuantity(), "취소된 주문의 재고는 모두 복구되어야 한다.");
+    }
+
+    @Test
+    public void cancelOrdersBySearch() throws Exception {
+        //given
+        Member member = createMember("일괄취소" + System.nanoTime());
+        Member other = createMember("다른회원");
+        Book book = createBook("시골 JPA", 10);
+
+        orderService.order(member.getId(), book.getId(), 1);
+        orderService.order(member.getId(), book.getId(), 2);
+        orderService.order(member.getId(), book.getId(), 3);
+        Long otherOrderId = orderService.order(other.getId(), book.getId(), 4);
+        entityManager.flush();
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName(member.getName());
+
+        //when
+        BulkCancelResult result = bulkOrderCancelService.cancelOrders(orderSearch);
+
+        //then
+        assertEquals(3, result.getCancelled(), "검색 조건에 맞는 주문만 취소되어야 한다.");
+        assertEquals(OrderStatus.ORDER, entityManager.find(Order.class, otherOrderId).getStatus());
+        assertEquals(6, entityManager.find(Item.class, book.getId()).getStockQuantity());
+    }
+
+    @Test
+    public void rejectSearchWithoutCondition() throws Exception {
+        //given
+        Member member = createMember("빈이름" + System.nanoTime());
+        Book book = createBook("시골 JPA", 10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+        entityManager.flush();
+
+        for (String blankName : new String[]{null, "", "  "}) {
+            OrderSearch orderSearch = new OrderSearch();
+            orderSearch.setMemberName(blankName);
+
+            //when, then
+            assertThrows(IllegalArgumentException.class, () -> bulkOrderCancelService.cancelOrders(orderSearch),
+                    "조건이 없으면 전체 주문을 취소하지 않고 거절해야 한다. memberName=[" + blankName + "]");
+        }
+        assertEquals(OrderStatus.ORDER, entityManager.find(Order.class, orderId).getStatus(), "아무 주문도 취소되면 안 된다.");
+        assertEquals(9, entityManager.find(Item.class, book.getId()).getStockQuantity());
+    }
+
+    private Book createBook(String name, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        entityManager.persist(book);
+        return book;
+    }
+
+    private Member createMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        entityManager.persist(member);
+        return member;
+    }
+}
@@ -0,0 +1,124 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.CategoryItemDto;
+import jpabook.jpashop.repository.CategoryRepository;
+import jpabook.jpashop.service.query.ItemQueryService;
+import jpabook.jpashop.service.query.OrderQueryService.CursorPage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Transactional
+class CategoryServiceTest {
+
+    @Autowired CategoryService categoryService;
+    @Autowired CategoryRepository categoryRepository;
+    @Autowired CategoryTreeCache categoryTreeCache;
+    @Autowired ItemQueryService itemQueryService;
+    @Autowired ItemService itemService;
+    @Autowired EntityManager entityManager;
+
+    @Test
+    public void 카테고리_클로저_테이블() throws Exception {
+        //given
+        Long rootId = categoryService.addCategory(null, "도서");
+        Long childId = categoryService.addCategory(rootId, "IT");
+
+        // 하위 트리를 먼저 만들고 통째로 붙인다.
+        Category subtree = Category.createCategory("프로그래밍");
+        Category java = Category.createCategory("자바");
+        subtree.addChildCategory(java);
+        categoryRepository.save(subtree);
+        categoryRepository.save(java);
+
+        //when
+        categoryRepository.findOne(childId).addChildCategory(subtree);
+        entityManager.flush();
+        entityManager.clear();
+
+        //then
+        List<Object[]> closures = entityManager.createQuery(
+                "select d.name, cc.depth from CategoryClosure cc join cc.descendant d where cc.ancestor.id = :id order by cc.depth", Object[].class)
+                .setParameter("id", rootId)
+                .getResultList();
+        assertEquals(List.of("도서:0", "IT:1", "프로그래밍:2", "자바:3"),
+                closures.stream().map(row -> row[0] + ":" + row[1]).collect(toList()),
+                "최상위 카테고리에서 모든 자손이 깊이와 함께 한 번에 조회되어야 한다.");
+    }
+
+    @Test
+    public void 순환_카테고리_예외() throws Exception {
+        //given
+        Long rootId = categoryService.addCategory(null, "도서");
+        Long childId = categoryService.addCategory(rootId, "IT");
+        entityManager.flush();
+        entityManager.clear();
+
+        Category root = categoryRepository.findOne(rootId);
+        Category child = categoryRepository.findOne(childId);
+
+        //then
+        assertThrows(IllegalArgumentException.class, () -> child.addChildCategory(root), "자신의 조상을 하위 카테고리로 넣을 수 없어야 한다.");
+        assertThrows(IllegalStateException.class, () -> root.addChildCategory(child), "이미 상위 카테고리가 있으면 넣을 수 없어야 한다.");
+    }
+
+    @Test
+    public void 하위_트리_상품_조회() throws Exception {
+        //given
+        Long rootId = categoryService.addCategory(null, "도서");
+        Long childId = categoryService.addCategory(rootId, "IT");
+        Long grandChildId = categoryService.addCategory(childId, "자바");
+        Long book1 = createBook("JPA");
+        Long book2 = createBook("Spring");
+        categoryService.addItem(childId, book1);
+        categoryService.addItem(grandChildId, book1); // 두 하위 카테고리에 담긴 상품
+        categoryService.addItem(grandChildId, book2);
+        entityManager.flush();
+        entityManager.clear();
+        categoryTreeCache.invalidate(); // 테스트 트랜잭션은 커밋하지 않으므로 직접 버린다.
+
+        //when
+        CursorPage<CategoryItemDto> first = itemQueryService.findCategoryItems(rootId, null, 1);
+        CursorPage<CategoryItemDto> second = itemQueryService.findCategoryItems(rootId, first.getNextCursor(), 1);
+
+        //then
+        assertEquals(List.of("JPA"), names(first));
+        assertNotNull(first.getNextCursor(), "다음 페이지가 있어야 한다.");
+        assertEquals(List.of("Spring"), names(second), "여러 하위 카테고리에 담긴 상품은 한 번만 나와야 한다.");
+        assertNull(second.getNextCursor());
+        assertEquals(List.of("Spring"), names(itemQueryService.findCategoryItems(grandChildId, String.valueOf(book1), 10)));
+
+        assertEquals(List.of("도서", "IT", "자바"),
+                categoryTreeCache.get().path(grandChildId).stream().map(CategoryTree.Node::getName).collect(toList()));
+        List<CategoryTree.Node> children = categoryTreeCache.get().find(childId).getChildren();
+        assertEquals(List.of(grandChildId), children.stream().map(CategoryTree.Node::getId).collect(toList()));
+        assertThrows(UnsupportedOperationException.class, () -> children.clear(), "여러 요청이 같이 쓰는 스냅샷은 바꿀 수 없어야 한다.");
+        assertThrows(IllegalArgumentException.class, () -> itemQueryService.findCategoryItems(-1L, null, 10));
+    }
+
+    private Long createBook(String name) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+
+    private static List<String> names(CursorPage<CategoryItemDto> page) {
+        return page.getContent().stream().map(CategoryItemDto::getName).collect(toList());
+    }
+}
@@ -0,0 +1,154 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.service.inventory.InventoryEngine;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+2차 캐시는 커밋된 데이터만 담으므로 트랜잭션으로 감싸지 않는다. (ItemService 메서드마다 커밋)
+테스트용 application.yml 은 비어 있으므로 캐시 설정을 여기서 켠다.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=true",
+        "spring.jpa.properties.hibernate.cache.region.factory_class=jcache",
+        "spring.jpa.properties.hibernate.javax.cache.provider=com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class ItemCacheTest {
+
+    @Autowired ItemService itemService;
+    @Autowired EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    public void findOneFromCache() throws Exception {
+        //given
+        Long itemId = saveBook("캐시 책");
+        itemService.findOne(itemId);
+        statistics.clear();
+
+        //when
+        Item item = itemService.findOne(itemId);
+
+        //then
+        assertEquals("캐시 책", item.getName());
+        assertEquals(0, statistics.getPrepareStatementCount(), "캐시에 있는 상품은 DB 를 거치지 않아야 한다.");
+        assertEquals(1, statistics.getCacheRegionStatistics("item").getHitCount());
+    }
+
+    @Test
+    public void updateItemRefreshesCache() throws Exception {
+        //given
+        Long itemId = saveBook("바뀌기 전");
+        itemService.findOne(itemId);
+
+        //when
+        itemService.updateItem(itemId, 20000, "바뀐 후", 5);
+        statistics.clear();
+        Item item = itemService.findOne(itemId);
+
+        //then
+        assertEquals("바뀐 후", item.getName(), "수정한 내용이 캐시에도 반영되어야 한다.");
+        assertEquals(20000, item.getPrice());
+        assertEquals(5, item.getStockQuantity());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findItemsFromQueryCache() throws Exception {
+        //given
+        saveBook("목록 책");
+        int size = itemService.findItems().size();
+        statistics.clear();
+
+        //when
+        int cachedSize = itemService.findItems().size();
+
+        //then
+        assertEquals(size, cachedSize);
+        assertEquals(1, statistics.getQueryCacheHitCount());
+        assertEquals(0, statistics.getPrepareStatementCount(), "목록도 쿼리 캐시와 2차 캐시로 채워져야 한다.");
+
+        //when
+        saveBook("새 책");
+
+        //then
+        assertEquals(size + 1, itemService.findItems().size(), "상품이 추가되면 캐시된 목록은 버려져야 한다.");
+    }
+
+    /*
+    인메모리 재고 엔진은 item 테이블을 JDBC 로 갱신하므로, flush 한 상품은 캐시에서 지워져야 한다.
+    로그 디렉터리는 이전 실행의 세그먼트를 다시 적용하지 않도록 매번 새로 잡는다.
+    캐시 매니저(Caffeine)는 JVM 에 하나라 컨텍스트끼리 영역을 같이 쓰므로, 바깥 컨텍스트의 캐시와 ID 가 겹치지 않게 영역 이름을 나눈다.
+     */
+    @Nested
+    @TestPropertySource(properties = {
+            "spring.jpa.properties.hibernate.cache.region_prefix=in-memory-inventory",
+            "jpashop.inventory.in-memory.enabled=true",
+            "jpashop.inventory.in-memory.log-dir=${java.io.tmpdir}/item-cache-test-${random.uuid}"
+    })
+    class InMemoryInventory {
+
+        // 바깥 클래스의 필드는 바깥 컨텍스트의 빈이므로 엔진을 켠 컨텍스트의 빈을 따로 받는다.
+        @Autowired ItemService itemService;
+        @Autowired InventoryEngine inventoryEngine;
+
+        @Test
+        public void flushEvictsCachedItem() throws Exception {
+            //given
+            Book book = new Book();
+            book.setName("인메모리 재고 책");
+            book.setPrice(10000);
+            book.setStockQuantity(10);
+            itemService.saveItem(book);
+            Long itemId = book.getId();
+            itemService.findOne(itemId); // 재고 10 으로 캐시에 올린다.
+            itemService.updateItem(itemId, 20000, "인메모리 재고 책", 5); // 재고 변경은 엔진에만 쌓인다.
+
+            //when
+            inventoryEngine.flush();
+            Item item = itemService.findOne(itemId);
+
+            //then
+            assertEquals(5, item.getStockQuantity(), "flush 한 재고가 캐시가 아닌 DB 에서 다시 읽혀야 한다.");
+
+            //when (캐시에 남은 옛 version 으로 수정하면 OptimisticLockException 이 난다)
+            itemService.updateItem(itemId, 30000, "인메모리 재고 책", 5);
+
+            //then
+            assertEquals(30000, itemService.findOne(itemId).getPrice());
+        }
+    }
+
+    private Long saveBook(String name) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+}
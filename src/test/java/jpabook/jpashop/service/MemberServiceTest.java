@@ -21,6 +21,7 @@ class MemberServiceTest {
     @Autowired MemberService memberService;
     @Autowired MemberRepository memberRepository;
     @Autowired EntityManager entityManager;
+    @Autowired MemberNameFilter memberNameFilter;
 
     @Test
     public void 회원가입() throws Exception {
@@ -32,7 +33,7 @@ class MemberServiceTest {
         Long savedId = memberService.join(member);
 
         // then
-        assertEquals(member, memberRepository.findOne(savedId));
+        assertEquals(member, memberRepository.findById(savedId).get());
     }
 
     @Test
@@ -52,4 +53,37 @@ class MemberServiceTest {
         // then
         assertTrue(illegalStateException.getMessage().contains("이미 존재하는 회원입니다."));
     }
+
+    @Test
+    public void 중복_이름으로_변경_예외() throws Exception {
+        // given
+        Member member1 = new Member();
+        member1.setName("lee");
+        Member member2 = new Member();
+        member2.setName("park");
+        memberService.join(member1);
+        Long member2Id = memberService.join(member2);
+
+        // when
+        IllegalStateException illegalStateException = assertThrows(IllegalStateException.class, () -> {
+            memberService.update(member2Id, "lee");
+        });
+
+        // then
+        assertTrue(illegalStateException.getMessage().contains("이미 존재하는 회원입니다."));
+    }
+
+    @Test
+    public void 회원_이름_필터() throws Exception {
+        // given
+        Member member = new Member();
+        member.setName("choi");
+
+        // when
+        memberService.join(member);
+
+        // then
+        assertTrue(memberNameFilter.mightContain("choi"), "가입한 이름은 항상 있다고 답해야 한다.");
+        assertTrue(memberNameFilter.mightContain("userA"), "기동할 때 있던 회원 이름도 들어 있어야 한다.");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,111 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.service.StockContentionMetrics.ItemContention;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.persistence.OptimisticLockException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/*
+OrderService 를 mock 으로 바꿔서 충돌을 원하는 횟수만큼 일으킨다.
+ */
+class OptimisticLockOrderFacadeTest {
+
+    static final long BACKOFF_MILLIS = 20;
+
+    OrderService orderService = mock(OrderService.class);
+    StockContentionMetrics stockContentionMetrics = new StockContentionMetrics();
+    OptimisticLockOrderFacade facade = new OptimisticLockOrderFacade(orderService, stockContentionMetrics);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(facade, "maxAttempts", 3);
+        ReflectionTestUtils.setField(facade, "backoffMillis", BACKOFF_MILLIS);
+    }
+
+    @Test
+    public void retryAfterConflict() throws Exception {
+        //given (두 번 충돌한 뒤 성공한다)
+        when(orderService.order(1L, 10L, 1))
+                .thenThrow(new OptimisticLockException())
+                .thenThrow(new OptimisticLockException())
+                .thenReturn(100L);
+
+        //when
+        long start = System.nanoTime();
+        Long orderId = facade.order(1L, 10L, 1);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        //then
+        assertEquals(100L, orderId);
+        verify(orderService, times(3)).order(1L, 10L, 1);
+        assertTrue(elapsedMillis >= BACKOFF_MILLIS + BACKOFF_MILLIS * 2,
+                "재시도 전에 지수 백오프만큼 기다려야 한다. elapsed=" + elapsedMillis);
+        assertEquals(new ItemContention(10L, 3, 2, 2, 0, 2 / 3.0), contention(10L));
+    }
+
+    @Test
+    public void giveUpAfterMaxAttempts() throws Exception {
+        //given
+        when(orderService.order(1L, 10L, 1)).thenThrow(new OptimisticLockException());
+
+        //when
+        assertThrows(OptimisticLockException.class, () -> facade.order(1L, 10L, 1));
+
+        //then
+        verify(orderService, times(3)).order(1L, 10L, 1);
+        ItemContention contention = contention(10L);
+        assertEquals(3, contention.getConflicts());
+        assertEquals(2, contention.getRetries(), "마지막 충돌 뒤에는 재시도하지 않아야 한다.");
+        assertEquals(1, contention.getGiveUps());
+    }
+
+    @Test
+    public void conflictCountedOnConflictedItemOnly() throws Exception {
+        //given (장바구니 중 상품 20 에서만 충돌한다)
+        Map<Long, Integer> itemCounts = Map.of(10L, 1, 20L, 1);
+        when(orderService.order(1L, itemCounts))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Book.class, 20L))
+                .thenReturn(100L);
+
+        //when
+        facade.order(1L, itemCounts);
+
+        //then
+        assertEquals(0, contention(10L).getConflicts(), "충돌하지 않은 상품은 충돌로 세지 않아야 한다.");
+        assertEquals(2, contention(10L).getAttempts());
+        assertEquals(1, contention(20L).getConflicts());
+        assertEquals(1, contention(20L).getRetries());
+        assertEquals(20L, stockContentionMetrics.snapshot().get(0).getItemId(), "충돌이 많은 상품이 먼저 나와야 한다.");
+    }
+
+    @Test
+    public void notRetryOtherFailures() throws Exception {
+        //given
+        when(orderService.order(1L, 10L, 1)).thenThrow(new NotEnoughStockException("need more stock"));
+
+        //when
+        assertThrows(NotEnoughStockException.class, () -> facade.order(1L, 10L, 1));
+
+        //then
+        verify(orderService, times(1)).order(1L, 10L, 1);
+        assertEquals(new ItemContention(10L, 1, 0, 0, 0, 0), contention(10L), "재고 부족은 충돌이 아니므로 재시도하지 않아야 한다.");
+    }
+
+    private ItemContention contention(Long itemId) {
+        List<ItemContention> snapshot = stockContentionMetrics.snapshot();
+        return snapshot.stream()
+                .filter(contention -> contention.getItemId().equals(itemId))
+                .findFirst()
+                .orElseThrow();
+    }
+}
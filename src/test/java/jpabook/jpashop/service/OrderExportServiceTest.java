@@ -0,0 +1,76 @@
+package jpabook.jpashop.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "jpashop.order.export.chunk-size=2") // 묶음 경계를 여러 번 넘도록
+@Transactional
+class OrderExportServiceTest {
+
+    @Autowired EntityManager entityManager;
+    @Autowired OrderService orderService;
+    @Autowired OrderExportService orderExportService;
+    @Autowired ObjectMapper objectMapper;
+
+    @Test
+    public void exportOrders() throws Exception {
+        //given
+        Member member = new Member();
+        member.setName("내보내기회원");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        entityManager.persist(member);
+
+        Book book1 = createBook("시골 JPA");
+        Book book2 = createBook("시골 Spring");
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            orderIds.add(orderService.order(member.getId(), Map.of(book1.getId(), 1, book2.getId(), 2)));
+        }
+
+        //when
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long exported = orderExportService.exportOrders(out);
+
+        //then
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(exported, lines.length, "주문 하나당 한 줄이어야 한다.");
+
+        List<Long> exportedIds = new ArrayList<>();
+        for (String line : lines) {
+            JsonNode order = objectMapper.readTree(line);
+            exportedIds.add(order.get("orderId").asLong());
+            if (orderIds.contains(order.get("orderId").asLong())) {
+                assertEquals(2, order.get("orderItems").size(), "주문상품이 함께 내보내져야 한다.");
+            }
+        }
+        assertTrue(exportedIds.containsAll(orderIds), "새로 만든 주문이 모두 내보내져야 한다.");
+    }
+
+    private Book createBook(String name) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        entityManager.persist(book);
+        return book;
+    }
+}
@@ -0,0 +1,88 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.exception.InvalidIdempotencyKeyException;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+class OrderIdempotencyCacheTest {
+
+    @Autowired OrderIdempotencyCache orderIdempotencyCache;
+
+    @Test
+    public void retryWaitsForInFlightOrder() throws Exception {
+        //given
+        String idempotencyKey = "in-flight-" + System.nanoTime();
+        AtomicInteger placed = new AtomicInteger();
+        CompletableFuture<Long> inFlight = new CompletableFuture<>();
+
+        //when
+        CompletableFuture<Long> first = orderIdempotencyCache.execute(1L, idempotencyKey, () -> {
+            placed.incrementAndGet();
+            return inFlight;
+        });
+        CompletableFuture<Long> retried = orderIdempotencyCache.execute(1L, idempotencyKey, () -> {
+            placed.incrementAndGet();
+            return CompletableFuture.completedFuture(2L);
+        });
+        inFlight.complete(1L);
+
+        //then
+        assertEquals(1, placed.get(), "처리 중인 키로 다시 요청하면 새로 주문하지 않아야 한다.");
+        assertEquals(1L, first.get());
+        assertEquals(1L, retried.get(), "재요청은 처음 주문의 결과를 받아야 한다.");
+    }
+
+    @Test
+    public void failureIsNotCached() throws Exception {
+        //given
+        String idempotencyKey = "failure-" + System.nanoTime();
+
+        //when
+        CompletableFuture<Long> first = orderIdempotencyCache.execute(1L, idempotencyKey, () -> {
+            throw new NotEnoughStockException("need more stock");
+        });
+        CompletableFuture<Long> retried = orderIdempotencyCache.execute(1L, idempotencyKey,
+                () -> CompletableFuture.completedFuture(3L));
+
+        //then
+        ExecutionException failure = assertThrows(ExecutionException.class, first::get);
+        assertTrue(failure.getCause() instanceof NotEnoughStockException);
+        assertEquals(3L, retried.get(), "실패한 키는 다시 주문할 수 있어야 한다.");
+    }
+
+    @Test
+    public void keyIsScopedPerMember() throws Exception {
+        //given
+        String idempotencyKey = "member-" + System.nanoTime();
+
+        //when (다른 회원이 같은 키를 보낸다)
+        CompletableFuture<Long> first = orderIdempotencyCache.execute(1L, idempotencyKey,
+                () -> CompletableFuture.completedFuture(10L));
+        CompletableFuture<Long> other = orderIdempotencyCache.execute(2L, idempotencyKey,
+                () -> CompletableFuture.completedFuture(20L));
+
+        //then
+        assertEquals(10L, first.get());
+        assertEquals(20L, other.get(), "다른 회원의 주문 ID 를 돌려주면 안 된다.");
+    }
+
+    @Test
+    public void rejectMalformedKey() throws Exception {
+        assertThrows(InvalidIdempotencyKeyException.class, () -> orderIdempotencyCache.execute(1L, " ",
+                () -> CompletableFuture.completedFuture(1L)));
+        assertThrows(InvalidIdempotencyKeyException.class, () -> orderIdempotencyCache.execute(1L,
+                "k".repeat(OrderIdempotencyCache.MAX_KEY_LENGTH + 1), () -> CompletableFuture.completedFuture(1L)));
+    }
+}
@@ -0,0 +1,109 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.service.OrderImportService.Format;
+import jpabook.jpashop.service.OrderImportService.ImportResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "jpashop.order.import.chunk-size=2") // 묶음이 여러 개로 나뉘도록
+@Transactional
+class OrderImportServiceTest {
+
+    @Autowired EntityManager entityManager;
+    @Autowired OrderImportService orderImportService;
+
+    @Test
+    public void importCsv() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000);
+        Book book2 = createBook("시골 Spring", 20000);
+        entityManager.flush();
+
+        String csv = "memberId,itemId,count\n"
+                + member.getId() + "," + book1.getId() + ",2\n"
+                + member.getId() + "," + book1.getId() + ",1," + book2.getId() + ",3\n"
+                + member.getId() + ",-1,1\n"
+                + "잘못된 줄\n"
+                + member.getId() + "," + book2.getId() + ",1\n";
+
+        //when
+        ImportResult result = orderImportService.importOrders(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), Format.CSV);
+
+        //then
+        assertEquals(5, result.getLines(), "헤더를 뺀 줄 수를 세어야 한다.");
+        assertEquals(3, result.getImported());
+        assertEquals(2, result.getFailed(), "없는 상품과 형식이 잘못된 줄은 실패해야 한다.");
+        assertEquals(List.of(4L, 5L), result.getFailures().stream()
+                .map(OrderImportService.LineFailure::getLineNumber)
+                .sorted()
+                .collect(Collectors.toList()), "실패한 줄 번호를 알려줘야 한다.");
+
+        List<Order> orders = entityManager.createQuery("select o from Order o where o.member.id = :memberId", Order.class)
+                .setParameter("memberId", member.getId())
+                .getResultList();
+        assertEquals(3, orders.size());
+        assertEquals(10, entityManager.find(Item.class, book1.getId()).getStockQuantity(), "가져온 주문은 재고를 바꾸지 않는다.");
+    }
+
+    @Test
+    public void importNdjson() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000);
+        entityManager.flush();
+
+        String ndjson = "{\"memberId\":" + member.getId() + ",\"orderDate\":\"2021-01-02T03:04:05\",\"orderItems\":[{\"itemId\":" + book.getId() + ",\"count\":2}]}\n"
+                + "{\"memberId\":-1,\"orderItems\":[{\"itemId\":" + book.getId() + ",\"count\":1}]}\n";
+
+        //when
+        ImportResult result = orderImportService.importOrders(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), Format.NDJSON);
+
+        //then
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getFailed(), "없는 회원의 주문은 실패해야 한다.");
+
+        Order order = entityManager.createQuery("select o from Order o where o.member.id = :memberId", Order.class)
+                .setParameter("memberId", member.getId())
+                .getSingleResult();
+        assertEquals(20000, order.getTotalPrice(), "주문 가격은 상품 가격 * 수량이다.");
+        assertEquals(2021, order.getOrderDate().getYear(), "파일에 있는 주문 시간을 그대로 써야 한다.");
+    }
+
+    private Book createBook(String name, int price) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(10);
+        entityManager.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("회원1");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        entityManager.persist(member);
+        return member;
+    }
+}
@@ -0,0 +1,159 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderSlice;
+import jpabook.jpashop.service.OrderSearchCache.Key;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Transactional
+class OrderSearchCacheTest {
+
+    @Autowired EntityManager entityManager;
+    @Autowired OrderService orderService;
+    @Autowired OrderSearchCache orderSearchCache;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+
+    @Test
+    public void findOrdersFromCache() throws Exception {
+        //given
+        Member member = createMember("검색캐시회원");
+        Book book = createBook();
+        Long first = orderService.order(member.getId(), book.getId(), 1);
+        Long second = orderService.order(member.getId(), book.getId(), 1);
+        OrderSearch orderSearch = search("검색캐시회원", null);
+
+        //when
+        OrderSlice searched = orderService.findOrders(orderSearch, null, 10);
+        OrderSlice cached = orderService.findOrders(orderSearch, null, 10);
+
+        //then
+        assertNotNull(orderSearchCache.get(Key.of(orderSearch, null, 10)), "검색 결과의 주문 ID 가 캐시에 있어야 한다.");
+        assertEquals(List.of(second, first), ids(searched.getOrders()));
+        assertEquals(ids(searched.getOrders()), ids(cached.getOrders()), "캐시에서 읽어도 순서가 같아야 한다.");
+        assertNull(cached.getNextCursor());
+    }
+
+    @Test
+    public void invalidateOnlyAffectedResults() throws Exception {
+        //given
+        Key kimOrders = Key.of(search("kim%", OrderStatus.ORDER), null, 10);
+        Key kimCancels = Key.of(search("kim%", OrderStatus.CANCEL), null, 10);
+        Key kimAll = Key.of(search("kim%", null), null, 10);
+        Key leeOrders = Key.of(search("lee", OrderStatus.ORDER), null, 10);
+        long generation = orderSearchCache.generation();
+        orderSearchCache.put(kimOrders, generation, List.of(1L, 2L), null);
+        orderSearchCache.put(kimCancels, generation, List.of(3L), null);
+        orderSearchCache.put(kimAll, generation, List.of(1L, 2L, 3L), null);
+        orderSearchCache.put(leeOrders, generation, List.of(4L), null);
+
+        //when
+        orderSearchCache.onOrderChanged(OrderChangedEvent.cancelled(1L, "kimchi"));
+
+        //then
+        assertNull(orderSearchCache.get(kimOrders), "취소된 주문이 있던 결과는 지워야 한다.");
+        assertNull(orderSearchCache.get(kimCancels), "취소된 주문이 들어갈 결과는 지워야 한다.");
+        assertNotNull(orderSearchCache.get(kimAll), "상태 조건이 없으면 ID 목록이 그대로이므로 남겨야 한다.");
+        assertNotNull(orderSearchCache.get(leeOrders), "이름 조건이 맞지 않는 결과는 남겨야 한다.");
+
+        //when
+        orderSearchCache.onOrderChanged(OrderChangedEvent.placed(5L, "kimbap"));
+
+        //then
+        assertNull(orderSearchCache.get(kimAll), "새 주문이 들어갈 결과는 지워야 한다.");
+        assertNotNull(orderSearchCache.get(leeOrders));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // 커밋된 뒤에 무효화하므로 테스트 트랜잭션 없이 실행한다.
+    public void invalidateOnMemberRename() throws Exception {
+        //given
+        Member member = new Member();
+        member.setName("개명전" + System.nanoTime());
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        memberService.join(member);
+        Book book = new Book();
+        book.setName("검색캐시책");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        itemService.saveItem(book);
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+        String previousName = member.getName();
+        String newName = "개명후" + System.nanoTime();
+        OrderSearch byPreviousName = search(previousName, null);
+        OrderSearch byNewName = search(newName, null);
+        Key other = Key.of(search("lee", null), null, 10);
+        orderSearchCache.put(other, orderSearchCache.generation(), List.of(4L), null);
+        assertEquals(List.of(orderId), ids(orderService.findOrders(byPreviousName, null, 10).getOrders()));
+        assertTrue(orderService.findOrders(byNewName, null, 10).getOrders().isEmpty());
+
+        //when
+        memberService.update(member.getId(), newName);
+
+        //then
+        assertTrue(orderService.findOrders(byPreviousName, null, 10).getOrders().isEmpty(), "이전 이름으로는 찾을 수 없어야 한다.");
+        assertEquals(List.of(orderId), ids(orderService.findOrders(byNewName, null, 10).getOrders()), "새 이름으로 찾을 수 있어야 한다.");
+        assertNotNull(orderSearchCache.get(other), "이름 조건이 맞지 않는 결과는 남겨야 한다.");
+    }
+
+    @Test
+    public void skipPutWhenInvalidatedDuringSearch() throws Exception {
+        //given
+        Key key = Key.of(search("stale", null), null, 10);
+        long generation = orderSearchCache.generation();
+
+        //when
+        orderSearchCache.onOrderChanged(OrderChangedEvent.placed(1L, "someone"));
+        orderSearchCache.put(key, generation, List.of(1L), null);
+
+        //then
+        assertNull(orderSearchCache.get(key), "검색 도중 무효화가 있었으면 결과를 담지 않아야 한다.");
+    }
+
+    private OrderSearch search(String memberName, OrderStatus status) {
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName(memberName);
+        orderSearch.setOrderStatus(status);
+        return orderSearch;
+    }
+
+    private Member createMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        entityManager.persist(member);
+        return member;
+    }
+
+    private Book createBook() {
+        Book book = new Book();
+        book.setName("검색캐시책");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        entityManager.persist(book);
+        return book;
+    }
+
+    private static List<Long> ids(List<Order> orders) {
+        return orders.stream().map(Order::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,102 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+조건부 UPDATE 로 재고를 처리하는 모드에 대한 테스트
+벌크 연산은 영속성 컨텍스트를 거치지 않으므로, 검증 전에 clear 후 다시 조회한다.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "jpashop.order.atomic-stock=true")
+@Transactional
+class OrderServiceAtomicStockTest {
+
+    @Autowired EntityManager entityManager;
+    @Autowired OrderService orderService;
+    @Autowired OrderRepository orderRepository;
+
+    @Test
+    public void orderItem() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+
+        //when
+        Long orderId = orderService.order(member.getId(), book.getId(), 2);
+        entityManager.flush();
+        entityManager.clear();
+
+        //then
+        Order getOrder = orderRepository.findOne(orderId);
+        Book getBook = entityManager.find(Book.class, book.getId());
+
+        assertEquals(OrderStatus.ORDER, getOrder.getStatus(), "상품 주문시 상태는 ORDER");
+        assertEquals(10000 * 2, getOrder.getTotalPrice(), "주문 가격은 가격 * 수량이다.");
+        assertEquals(8, getBook.getStockQuantity(), "주문 수량만큼 재고가 줄어야 한다.");
+    }
+
+    @Test
+    public void stockOverflow() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+
+        //when
+        assertThrows(NotEnoughStockException.class, () -> {
+            orderService.order(member.getId(), book.getId(), 11);
+        }, "재고 부족 예외가 발생해야 한다.");
+    }
+
+    @Test
+    public void cancelOrder() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("JPA", 10000, 10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 2);
+
+        //when
+        orderService.cancelOrder(orderId);
+        entityManager.flush();
+        entityManager.clear();
+
+        //then
+        Order getOrder = orderRepository.findOne(orderId);
+        Book getBook = entityManager.find(Book.class, book.getId());
+
+        assertEquals(OrderStatus.CANCEL, getOrder.getStatus(), "주문 취소시 상태는 CANCEL이다.");
+        assertEquals(10, getBook.getStockQuantity(), "주문이 취소된 상품의 재고는 다시 복구되어야 한다.");
+    }
+
+    private Book createBook(String name, int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        entityManager.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("회원1");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        entityManager.persist(member);
+        return member;
+    }
+}
@@ -7,6 +7,10 @@ import jpabook.jpashop.domain.OrderStatus;
 import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.exception.NotEnoughStockException;
 import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderSlice;
+import jpabook.jpashop.service.OrderService.OrderCommand;
+import jpabook.jpashop.service.OrderService.OrderResult;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,6 +19,11 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -53,6 +62,46 @@ class OrderServiceTest {
         assertEquals(bookQuantity - orderCount, book.getStockQuantity(), "주문 수량만큼 재고가 줄어야 한다.");
     }
 
+    @Test
+    public void orderMultipleItems() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("시골 Spring", 20000, 5);
+
+        Map<Long, Integer> itemCounts = new LinkedHashMap<>();
+        itemCounts.put(book1.getId(), 2);
+        itemCounts.put(book2.getId(), 3);
+
+        //when
+        Long orderId = orderService.order(member.getId(), itemCounts);
+
+        //then
+        Order getOrder = orderRepository.findOne(orderId);
+
+        assertEquals(2, getOrder.getOrderItems().size(), "장바구니의 상품 종류 수만큼 주문상품이 생겨야 한다.");
+        assertEquals(10000 * 2 + 20000 * 3, getOrder.getTotalPrice(), "주문 가격은 상품별 가격 * 수량의 합이다.");
+        assertEquals(8, book1.getStockQuantity(), "주문 수량만큼 재고가 줄어야 한다.");
+        assertEquals(2, book2.getStockQuantity(), "주문 수량만큼 재고가 줄어야 한다.");
+    }
+
+    @Test
+    public void orderMultipleItemsStockOverflow() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("시골 Spring", 20000, 1);
+
+        Map<Long, Integer> itemCounts = new LinkedHashMap<>();
+        itemCounts.put(book1.getId(), 2);
+        itemCounts.put(book2.getId(), 3);
+
+        //when
+        assertThrows(NotEnoughStockException.class, () -> {
+            orderService.order(member.getId(), itemCounts);
+        }, "장바구니 중 하나라도 재고가 부족하면 예외가 발생해야 한다.");
+    }
+
     /*
     참고: CTRL + SHIFT + 방향키 위 아래로 소스코드 전체 움직이기 가능
      */
@@ -91,6 +140,132 @@ class OrderServiceTest {
     }
 
 
+    @Test
+    public void orderSplitStockItem() throws Exception {
+        //given
+        Member member = createMember();
+        Book item = createBook("JPA", 10000, 10);
+        item.enableSplitStock(4);
+        entityManager.flush();
+
+        //when
+        int orderCount = 7; // 한 버킷(2~3개)만으로는 부족한 수량
+        Long orderId = orderService.order(member.getId(), item.getId(), orderCount);
+
+        //then
+        assertEquals(3, item.getStockQuantity(), "분할 재고는 버킷 재고의 합에서 주문 수량만큼 줄어야 한다.");
+
+        orderService.cancelOrder(orderId);
+        assertEquals(10, item.getStockQuantity(), "주문이 취소되면 버킷 재고의 합이 복구되어야 한다.");
+        assertEquals(4, item.getStockBuckets().size(), "버킷 수는 그대로여야 한다.");
+    }
+
+    @Test
+    public void splitStockOverflow() throws Exception {
+        //given
+        Member member = createMember();
+        Book item = createBook("JPA", 10000, 10);
+        item.enableSplitStock(4);
+
+        //when
+        assertThrows(NotEnoughStockException.class, () -> {
+            orderService.order(member.getId(), item.getId(), 11);
+        }, "버킷 재고의 합보다 많이 주문하면 재고 부족 예외가 발생해야 한다.");
+    }
+
+    @Test
+    public void orderBatch() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("시골 Spring", 20000, 1);
+
+        Map<Long, Integer> overflow = new LinkedHashMap<>();
+        overflow.put(book1.getId(), 2);
+        overflow.put(book2.getId(), 3);
+
+        List<OrderCommand> commands = List.of(
+                new OrderCommand(member.getId(), Map.of(book1.getId(), 3)),
+                new OrderCommand(member.getId(), overflow));
+
+        //when
+        List<OrderResult> results = orderService.orderBatch(commands);
+
+        //then
+        assertNotNull(results.get(0).getOrderId(), "재고가 충분한 주문은 저장되어야 한다.");
+        assertTrue(results.get(1).getFailure() instanceof NotEnoughStockException, "재고가 부족한 주문만 실패해야 한다.");
+        assertEquals(7, book1.getStockQuantity(), "실패한 주문에서 먼저 차감한 재고는 되돌려야 한다.");
+        assertEquals(1, book2.getStockQuantity(), "실패한 주문의 재고는 그대로여야 한다.");
+    }
+
+    @Test
+    public void orderWithIdempotencyKey() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+        String idempotencyKey = "order-" + System.nanoTime();
+
+        //when
+        Long firstOrderId = orderService.order(member.getId(), Map.of(book.getId(), 2), idempotencyKey);
+        Long retriedOrderId = orderService.order(member.getId(), Map.of(book.getId(), 2), idempotencyKey);
+
+        //then
+        assertEquals(firstOrderId, retriedOrderId, "같은 키로 다시 주문하면 처음 주문의 ID 를 돌려줘야 한다.");
+        assertEquals(8, book.getStockQuantity(), "재고는 한 번만 차감되어야 한다.");
+    }
+
+    @Test
+    public void idempotencyKeyIsScopedPerMember() throws Exception {
+        //given
+        Member member = createMember();
+        Member otherMember = new Member();
+        otherMember.setName("회원2");
+        otherMember.setAddress(new Address("서울", "강가", "123-123"));
+        entityManager.persist(otherMember);
+        Book book = createBook("시골 JPA", 10000, 10);
+        String idempotencyKey = "order-" + System.nanoTime();
+
+        //when (다른 회원이 같은 키로 주문한다)
+        Long orderId = orderService.order(member.getId(), Map.of(book.getId(), 2), idempotencyKey);
+        Long otherOrderId = orderService.order(otherMember.getId(), Map.of(book.getId(), 3), idempotencyKey);
+
+        //then
+        assertNotEquals(orderId, otherOrderId, "다른 회원의 주문 ID 를 돌려주면 안 된다.");
+        assertEquals(otherMember.getId(), orderRepository.findOne(otherOrderId).getMember().getId());
+        assertEquals(5, book.getStockQuantity(), "두 주문 모두 재고를 차감해야 한다.");
+    }
+
+    @Test
+    public void findOrdersWithCursor() throws Exception {
+        //given
+        Member member = createMember();
+        member.setName("커서회원" + System.nanoTime());
+        Book book = createBook("시골 JPA", 10000, 10);
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            orderIds.add(orderService.order(member.getId(), book.getId(), 1));
+        }
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName(member.getName());
+
+        //when
+        List<Long> pagedIds = new ArrayList<>();
+        int pages = 0;
+        String cursor = null;
+        do {
+            OrderSlice slice = orderService.findOrders(orderSearch, cursor, 2);
+            slice.getOrders().forEach(o -> pagedIds.add(o.getId()));
+            cursor = slice.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        //then
+        Collections.reverse(orderIds);
+        assertEquals(3, pages, "5건을 2건씩 나누면 3페이지여야 한다.");
+        assertEquals(orderIds, pagedIds, "빠지거나 겹치는 주문 없이 최신 주문부터 이어져야 한다.");
+    }
+
     /*
     참고: Extract Variable -> Ctrl+Alt+V, Extract Method -> Ctrl+Alt+M, Extract Parameter -> Ctrl+Alt+P
      */
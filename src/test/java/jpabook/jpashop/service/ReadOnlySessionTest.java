@@ -0,0 +1,85 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.repository.OrderSearch;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+OSIV 처럼 트랜잭션 밖에서 EntityManager 를 먼저 묶어두고 서비스를 부른다.
+서비스의 트랜잭션이 커밋되어야 하므로 테스트를 트랜잭션으로 감싸지 않는다.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+class ReadOnlySessionTest {
+
+    @Autowired EntityManagerFactory entityManagerFactory;
+    @Autowired EntityManager entityManager;
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    EntityManager requestEntityManager;
+
+    @BeforeEach
+    void openInView() {
+        requestEntityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(requestEntityManager));
+    }
+
+    @AfterEach
+    void closeInView() {
+        TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+        requestEntityManager.close();
+    }
+
+    @Test
+    public void loadReadOnlyInReadOnlyTransaction() throws Exception {
+        //when
+        List<Order> orders = orderService.findOrders(new OrderSearch());
+
+        //then
+        Session session = requestEntityManager.unwrap(Session.class);
+        assertFalse(orders.isEmpty());
+        for (Order order : orders) {
+            assertTrue(session.isReadOnly(order), "읽기 전용 트랜잭션에서 조회한 주문은 read-only 여야 한다.");
+            assertTrue(session.isReadOnly(order.getMember()), "페치 조인한 회원도 read-only 여야 한다.");
+        }
+        assertFalse(session.isDefaultReadOnly(), "트랜잭션이 끝나면 세션은 원래대로 돌아와야 한다.");
+    }
+
+    @Test
+    public void updateEntityLoadedInReadOnlyTransaction() throws Exception {
+        //given
+        Member member = new Member();
+        member.setName("읽기전용세션");
+        Long memberId = memberService.join(member);
+        entityManager.clear();
+        Member loaded = memberService.findOne(memberId);
+        assertTrue(requestEntityManager.unwrap(Session.class).isReadOnly(loaded));
+
+        //when
+        memberService.update(memberId, "읽기전용세션-변경");
+
+        //then
+        assertEquals("읽기전용세션-변경", jdbcTemplate.queryForObject(
+                "select name from member where member_id = ?", String.class, memberId),
+                "읽기 전용으로 올라온 엔티티도 쓰기 트랜잭션에서 바꾸면 반영되어야 한다.");
+    }
+}
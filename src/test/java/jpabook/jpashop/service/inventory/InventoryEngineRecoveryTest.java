@@ -0,0 +1,142 @@
+package jpabook.jpashop.service.inventory;
+
+import jpabook.jpashop.domain.InventoryCheckpoint;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.ItemService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+서버가 죽었다가 다시 뜨는 상황을 엔진을 새로 만들어서 흉내 낸다. (같은 로그 디렉터리, 같은 DB)
+컨텍스트의 엔진은 꺼진 채로 두고, 엔진이 쓰는 JdbcTemplate / TransactionTemplate / EntityManager 만 가져다 쓴다.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+class InventoryEngineRecoveryTest {
+
+    @TempDir
+    Path logDirectory;
+
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired EntityManager entityManager;
+    @Autowired ItemService itemService;
+
+    List<InventoryEngine> engines = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (InventoryEngine engine : engines) {
+            ((ReservationLog) ReflectionTestUtils.getField(engine, "reservationLog")).close(); // 죽은 엔진은 flush 하지 않고 로그만 닫는다.
+        }
+    }
+
+    @Test
+    public void recoverUnflushedReservations() throws Exception {
+        //given (예약만 하고 flush 하기 전에 죽었다)
+        Long itemId = saveBook(10);
+        InventoryEngine crashed = start();
+        assertTrue(crashed.reserve(itemService.findOne(itemId), 3));
+        assertTrue(crashed.reserve(itemService.findOne(itemId), 2));
+        assertEquals(10, stockInDatabase(itemId), "flush 전에는 DB 에 반영되지 않아야 한다.");
+
+        //when
+        start();
+
+        //then
+        assertEquals(5, stockInDatabase(itemId), "재시작하면 로그에 남은 예약을 DB 에 다시 적용해야 한다.");
+        assertEquals(1, segmentFiles(), "적용한 세그먼트는 지우고 새 세그먼트만 남아야 한다.");
+
+        //when (다시 재시작)
+        start();
+
+        //then
+        assertEquals(5, stockInDatabase(itemId), "이미 적용한 예약을 두 번 적용하면 안 된다.");
+    }
+
+    @Test
+    public void skipSegmentsUpToCheckpoint() throws Exception {
+        //given (flush 는 커밋했지만 세그먼트를 지우기 전에 죽었다)
+        Long itemId = saveBook(10);
+        InventoryEngine engine = start();
+        assertTrue(engine.reserve(itemService.findOne(itemId), 4));
+        engine.flush();
+        long checkpoint = checkpoint();
+        Files.writeString(logDirectory.resolve("reservation-" + checkpoint + ".log"), itemId + ",-4\n");
+
+        //when
+        start();
+
+        //then
+        assertEquals(6, stockInDatabase(itemId), "체크포인트 이하의 세그먼트는 적용하지 않아야 한다.");
+        assertFalse(Files.exists(logDirectory.resolve("reservation-" + checkpoint + ".log")), "체크포인트 이하의 세그먼트는 지워야 한다.");
+    }
+
+    @Test
+    public void recoverAfterTornWrite() throws Exception {
+        //given (마지막 줄을 쓰다가 죽었다)
+        Long itemId = saveBook(10);
+        InventoryEngine crashed = start();
+        assertTrue(crashed.reserve(itemService.findOne(itemId), 1));
+        long segment = checkpoint() + 1;
+        Files.writeString(logDirectory.resolve("reservation-" + segment + ".log"), itemId + ",-1\n" + itemId + ",");
+
+        //when
+        start();
+
+        //then
+        assertEquals(9, stockInDatabase(itemId), "잘린 줄은 버리고 온전한 예약만 적용해야 한다.");
+    }
+
+    private InventoryEngine start() throws Exception {
+        InventoryEngine engine = new InventoryEngine(jdbcTemplate, transactionTemplate, entityManager);
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "logDirectory", logDirectory.toString());
+        ReflectionTestUtils.setField(engine, "syncOnWrite", true);
+        ReflectionTestUtils.setField(engine, "stripes", 2);
+        engine.init();
+        engines.add(engine);
+        return engine;
+    }
+
+    private Long saveBook(int stockQuantity) {
+        Book book = new Book();
+        book.setName("복구 책");
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+
+    private int stockInDatabase(Long itemId) {
+        return jdbcTemplate.queryForObject("select stock_quantity from item where item_id = ?", Integer.class, itemId);
+    }
+
+    private long checkpoint() {
+        return jdbcTemplate.queryForObject("select last_segment from inventory_checkpoint where id = ?", Long.class,
+                InventoryCheckpoint.SINGLETON_ID);
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(logDirectory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package jpabook.jpashop.service.inventory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReservationLogTest {
+
+    @TempDir
+    Path directory;
+
+    ReservationLog reservationLog;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (reservationLog != null) {
+            reservationLog.close();
+        }
+    }
+
+    @Test
+    public void appendAndRead() throws Exception {
+        //given
+        reservationLog = new ReservationLog(directory, true);
+        reservationLog.open(0);
+
+        //when
+        reservationLog.append(1L, -3);
+        reservationLog.append(2L, -1);
+        reservationLog.append(1L, 2);
+
+        //then
+        assertEquals(List.of(1L), reservationLog.segments());
+        assertEquals(Map.of(1L, -1L, 2L, -1L), reservationLog.read(1), "세그먼트의 변경분은 상품별로 합산되어야 한다.");
+    }
+
+    @Test
+    public void rotateAndDeleteFlushedSegment() throws Exception {
+        //given
+        reservationLog = new ReservationLog(directory, false);
+        reservationLog.open(0);
+        reservationLog.append(1L, -3);
+
+        //when
+        long closed = reservationLog.rotate();
+        reservationLog.append(1L, -5);
+
+        //then
+        assertEquals(1, closed);
+        assertEquals(List.of(1L, 2L), reservationLog.segments());
+        assertEquals(Map.of(1L, -3L), reservationLog.read(1), "넘긴 뒤의 기록은 닫힌 세그먼트에 섞이지 않아야 한다.");
+        assertEquals(Map.of(1L, -5L), reservationLog.read(2));
+
+        //when (DB 에 반영이 끝난 세그먼트를 지운다)
+        reservationLog.delete(closed);
+
+        //then
+        assertEquals(List.of(2L), reservationLog.segments());
+    }
+
+    @Test
+    public void openAfterCheckpointAndExistingSegments() throws Exception {
+        //given (이전 프로세스가 남긴 세그먼트)
+        Files.writeString(directory.resolve("reservation-3.log"), "1,-1\n");
+        reservationLog = new ReservationLog(directory, false);
+
+        //when
+        reservationLog.open(5);
+        reservationLog.append(1L, -2);
+
+        //then
+        assertEquals(List.of(3L, 6L), reservationLog.segments(), "체크포인트와 남은 세그먼트보다 뒤에서 시작해야 한다.");
+        assertEquals(Map.of(1L, -1L), reservationLog.read(3), "남은 세그먼트에 이어 쓰지 않아야 한다.");
+    }
+
+    @Test
+    public void skipTornLastLine() throws Exception {
+        //given (기록 도중 죽어서 마지막 줄이 잘렸다)
+        Path segment = directory.resolve("reservation-1.log");
+        Files.writeString(segment, "1,-3\n2,-1\n");
+        Files.write(segment, "1,".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+        reservationLog = new ReservationLog(directory, false);
+
+        //when
+        Map<Long, Long> deltas = reservationLog.read(1);
+
+        //then
+        assertEquals(Map.of(1L, -3L, 2L, -1L), deltas, "잘린 줄은 무시하고 나머지는 읽어야 한다.");
+    }
+}
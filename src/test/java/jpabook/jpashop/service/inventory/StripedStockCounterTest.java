@@ -0,0 +1,144 @@
+package jpabook.jpashop.service.inventory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedStockCounterTest {
+
+    @Test
+    public void reserveAcrossStripes() throws Exception {
+        //given (칸마다 3, 3, 2, 2)
+        StripedStockCounter counter = new StripedStockCounter(4, 10);
+
+        //when
+        boolean reserved = counter.tryReserve(10);
+
+        //then
+        assertTrue(reserved, "한 칸으로는 모자라도 전체 합이 충분하면 여러 칸에서 나눠 가져와야 한다.");
+        assertEquals(0, counter.available());
+        assertFalse(counter.tryReserve(1), "재고가 없으면 예약할 수 없어야 한다.");
+        assertEquals(-10, counter.drainPendingDelta());
+    }
+
+    @Test
+    public void failedReserveKeepsStock() throws Exception {
+        //given
+        StripedStockCounter counter = new StripedStockCounter(4, 10);
+
+        //when
+        boolean reserved = counter.tryReserve(11);
+
+        //then
+        assertFalse(reserved);
+        assertEquals(10, counter.available(), "모자라서 실패하면 여러 칸에서 가져온 만큼 되돌려야 한다.");
+        assertEquals(0, counter.drainPendingDelta(), "실패한 예약은 변경분에 남지 않아야 한다.");
+    }
+
+    @Test
+    public void adjustTo() throws Exception {
+        //given
+        StripedStockCounter counter = new StripedStockCounter(4, 10);
+        counter.tryReserve(3);
+
+        //when
+        long increased = counter.adjustTo(20);
+        long decreased = counter.adjustTo(5);
+
+        //then
+        assertEquals(13, increased);
+        assertEquals(-15, decreased);
+        assertEquals(5, counter.available());
+        assertEquals(-3 + 13 - 15, counter.drainPendingDelta());
+        assertEquals(0, counter.drainPendingDelta(), "꺼낸 변경분은 0 으로 초기화되어야 한다.");
+    }
+
+    @Test
+    public void concurrentReserveNeverOversells() throws Exception {
+        //given
+        int stock = 1000;
+        int threads = 16;
+        StripedStockCounter counter = new StripedStockCounter(4, stock);
+
+        //when (재고보다 많은 예약을 동시에 시도한다)
+        List<Integer> reservedPerThread = runConcurrently(threads, () -> {
+            int reserved = 0;
+            for (int i = 0; i < 100; i++) {
+                if (counter.tryReserve(1 + i % 3)) {
+                    reserved += 1 + i % 3;
+                }
+            }
+            return reserved;
+        });
+
+        //then
+        int reserved = reservedPerThread.stream().mapToInt(Integer::intValue).sum();
+        assertTrue(reserved <= stock, "재고보다 많이 예약되면 안 된다. reserved=" + reserved);
+        assertEquals(stock - reserved, counter.available(), "예약한 만큼만 재고가 줄어야 한다.");
+        assertEquals(-reserved, counter.drainPendingDelta());
+        assertTrue(reserved > stock - 3, "재고가 남아 있으면 예약할 수 있어야 한다. reserved=" + reserved);
+    }
+
+    @Test
+    public void concurrentReserveAndRelease() throws Exception {
+        //given
+        int stock = 100;
+        StripedStockCounter counter = new StripedStockCounter(4, stock);
+
+        //when (예약에 성공하면 바로 반환하는 주문/취소를 동시에 반복한다)
+        List<Integer> netPerThread = runConcurrently(8, () -> {
+            int net = 0;
+            for (int i = 0; i < 10_000; i++) {
+                if (counter.tryReserve(7)) {
+                    net += 7;
+                    if (i % 2 == 0) {
+                        counter.release(7);
+                        net -= 7;
+                    }
+                }
+                if (counter.available() < 0) {
+                    throw new IllegalStateException("재고가 음수가 되었습니다.");
+                }
+            }
+            return net;
+        });
+
+        //then
+        int net = netPerThread.stream().mapToInt(Integer::intValue).sum();
+        assertEquals(stock - net, counter.available(), "예약/반환한 만큼만 재고가 바뀌어야 한다.");
+        assertTrue(counter.available() >= 0);
+        assertEquals(-net, counter.drainPendingDelta());
+    }
+
+    private static <T> List<T> runConcurrently(int threads, Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package jpabook.jpashop.support;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 테스트 메서드 실행 중에 나간 SQL 수의 상한 (QueryCountExtension)
+ *
+ * `@BeforeEach` 에서 넣은 데이터는 세지 않고, 테스트 메서드 본문에서 실행된 SQL 만 센다.
+ * 데이터를 상한보다 많이 넣어두면, 어딘가에서 지연 로딩이 새서 1 + N 이 되었을 때 바로 실패한다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(QueryCountExtension.class)
+public @interface ExpectedQueries {
+
+    int max();
+}
@@ -0,0 +1,54 @@
+package jpabook.jpashop.support;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hibernate 통계로 테스트 메서드에서 실행된 SQL(PreparedStatement) 수를 세고 `@ExpectedQueries` 상한과 비교한다.
+ *
+ * 통계는 SessionFactory 전체에 하나뿐이므로 테스트를 병렬로 돌리면 값이 섞인다.
+ */
+public class QueryCountExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(QueryCountExtension.class);
+    private static final String STATISTICS_WERE_ENABLED = "statisticsWereEnabled";
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        Statistics statistics = statistics(context);
+        context.getStore(NAMESPACE).put(STATISTICS_WERE_ENABLED, statistics.isStatisticsEnabled());
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        Statistics statistics = statistics(context);
+        long queries = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(context.getStore(NAMESPACE).get(STATISTICS_WERE_ENABLED, Boolean.class));
+
+        // 테스트 자체가 실패했으면 그 실패를 그대로 보여준다.
+        if (context.getExecutionException().isPresent()) {
+            return;
+        }
+
+        ExpectedQueries expected = context.getRequiredTestMethod().getAnnotation(ExpectedQueries.class);
+        assertTrue(queries <= expected.max(),
+                context.getDisplayName() + " 에서 실행된 SQL 은 " + expected.max() + "개 이하여야 한다. actual=" + queries);
+    }
+
+    private Statistics statistics(ExtensionContext context) {
+        return SpringExtension.getApplicationContext(context)
+                .getBean(EntityManagerFactory.class)
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+    }
+}